@@ -54,6 +54,7 @@ public class Main {
 		b2.translate(new Point(100,120));
 		b2.addActor(new MovementActor(b2,20));
 		b2.addActor(new EatActor(b2,10));
+		Properties.setFeedTick(b2,-1);
 		b2.addSensor(new ShapeSensor(b2,new Circle(0,0,100)));
 
 		m2 = new StateMachineMind(new PredateState());
@@ -1,6 +1,7 @@
 package ori.mas.actors;
 
 import ori.mas.core.Body;
+import ori.mas.core.PropertyKey;
 import ori.mas.influences.ChangeBodyIntegerPropertyInfluence;
 
 import ori.ogapi.util.OperatorPlus;
@@ -11,11 +12,13 @@ public class ChangeBodyIntegerPropertyActor extends BodyTargetActor {
 	public ChangeBodyIntegerPropertyActor(String property) {
 		super();
 		_property = property;
+		_key = PropertyKey.intKeyOf(property);
 	}
 
 	public ChangeBodyIntegerPropertyActor(Body b, String property) {
 		super(b);
 		_property = property;
+		_key = PropertyKey.intKeyOf(property);
 		_minValue = Integer.MIN_VALUE;
 		_maxValue = Integer.MAX_VALUE;
 		_value = 0;
@@ -24,13 +27,22 @@ public class ChangeBodyIntegerPropertyActor extends BodyTargetActor {
 	public ChangeBodyIntegerPropertyActor(Body b, String property, int min, int max) {
 		super(b);
 		_property = property;
+		_key = PropertyKey.intKeyOf(property);
 		_minValue = min;
 		_maxValue = max;
 		_value = min;
 	}
 
+	public ChangeBodyIntegerPropertyActor(Body b, PropertyKey<Integer> key, int min, int max) {
+		this(b,key.name(),min,max);
+	}
+
 	public Integer value() {
-		return new Integer(_value);
+		return Integer.valueOf(_value);
+	}
+
+	public int intValue() {
+		return _value;
 	}
 
 	public void setValue(int value) {
@@ -67,10 +79,15 @@ public class ChangeBodyIntegerPropertyActor extends BodyTargetActor {
 
 	@Override
 	public ChangeBodyIntegerPropertyInfluence act() {
+		if (_key == null)
+			return new ChangeBodyIntegerPropertyInfluence(this,
+			                                              this.target(),
+			                                              this.property(),
+			                                              _value);
 		return new ChangeBodyIntegerPropertyInfluence(this,
 		                                              this.target(),
-		                                              this.property(),
-		                                              this.value());
+		                                              _key,
+		                                              _value);
 	}
 
 	@Override
@@ -86,6 +103,7 @@ public class ChangeBodyIntegerPropertyActor extends BodyTargetActor {
 	private int _maxValue;
 
 	private String _property;
+	private PropertyKey<Integer> _key;
 
 };
 
@@ -18,7 +18,7 @@ public class EatActor extends AbstractActor {
 	public MultipleInfluence act() {
 		MultipleInfluence result = new MultipleInfluence();
 		result.add(new DeathInfluence(this,this.target()));
-		result.add(new ChangeBodyIntegerPropertyInfluence(this,this.body(),Properties.FEED,new Integer(_feedInc)));
+		result.add(new ChangeBodyIntegerPropertyInfluence(this,this.body(),Properties.FEED_KEY,_feedInc));
 		return result;
 	}
 
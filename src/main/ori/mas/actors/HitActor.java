@@ -6,15 +6,15 @@ import ori.mas.core.Properties;
 public class HitActor extends ChangeBodyIntegerPropertyActor {
 
 	public HitActor(Body b) {
-		super(b,Properties.HEALTH,0,Integer.MAX_VALUE);
+		super(b,Properties.HEALTH_KEY,0,Integer.MAX_VALUE);
 	}
 
 	public HitActor(Body b, int max) {
-		super(b,Properties.HEALTH,0,max);
+		super(b,Properties.HEALTH_KEY,0,max);
 	}
 
 	public HitActor(Body b, int min, int max) {
-		super(b,Properties.HEALTH,min,max);
+		super(b,Properties.HEALTH_KEY,min,max);
 	}
 
 };
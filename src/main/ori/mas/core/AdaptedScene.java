@@ -12,6 +12,14 @@ import ori.ogapi.util.Iterator;
  * This class allows to use a more generic Surface&lt;T&gt; 
  * subclass while implementing the Scene interface.
  * </p>
+ * <p>
+ * Queries and updates cost what the surface ones do : on a
+ * <code>LinkedListSurface</code>, each query scans all bodies, and removing
+ * a body scans the list comparing bodies with <code>equals</code> (ie by
+ * shape).
+ * Scenes often removing bodies should use <code>GridScene</code> or
+ * <code>QuadTreeScene</code> instead.
+ * </p>
  */
 public class AdaptedScene implements Scene {
 
@@ -49,11 +57,33 @@ public class AdaptedScene implements Scene {
 		return new AdaptedScene(_surface.getAt(p));
 	}
 
+	@Override
+	public void forEachIn(Shape s, BodyVisitor v) {
+		this.visit(s,Scenes.IN,null,v);
+	}
+
+	@Override
+	public void forEachPartlyIn(Shape s, BodyVisitor v) {
+		this.visit(s,Scenes.PARTLY_IN,null,v);
+	}
+
+	@Override
+	public void forEachAt(Point p, BodyVisitor v) {
+		this.visit(null,Scenes.AT,p,v);
+	}
+
 	@Override 
 	public Iterator<Body> iterator() {
 		return _surface.iterator();
 	}
 
+	private void visit(Shape s, int mode, Point p, BodyVisitor v) {
+		for (Body b : _surface) {
+			if ((Scenes.matches(s,mode,p,b)) && (!(v.visit(b))))
+				return;
+		}
+	}
+
 	private Surface<Body> _surface;
 
 };
@@ -2,8 +2,11 @@ package ori.mas.core;
 
 import ori.ogapi.report.Reportable;
 import ori.ogapi.report.Reporter;
+import ori.ogapi.util.Identifiable;
 
-public class Agent implements Reportable {
+import java.util.SplittableRandom;
+
+public class Agent implements Reportable, Identifiable {
 
 	public Agent() {
 		_mind = null;
@@ -84,11 +87,47 @@ public class Agent implements Reportable {
 		return null;
 	}
 
+	/**
+	 * @return The agent own random generator, given by the world it lives in
+	 * (see <code>World.setSeed</code>), or randomly seeded if it has never
+	 * lived in a world.
+	 * It must only be used by the agent itself (its mind, sensors and
+	 * actors), so that agents ticked concurrently do not share a generator.
+	 */
+	public SplittableRandom random() {
+		if (_random == null)
+			_random = new SplittableRandom();
+		return _random;
+	}
+
+	public void setRandom(SplittableRandom random) {
+		_random = random;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The identifier is given by the world the agent lives in, it is
+	 * <code>UNDEFINED</code> while the agent does not belong to any world.
+	 * </p>
+	 * @see World#agent
+	 */
+	@Override
+	public int getID() {
+		return _id;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setID(int id) {
+		_id = id;
+	}
+
 	/** {@inheritDoc} */
 	public void reportIn(Reporter out) {
 		out.newSection(this.hashCode()+"@Agent{\n");
 		out.incSection();
-//		out.newSection("id: "+this.id);
+		out.newSection("id: "+_id);
 		out.newSection();
 		out.report(this.mind());
 		out.newSection();
@@ -120,6 +159,8 @@ public class Agent implements Reportable {
 
 	private Body _body;
 	private Mind _mind;
+	private int _id = UNDEFINED;
+	private SplittableRandom _random = null;
 
 };
 
@@ -4,13 +4,19 @@ import ori.ogapi.report.Reportable;
 import ori.ogapi.report.Reporter;
 
 import ori.ogapi.geometry.AdaptedShape;
+import ori.ogapi.geometry.Point;
 import ori.ogapi.geometry.Rectangle;
 import ori.ogapi.geometry.Shape;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Body extends AdaptedShape implements Reportable {
 
@@ -42,11 +48,17 @@ public class Body extends AdaptedShape implements Reportable {
 			_preparedActor = actor;
 	}
 
+	/**
+	 * Senses the world with each body sensor.
+	 * <p>The returned list is reused, it is only valid until next call.</p>
+	 * @param w The world to sense.
+	 * @return The percepts of all sensors.
+	 */
 	public List<Percept> sense(World w) {
-		List<Percept> res = new LinkedList<Percept>();
+		_percepts.clear();
 		for (Sensor s : _sensors)
-			res.add(s.sense(w));
-		return res;
+			_percepts.add(s.sense(w));
+		return _percepts;
 	}
 
 	public Agent agent() {
@@ -57,6 +69,69 @@ public class Body extends AdaptedShape implements Reportable {
 		_agent = agent;
 	}
 
+	@Override
+	public void translate(Point p) {
+		super.translate(p);
+		this.fireMove();
+	}
+
+	/**
+	 * Translates the body without notifying its listeners, which must be
+	 * notified later through <code>fireMove</code>.
+	 */
+	void translateQuietly(Point p) {
+		super.translate(p);
+	}
+
+	/** Notifies the listeners that the body has moved. */
+	void fireMove() {
+		if (_listeners != null) {
+			for (int i = 0 ; i < _listeners.size() ; i++)
+				_listeners.get(i).onMove(this);
+		}
+	}
+
+	@Override
+	public void setShape(Shape shape) {
+		super.setShape(shape);
+		if (_listeners != null) {
+			for (int i = 0 ; i < _listeners.size() ; i++)
+				_listeners.get(i).onShapeChange(this);
+		}
+	}
+
+	public void addListener(BodyListener l) {
+		if (_listeners == null)
+			_listeners = new ArrayList<BodyListener>(1);
+		if (!(_listeners.contains(l)))
+			_listeners.add(l);
+	}
+
+	public void removeListener(BodyListener l) {
+		if (_listeners != null)
+			_listeners.remove(l);
+	}
+
+	public void addPropertyListener(PropertyListener l) {
+		if (_propertyListeners == null)
+			_propertyListeners = new ArrayList<PropertyListener>(1);
+		if (!(_propertyListeners.contains(l)))
+			_propertyListeners.add(l);
+	}
+
+	public void removePropertyListener(PropertyListener l) {
+		if (_propertyListeners != null)
+			_propertyListeners.remove(l);
+	}
+
+	/** Notifies the property listeners, <code>null</code> meaning all properties. */
+	private void changed(String property) {
+		if (_propertyListeners == null)
+			return;
+		for (int i = 0 ; i < _propertyListeners.size() ; i++)
+			_propertyListeners.get(i).onPropertyChange(this,property);
+	}
+
 	public boolean hasActor() {
 		return (_actors != null);
 	}
@@ -65,6 +140,10 @@ public class Body extends AdaptedShape implements Reportable {
 		return _actors;
 	}
 
+	public LinkedList<Sensor> sensors() {
+		return _sensors;
+	}
+
 	public boolean hasSensor() {
 		return (_sensors != null);
 	}
@@ -83,30 +162,495 @@ public class Body extends AdaptedShape implements Reportable {
 		}
 	}
 
+	/**
+	 * @return A copy of the body properties, typed ones (see
+	 * <code>PropertyKey</code>) being boxed, <code>null</code> if it has none.
+	 * The copy does not follow the body changes, and changing it does not
+	 * change the body (see <code>setProperties</code>).
+	 */
 	public Map<String,Object> properties() {
-		return _properties;
+		if ((_properties == null) && (!(this.hasTyped())))
+			return null;
+		TreeMap<String,Object> all = new TreeMap<String,Object>();
+		if (_properties != null)
+			all.putAll(_properties);
+		for (PropertyKey<?> key : PropertyKey.keys()) {
+			for (int part = PropertyKey.VALUE ; part <= PropertyKey.MAX ; part++) {
+				Object v = this.getTyped(key,part);
+				if (v != null)
+					all.put(name(key,part),v);
+			}
+		}
+		return all;
 	}
 
+	/** Replaces all properties by (a copy of) the given ones. */
 	public void setProperties(Map<String,Object> pties) {
-		_properties = pties;
+		_properties = null;
+		_ints = null;
+		_longs = null;
+		_doubles = null;
+		_intSet = null;
+		_longSet = null;
+		_doubleSet = null;
+		List<PropertyListener> listeners = _propertyListeners;
+		_propertyListeners = null;
+		try {
+			if (pties != null) {
+				for (Map.Entry<String,Object> p : pties.entrySet())
+					this.set(p.getKey(),p.getValue());
+			}
+		}
+		finally {
+			_propertyListeners = listeners;
+		}
+		// decaying properties may have been dropped
+		for (int slot = 0 ; (_rates != null) && (slot < _rates.length) ; slot++) {
+			if (_rates[slot] != 0)
+				this.rebase(PropertyKey.intKey(slot));
+		}
+		this.changed(null);
 	}
 
 	public Object get(String property) {
+		PropertyKey.Ref r = PropertyKey.ref(property);
+		if (r != null)
+			return this.getTyped(r.key,r.part);
 		if (_properties == null)
 			return null;
 		return _properties.get(property);
 	}
 
+	/**
+	 * Sets a property.
+	 * @param value The value, <code>null</code> to remove the property.
+	 * @throws IllegalArgumentException If the property is typed, and the
+	 * value is not a number its type represents exactly (a fractional or out
+	 * of range number for an integer property, an integer too large for a
+	 * double to hold it exactly for a double one).
+	 */
 	public Object set(String property, Object value) {
+		PropertyKey.Ref r = PropertyKey.ref(property);
+		if (r != null)
+			return this.setTyped(r.key,r.part,value);
 		if (_properties == null)
 			_properties = new TreeMap<String,Object>();
-		return _properties.put(property,value);
+		Object previous = _properties.put(property,value);
+		this.changed(property);
+		return previous;
 	}
 
 	public boolean has(String property) {
 		return (this.get(property) != null);
 	}
 
+	public int getInt(PropertyKey<Integer> key) {
+		return this.getInt(key,PropertyKey.VALUE);
+	}
+
+	/**
+	 * @param part The slot part (<code>VALUE</code>, <code>MIN</code> or
+	 * <code>MAX</code>).
+	 * @return The part value, <code>0</code> if it is not set.
+	 */
+	public int getInt(PropertyKey<Integer> key, int part) {
+		int i = 3 * key.slot() + part;
+		if ((_ints == null) || (i >= _ints.length))
+			return 0;
+		if ((part == PropertyKey.VALUE) && (this.decayRate(key) != 0))
+			return this.decayed(key.slot());
+		return _ints[i];
+	}
+
+	public void setInt(PropertyKey<Integer> key, int value) {
+		this.setInt(key,PropertyKey.VALUE,value);
+	}
+
+	public void setInt(PropertyKey<Integer> key, int part, int value) {
+		int i = 3 * key.slot() + part;
+		if ((_ints == null) || (i >= _ints.length)) {
+			int n = slots(PropertyKey.Type.INT,i);
+			_ints = (_ints == null) ? new int[n] : Arrays.copyOf(_ints,n);
+			_intSet = (_intSet == null) ? new boolean[n] : Arrays.copyOf(_intSet,n);
+		}
+		boolean decaying = (this.decayRate(key) != 0);
+		// a new bound changes the decay from the current value on
+		if ((decaying) && (part != PropertyKey.VALUE))
+			this.freeze(key);
+		_ints[i] = value;
+		_intSet[i] = true;
+		if (decaying)
+			this.rebase(key);
+		if (part == PropertyKey.VALUE)
+			this.changed(key.name());
+	}
+
+	public long getLong(PropertyKey<Long> key) {
+		return this.getLong(key,PropertyKey.VALUE);
+	}
+
+	/** @return The part value, <code>0</code> if it is not set. */
+	public long getLong(PropertyKey<Long> key, int part) {
+		int i = 3 * key.slot() + part;
+		return ((_longs == null) || (i >= _longs.length)) ? 0 : _longs[i];
+	}
+
+	public void setLong(PropertyKey<Long> key, long value) {
+		this.setLong(key,PropertyKey.VALUE,value);
+	}
+
+	public void setLong(PropertyKey<Long> key, int part, long value) {
+		int i = 3 * key.slot() + part;
+		if ((_longs == null) || (i >= _longs.length)) {
+			int n = slots(PropertyKey.Type.LONG,i);
+			_longs = (_longs == null) ? new long[n] : Arrays.copyOf(_longs,n);
+			_longSet = (_longSet == null) ? new boolean[n] : Arrays.copyOf(_longSet,n);
+		}
+		_longs[i] = value;
+		_longSet[i] = true;
+		if (part == PropertyKey.VALUE)
+			this.changed(key.name());
+	}
+
+	public double getDouble(PropertyKey<Double> key) {
+		return this.getDouble(key,PropertyKey.VALUE);
+	}
+
+	/** @return The part value, <code>0</code> if it is not set. */
+	public double getDouble(PropertyKey<Double> key, int part) {
+		int i = 3 * key.slot() + part;
+		return ((_doubles == null) || (i >= _doubles.length)) ? 0 : _doubles[i];
+	}
+
+	public void setDouble(PropertyKey<Double> key, double value) {
+		this.setDouble(key,PropertyKey.VALUE,value);
+	}
+
+	public void setDouble(PropertyKey<Double> key, int part, double value) {
+		int i = 3 * key.slot() + part;
+		if ((_doubles == null) || (i >= _doubles.length)) {
+			int n = slots(PropertyKey.Type.DOUBLE,i);
+			_doubles = (_doubles == null) ? new double[n] : Arrays.copyOf(_doubles,n);
+			_doubleSet = (_doubleSet == null) ? new boolean[n] : Arrays.copyOf(_doubleSet,n);
+		}
+		_doubles[i] = value;
+		_doubleSet[i] = true;
+		if (part == PropertyKey.VALUE)
+			this.changed(key.name());
+	}
+
+	public boolean has(PropertyKey<?> key) {
+		return this.has(key,PropertyKey.VALUE);
+	}
+
+	/** @return <code>true</code> if the part of a typed property is set. */
+	public boolean has(PropertyKey<?> key, int part) {
+		boolean[] set = this.setFlags(key.type());
+		int i = 3 * key.slot() + part;
+		return ((set != null) && (i < set.length) && (set[i]));
+	}
+
+	/** Unsets the part of a typed property. */
+	public void remove(PropertyKey<?> key, int part) {
+		boolean[] set = this.setFlags(key.type());
+		int i = 3 * key.slot() + part;
+		if ((set == null) || (i >= set.length))
+			return;
+		PropertyKey<Integer> decaying = null;
+		if ((key.type() == PropertyKey.Type.INT) && (this.decayRate(PropertyKey.intKey(key.slot())) != 0)) {
+			decaying = PropertyKey.intKey(key.slot());
+			this.freeze(decaying);
+		}
+		set[i] = false;
+		switch (key.type()) {
+			case INT  : _ints[i] = 0; break;
+			case LONG : _longs[i] = 0; break;
+			default   : _doubles[i] = 0; break;
+		}
+		if (decaying != null)
+			this.rebase(decaying);
+		if (part == PropertyKey.VALUE)
+			this.changed(key.name());
+	}
+
+	/**
+	 * Makes an <code>int</code> property decay.
+	 * <p>
+	 * A decaying property loses <code>rate</code> units per world tick
+	 * (gains them if the rate is negative), without any influence : the body
+	 * keeps the value set last and its tick, and the current value is
+	 * computed when read.
+	 * The value stops at the property minimal value (maximal value if the
+	 * rate is negative), and when the body lives in a world, reaching it is
+	 * reported to the world heart on that tick, as if an influence had
+	 * reached it (see <code>DefaultHeart.onPropertyMinReached</code>).
+	 * Setting the value, the bounds or the rate reschedules that tick, the
+	 * decay going on from the current value.
+	 * Time only passes while the body lives in a world.
+	 * </p>
+	 * @param rate The units lost per tick, <code>0</code> to stop decaying.
+	 */
+	public void setDecay(PropertyKey<Integer> key, int rate) {
+		int slot = key.slot();
+		if ((_rates == null) || (slot >= _rates.length)) {
+			if (rate == 0)
+				return;
+			int n = Math.max(slot + 1,PropertyKey.nbSlots(PropertyKey.Type.INT));
+			_rates = (_rates == null) ? new int[n] : Arrays.copyOf(_rates,n);
+			_since = (_since == null) ? new long[n] : Arrays.copyOf(_since,n);
+			_versions = (_versions == null) ? new int[n] : Arrays.copyOf(_versions,n);
+		}
+		this.freeze(key);
+		_rates[slot] = rate;
+		this.rebase(key);
+		this.changed(key.name());
+	}
+
+	/** @return The units a property loses per tick, <code>0</code> if it does not decay. */
+	public int decayRate(PropertyKey<Integer> key) {
+		int slot = key.slot();
+		return ((_rates == null) || (slot >= _rates.length)) ? 0 : _rates[slot];
+	}
+
+	/** @return The value of a decaying property, at the clock time. */
+	private int decayed(int slot) {
+		int stored = _ints[3 * slot];
+		long elapsed = (_clock == null) ? 0 : _clock.ticks() - _since[slot];
+		long v = stored - ((long)_rates[slot]) * elapsed;
+		int min = 3 * slot + PropertyKey.MIN;
+		int max = 3 * slot + PropertyKey.MAX;
+		// decay does not go beyond the bound, nor moves a value already past it
+		if ((_rates[slot] > 0) && (_intSet[min]) && (v < _ints[min]))
+			return Math.min(stored,_ints[min]);
+		if ((_rates[slot] < 0) && (_intSet[max]) && (v > _ints[max]))
+			return Math.max(stored,_ints[max]);
+		return (int)Math.max(Integer.MIN_VALUE,Math.min(Integer.MAX_VALUE,v));
+	}
+
+	/** Stores the current value of a decaying property, before its decay changes. */
+	private void freeze(PropertyKey<Integer> key) {
+		int slot = key.slot();
+		if ((_rates != null) && (slot < _rates.length) && (_rates[slot] != 0) && (this.has(key)))
+			_ints[3 * slot] = this.decayed(slot);
+	}
+
+	/**
+	 * Restarts the decay of a property from its stored value, now, the world
+	 * rescheduling the tick it reaches its bound.
+	 */
+	private void rebase(PropertyKey<Integer> key) {
+		int slot = key.slot();
+		_since[slot] = (_clock == null) ? 0 : _clock.ticks();
+		_versions[slot]++;
+		if (_clock != null)
+			_clock.decayChanged(this,key,_versions[slot]);
+	}
+
+	/**
+	 * @return The version of the decay of a property, changed whenever its
+	 * value or rate is set.
+	 */
+	int decayVersion(PropertyKey<Integer> key) {
+		int slot = key.slot();
+		return ((_versions == null) || (slot >= _versions.length)) ? 0 : _versions[slot];
+	}
+
+	/**
+	 * @return The tick a decaying property reaches its bound,
+	 * <code>Long.MAX_VALUE</code> if it never does (or already has).
+	 */
+	long decayEnd(PropertyKey<Integer> key) {
+		int rate = this.decayRate(key);
+		int bound = (rate > 0) ? PropertyKey.MIN : PropertyKey.MAX;
+		if ((rate == 0) || (!(this.has(key))) || (!(this.has(key,bound))))
+			return Long.MAX_VALUE;
+		int slot = key.slot();
+		long distance = ((long)_ints[3 * slot]) - _ints[3 * slot + bound];
+		long r = rate;
+		if (rate < 0) {
+			distance = -distance;
+			r = -r;
+		}
+		if (distance <= 0)
+			return Long.MAX_VALUE;
+		return _since[slot] + (distance + r - 1) / r;
+	}
+
+	/**
+	 * Sets the time source of the decaying properties, decays restarting
+	 * from the current values.
+	 * @param clock The clock, <code>null</code> to stop the time.
+	 */
+	void setClock(Clock clock) {
+		for (int slot = 0 ; (_rates != null) && (slot < _rates.length) ; slot++)
+			this.freeze(PropertyKey.intKey(slot));
+		_clock = clock;
+		for (int slot = 0 ; (_rates != null) && (slot < _rates.length) ; slot++) {
+			if (_rates[slot] != 0)
+				this.rebase(PropertyKey.intKey(slot));
+		}
+	}
+
+	/**
+	 * Copies the typed <code>int</code> properties, decaying values being
+	 * computed at the clock time.
+	 * @param offset The index of the first slot of the body in the buffers.
+	 * @param length The number of entries of the body (<code>3</code> per
+	 * slot), unset ones being cleared.
+	 */
+	void copyInts(int[] values, boolean[] set, int offset, int length) {
+		int n = (_ints == null) ? 0 : Math.min(length,_ints.length);
+		if (n > 0) {
+			System.arraycopy(_ints,0,values,offset,n);
+			System.arraycopy(_intSet,0,set,offset,n);
+		}
+		Arrays.fill(values,offset + n,offset + length,0);
+		Arrays.fill(set,offset + n,offset + length,false);
+		for (int slot = 0 ; (_rates != null) && (slot < _rates.length) && (3 * slot < n) ; slot++) {
+			if ((_rates[slot] != 0) && (_intSet[3 * slot]))
+				values[offset + 3 * slot] = this.decayed(slot);
+		}
+	}
+
+	/** Copies the typed <code>long</code> properties, as <code>copyInts</code>. */
+	void copyLongs(long[] values, boolean[] set, int offset, int length) {
+		int n = (_longs == null) ? 0 : Math.min(length,_longs.length);
+		if (n > 0) {
+			System.arraycopy(_longs,0,values,offset,n);
+			System.arraycopy(_longSet,0,set,offset,n);
+		}
+		Arrays.fill(values,offset + n,offset + length,0);
+		Arrays.fill(set,offset + n,offset + length,false);
+	}
+
+	/** Copies the typed <code>double</code> properties, as <code>copyInts</code>. */
+	void copyDoubles(double[] values, boolean[] set, int offset, int length) {
+		int n = (_doubles == null) ? 0 : Math.min(length,_doubles.length);
+		if (n > 0) {
+			System.arraycopy(_doubles,0,values,offset,n);
+			System.arraycopy(_doubleSet,0,set,offset,n);
+		}
+		Arrays.fill(values,offset + n,offset + length,0.);
+		Arrays.fill(set,offset + n,offset + length,false);
+	}
+
+	/** @return The boxed value of a typed property part, <code>null</code> if unset. */
+	@SuppressWarnings("unchecked")
+	Object getTyped(PropertyKey<?> key, int part) {
+		if (!(this.has(key,part)))
+			return null;
+		switch (key.type()) {
+			case INT  : return Integer.valueOf(this.getInt((PropertyKey<Integer>)key,part));
+			case LONG : return Long.valueOf(this.getLong((PropertyKey<Long>)key,part));
+			default   : return Double.valueOf(this.getDouble((PropertyKey<Double>)key,part));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object setTyped(PropertyKey<?> key, int part, Object value) {
+		Object previous = this.getTyped(key,part);
+		if (value == null) {
+			this.remove(key,part);
+			return previous;
+		}
+		if (!(value instanceof Number))
+			throw new IllegalArgumentException("property "+name(key,part)+" holds "+key.type()+" values: "+value);
+		Number n = (Number)value;
+		switch (key.type()) {
+			case INT :
+				long l = exactLong(key,part,n);
+				if ((l < Integer.MIN_VALUE) || (l > Integer.MAX_VALUE))
+					throw new IllegalArgumentException("property "+name(key,part)+" holds int values: "+value);
+				this.setInt((PropertyKey<Integer>)key,part,(int)l);
+				break;
+			case LONG :
+				this.setLong((PropertyKey<Long>)key,part,exactLong(key,part,n));
+				break;
+			default :
+				this.setDouble((PropertyKey<Double>)key,part,exactDouble(key,part,n));
+				break;
+		}
+		return previous;
+	}
+
+	/**
+	 * @return The value of an integral number.
+	 * @throws IllegalArgumentException If the number is not integral, or
+	 * does not fit in a long.
+	 */
+	private static long exactLong(PropertyKey<?> key, int part, Number n) {
+		if (isIntegral(n)) {
+			if ((!(n instanceof BigInteger)) || (((BigInteger)n).bitLength() < 64))
+				return n.longValue();
+		}
+		else {
+			double d = n.doubleValue();
+			// the upper bound, 2^63, is not a long
+			if ((d == Math.rint(d)) && (d >= -0x1p63) && (d < 0x1p63))
+				return (long)d;
+		}
+		throw new IllegalArgumentException("property "+name(key,part)+" holds "+key.type()+" values: "+n);
+	}
+
+	/**
+	 * @return The value of a number a double represents exactly.
+	 * @throws IllegalArgumentException If the number is an integer a double
+	 * does not represent exactly.
+	 */
+	private static double exactDouble(PropertyKey<?> key, int part, Number n) {
+		double d = n.doubleValue();
+		if (!(isIntegral(n)))
+			return d;
+		if ((!(n instanceof BigInteger)) || (((BigInteger)n).bitLength() < 64)) {
+			long l = n.longValue();
+			// 2^63 is rounded back to the largest long
+			if ((d != 0x1p63) && ((long)d == l))
+				return d;
+		}
+		throw new IllegalArgumentException("property "+name(key,part)+" holds double values: "+n);
+	}
+
+	private static boolean isIntegral(Number n) {
+		return ((n instanceof Integer) || (n instanceof Long) || (n instanceof Short)
+		     || (n instanceof Byte) || (n instanceof BigInteger)
+		     || (n instanceof AtomicInteger) || (n instanceof AtomicLong));
+	}
+
+	private boolean[] setFlags(PropertyKey.Type type) {
+		switch (type) {
+			case INT  : return _intSet;
+			case LONG : return _longSet;
+			default   : return _doubleSet;
+		}
+	}
+
+	private boolean hasTyped() {
+		return (any(_intSet)) || (any(_longSet)) || (any(_doubleSet));
+	}
+
+	private static boolean any(boolean[] set) {
+		if (set == null)
+			return false;
+		for (int i = 0 ; i < set.length ; i++) {
+			if (set[i])
+				return true;
+		}
+		return false;
+	}
+
+	/** @return The size of the slots array of a type holding index <code>i</code>. */
+	private static int slots(PropertyKey.Type type, int i) {
+		return Math.max(i + 1,3 * PropertyKey.nbSlots(type));
+	}
+
+	private static String name(PropertyKey<?> key, int part) {
+		switch (part) {
+			case PropertyKey.MIN : return key.name()+Properties.SUFFIX_MIN;
+			case PropertyKey.MAX : return key.name()+Properties.SUFFIX_MAX;
+			default              : return key.name();
+		}
+	}
+
 	@Override
 	public void reportIn(Reporter out) {
 		out.newSection(hashCode()+"@Body{\n");
@@ -133,16 +677,34 @@ public class Body extends AdaptedShape implements Reportable {
 			b.addSensor(s.clone());
 		for (Actor a : _actors)
 			b.addActor(a);
-		for (Map.Entry<String,Object> p : _properties.entrySet())
-			b.set(p.getKey(),p.getValue());
+		b.setProperties(this.properties());
+		for (int slot = 0 ; (_rates != null) && (slot < _rates.length) ; slot++) {
+			if (_rates[slot] != 0)
+				b.setDecay(PropertyKey.intKey(slot),_rates[slot]);
+		}
 		return b;
 	}
 
 	private Agent _agent;
 	private LinkedList<Sensor> _sensors = new LinkedList<Sensor>();
+	private final ArrayList<Percept> _percepts = new ArrayList<Percept>(1);
 	private LinkedList<Actor> _actors = new LinkedList<Actor>();
 	private Actor _preparedActor = null;
 	private Map<String,Object> _properties = null;
+	/** Typed properties slots (value, min, max), and whether each one is set. */
+	private int[] _ints = null;
+	private long[] _longs = null;
+	private double[] _doubles = null;
+	private boolean[] _intSet = null;
+	private boolean[] _longSet = null;
+	private boolean[] _doubleSet = null;
+	/** Decay of int slots : rate, tick of the stored value, version. */
+	private int[] _rates = null;
+	private long[] _since = null;
+	private int[] _versions = null;
+	private Clock _clock = null;
+	private List<BodyListener> _listeners = null;
+	private List<PropertyListener> _propertyListeners = null;
 
 };
 
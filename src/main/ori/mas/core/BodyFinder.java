@@ -0,0 +1,52 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.Shape;
+
+/**
+ * Visitor looking for a specific body.
+ * <p>
+ * The query is stopped as soon as the body is found.
+ * An instance may be reused from one query to another, but not shared between
+ * concurrent queries.
+ * </p>
+ */
+public class BodyFinder implements BodyVisitor {
+
+	public BodyFinder() {
+		_target = null;
+	}
+
+	/**
+	 * Checks if a body is visited by a partial intersection query.
+	 * <p>
+	 * Same as <code>scene.getPartlyIn(s).contains(target)</code>, without
+	 * building the subscene.
+	 * </p>
+	 * @param scene The scene to query.
+	 * @param s The shape 'mask'.
+	 * @param target The body to look for.
+	 * @return <code>true</code> if the target intersects the shape.
+	 */
+	public boolean isPartlyIn(Scene scene, Shape s, Body target) {
+		if (target == null)
+			return false;
+		_target = target;
+		_found = false;
+		scene.forEachPartlyIn(s,this);
+		_target = null;
+		return _found;
+	}
+
+	@Override
+	public boolean visit(Body b) {
+		if (b == _target) {
+			_found = true;
+			return false;
+		}
+		return true;
+	}
+
+	private Body _target;
+	private boolean _found;
+
+};
@@ -0,0 +1,27 @@
+package ori.mas.core;
+
+/**
+ * Listens to body modifications.
+ * <p>
+ * Spatial scenes register themselves as listeners of the bodies they
+ * contain, so that their internal structure stays in sync whenever a body
+ * moves (for example through <code>Body.translate</code>) or changes its
+ * shape.
+ * </p>
+ * @see Body#addListener
+ */
+public interface BodyListener {
+
+	/**
+	 * Called after a body has been translated.
+	 * @param b The moved body.
+	 */
+	public void onMove(Body b);
+
+	/**
+	 * Called after a body shape has been replaced.
+	 * @param b The modified body.
+	 */
+	public void onShapeChange(Body b);
+
+};
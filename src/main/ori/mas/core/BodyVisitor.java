@@ -0,0 +1,21 @@
+package ori.mas.core;
+
+/**
+ * Callback used by the scene visiting queries.
+ * <p>
+ * Visiting queries do not build any subscene, the matching bodies are given
+ * one by one to the visitor instead.
+ * </p>
+ * @see Scene#forEachPartlyIn
+ */
+public interface BodyVisitor {
+
+	/**
+	 * Visits a body matching the query.
+	 * @param b The matching body.
+	 * @return <ul><li><code>true</code> to continue the query,</li>
+	 * <li><code>false</code> to stop it.</li></ul>
+	 */
+	public boolean visit(Body b);
+
+};
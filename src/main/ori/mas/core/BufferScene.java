@@ -0,0 +1,185 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Shape;
+import ori.ogapi.util.AbstractIterator;
+import ori.ogapi.util.Iterator;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * Reusable array based scene.
+ * <p>
+ * A buffer scene is meant to receive the result of a visiting query
+ * (it is itself a <code>BodyVisitor</code> adding each visited body), and to
+ * be cleared and filled again on next query, so that a steady-state query
+ * does not allocate anything.
+ * </p>
+ * <p>
+ * Its queries behave as the <code>AdaptedScene</code> ones, bodies being
+ * scanned in insertion order.
+ * A body is held at most once, bodies being compared by identity (not
+ * by shape as done by <code>LinkedListSurface</code>) through a hash set,
+ * so that filling a buffer with <code>k</code> bodies costs
+ * <code>O(k)</code>.
+ * </p>
+ */
+public class BufferScene implements Scene, BodyVisitor {
+
+	public BufferScene() {
+		_bodies = new ArrayList<Body>();
+		_members = new IdentityHashMap<Body,Boolean>();
+	}
+
+	public BufferScene(int capacity) {
+		_bodies = new ArrayList<Body>(capacity);
+		_members = new IdentityHashMap<Body,Boolean>(capacity);
+	}
+
+	/** Removes all bodies, keeping the allocated capacity. */
+	public void clear() {
+		_bodies.clear();
+		_members.clear();
+	}
+
+	public int size() {
+		return _bodies.size();
+	}
+
+	public Body get(int i) {
+		return _bodies.get(i);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>Adds the body, the query is never stopped.</p>
+	 */
+	@Override
+	public boolean visit(Body b) {
+		this.add(b);
+		return true;
+	}
+
+	@Override
+	public boolean add(Body b) {
+		if ((b == null) || (_members.put(b,Boolean.TRUE) != null))
+			return false;
+		return _bodies.add(b);
+	}
+
+	@Override
+	public boolean remove(Body b) {
+		if (_members.remove(b) == null)
+			return false;
+		for (int i = 0 ; i < _bodies.size() ; i++) {
+			if (_bodies.get(i) == b) {
+				_bodies.remove(i);
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes bodies, in a single pass over the buffer whatever their number.
+	 * @return The number of removed bodies.
+	 */
+	public int removeAll(Iterable<Body> bodies) {
+		int removed = 0;
+		for (Body b : bodies) {
+			if (_members.remove(b) != null)
+				removed++;
+		}
+		if (removed == 0)
+			return 0;
+		int j = 0;
+		for (int i = 0 ; i < _bodies.size() ; i++) {
+			Body b = _bodies.get(i);
+			if (_members.containsKey(b))
+				_bodies.set(j++,b);
+		}
+		while (_bodies.size() > j)
+			_bodies.remove(_bodies.size() - 1);
+		return removed;
+	}
+
+	@Override
+	public boolean contains(Body b) {
+		return _members.containsKey(b);
+	}
+
+	@Override
+	public Scene getIn(Shape s) {
+		BufferScene res = new BufferScene();
+		this.visit(s,Scenes.IN,null,res);
+		return res;
+	}
+
+	@Override
+	public Scene getPartlyIn(Shape s) {
+		BufferScene res = new BufferScene();
+		this.visit(s,Scenes.PARTLY_IN,null,res);
+		return res;
+	}
+
+	@Override
+	public Scene getAt(Point p) {
+		BufferScene res = new BufferScene();
+		this.visit(null,Scenes.AT,p,res);
+		return res;
+	}
+
+	@Override
+	public void forEachIn(Shape s, BodyVisitor v) {
+		this.visit(s,Scenes.IN,null,v);
+	}
+
+	@Override
+	public void forEachPartlyIn(Shape s, BodyVisitor v) {
+		this.visit(s,Scenes.PARTLY_IN,null,v);
+	}
+
+	@Override
+	public void forEachAt(Point p, BodyVisitor v) {
+		this.visit(null,Scenes.AT,p,v);
+	}
+
+	@Override
+	public Iterator<Body> iterator() {
+		return new BufferIterator();
+	}
+
+	private void visit(Shape s, int mode, Point p, BodyVisitor v) {
+		for (int i = 0 ; i < _bodies.size() ; i++) {
+			Body b = _bodies.get(i);
+			if ((Scenes.matches(s,mode,p,b)) && (!(v.visit(b))))
+				return;
+		}
+	}
+
+	private final ArrayList<Body> _bodies;
+	private final IdentityHashMap<Body,Boolean> _members;
+
+	protected class BufferIterator extends AbstractIterator<Body> {
+		@Override
+		public boolean hasNext() {
+			return (_next < _bodies.size());
+		}
+		@Override
+		public Body next() throws NoSuchElementException {
+			if (!hasNext())
+				throw new NoSuchElementException("no more body");
+			return _bodies.get(_next++);
+		}
+		@Override
+		public void remove() throws UnsupportedOperationException,NoSuchElementException {
+			if (_next == 0)
+				throw new NoSuchElementException("next has not been called");
+			_members.remove(_bodies.remove(--_next));
+		}
+		private int _next = 0;
+	};
+
+};
@@ -0,0 +1,19 @@
+package ori.mas.core;
+
+/**
+ * Time source of the decaying properties of a body (see
+ * <code>Body.setDecay</code>), given by the world the body lives in.
+ */
+interface Clock {
+
+	/** @return The current time, in ticks. */
+	long ticks();
+
+	/**
+	 * Called when the value or the rate of a decaying property has been set,
+	 * so that reaching its bound can be scheduled.
+	 * @param version The decay version (see <code>Body.decayVersion</code>).
+	 */
+	void decayChanged(Body b, PropertyKey<Integer> key, int version);
+
+};
@@ -0,0 +1,119 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.geometry.Shape;
+
+/**
+ * Allocation free narrow phase for the most common body shapes.
+ * <p>
+ * <code>Shapes.collidePoints(Segment,Shape)</code> tests a segment against
+ * each side of the polygon formed by the body points, building lists of
+ * points and segments on each call.
+ * The routines below compute the very same points, in the same order and
+ * with the same integer and floating point arithmetic (thus the same
+ * rounding and overflows), directly from the <code>Circle</code> and
+ * <code>Rectangle</code> coordinates.
+ * </p>
+ * <p>
+ * Note that, as for the generic path, a circle body is seen as the diamond
+ * of its four extreme points, and a swept circle as the four segments
+ * followed by its bounding points, so a circle against circle movement is
+ * handled by the segment routines.
+ * </p>
+ */
+public class Collisions {
+
+	/** Size of the buffer given to <code>collidePoints</code>. */
+	public static final int MAX_POINTS = 4;
+
+	/**
+	 * Computes the collision points between a segment and a body, as
+	 * <code>Shapes.collidePoints(new Segment(x1,y1,x2,y2),b)</code> does.
+	 * @param out The buffer receiving the points coordinates (x then y),
+	 * of at least <code>2*MAX_POINTS</code> integers.
+	 * @return The number of points, or <code>-1</code> if the body shape has
+	 * no fast path (the generic one must then be used).
+	 */
+	public static int collidePoints(int x1, int y1, int x2, int y2, Body b, int[] out) {
+		Shape s = b.shape();
+		// exact classes only, a subclass may define other points
+		if (s.getClass() == Circle.class) {
+			Circle c = (Circle)s;
+			Point center = c.center();
+			int r = c.radius();
+			return polygon(x1,y1,x2,y2,
+			               center.x - r,center.y,
+			               center.x,center.y - r,
+			               center.x + r,center.y,
+			               center.x,center.y + r,
+			               out);
+		}
+		if (s.getClass() == Rectangle.class) {
+			Rectangle r = (Rectangle)s;
+			Point o = r.origin();
+			Point e = r.end();
+			return polygon(x1,y1,x2,y2,
+			               o.x,o.y,
+			               e.x,o.y,
+			               e.x,e.y,
+			               o.x,e.y,
+			               out);
+		}
+		return -1;
+	}
+
+	/**
+	 * Squared distance between two points, as <code>Point.euclidian</code>.
+	 */
+	public static int euclidian(int x1, int y1, int x2, int y2) {
+		int dx = x2 - x1;
+		int dy = y2 - y1;
+		return dx*dx + dy*dy;
+	}
+
+	/** Tests a segment against the closed polygon (a,b,c,d). */
+	private static int polygon(int x1, int y1, int x2, int y2,
+	                           int ax, int ay, int bx, int by,
+	                           int cx, int cy, int dx, int dy,
+	                           int[] out) {
+		int n = 0;
+		n = segment(x1,y1,x2,y2,ax,ay,bx,by,out,n);
+		n = segment(x1,y1,x2,y2,bx,by,cx,cy,out,n);
+		n = segment(x1,y1,x2,y2,cx,cy,dx,dy,out,n);
+		n = segment(x1,y1,x2,y2,dx,dy,ax,ay,out,n);
+		return n;
+	}
+
+	/**
+	 * Segment against segment test, as
+	 * <code>Shapes.collidePoints(Segment,Segment)</code>.
+	 * @return The new number of points in <code>out</code>.
+	 */
+	private static int segment(int x1, int y1, int x2, int y2,
+	                           int x3, int y3, int x4, int y4,
+	                           int[] out, int n) {
+		long denom = (y4 - y3)*(x2 - x1) - (x4 - x3)*(y2 - y1);
+		long numA  = (x4 - x3)*(y1 - y3) - (y4 - y3)*(x1 - x3);
+		long numB  = (x2 - x1)*(y1 - y3) - (y2 - y1)*(x1 - x3);
+		if ((numA == 0) && (numB == 0) && (denom == 0)) {
+			// aligned segments, the middle of the first one is reported
+			out[2*n]   = (x1 + x2) / 2;
+			out[2*n+1] = (y1 + y2) / 2;
+			return n + 1;
+		}
+		if (denom == 0)
+			return n;
+		double ua = ((double)numA) / ((double)denom);
+		double ub = ((double)numB) / ((double)denom);
+		if ((ua < 0) || (ua > 1) || (ub < 0) || (ub > 1))
+			return n;
+		out[2*n]   = (int)(x1 + ua*(x2 - x1));
+		out[2*n+1] = (int)(y1 + ua*(y2 - y1));
+		return n + 1;
+	}
+
+	private Collisions() { }
+
+};
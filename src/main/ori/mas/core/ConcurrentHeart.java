@@ -0,0 +1,236 @@
+package ori.mas.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Heart accepting influences from many threads at once.
+ * <p>
+ * Each submitting thread appends its influences to its own buffer, without
+ * any lock : a buffer is only registered (through a compare and set) on the
+ * first submission of its thread since last pulse.
+ * When pulsing, all buffers are merged into the influences list, ordered by
+ * rank, then applied as by <code>DefaultHeart</code>.
+ * Prioritary influences (consequences such as collisions and deaths) are
+ * still submitted by the pulsing thread and applied right away.
+ * </p>
+ * <p>
+ * Ranks are non negative.
+ * Influences submitted without a rank (such as the world decay bounds) are
+ * given ranks of a reserved band, below all others, in arrival order : they
+ * are applied before the ranked ones, and a single submitting thread gets
+ * the <code>DefaultHeart</code> order.
+ * Concurrent producers should rank their influences (for instance with the
+ * agent position in the tick) so that the applied order does not depend on
+ * the scheduling.
+ * Influences of equal rank keep their submission order within a thread.
+ * </p>
+ * <p>
+ * A thread local buffer is kept by each submitting thread, which is cheap
+ * as long as threads are pooled.
+ * Producers not running on pooled threads (a thread per task) should rather
+ * submit through worker slots (see <code>reserveSlots(int)</code>), whose
+ * buffers are kept by the heart whatever the threads.
+ * </p>
+ * <p>
+ * Submissions must happen before the pulse (for instance by joining the
+ * producers tasks), the pulse does not wait for running producers, and an
+ * influence submitted during the pulse is applied by the next one.
+ * </p>
+ */
+public class ConcurrentHeart extends DefaultHeart {
+
+	public ConcurrentHeart() {
+		super();
+	}
+
+	public ConcurrentHeart(World w) {
+		super(w);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>May be called by several threads concurrently.</p>
+	 */
+	@Override
+	public void submitInfluence(Influence i) {
+		if (i != null)
+			this.buffer().add(i,UNRANKED + _sequence.getAndIncrement());
+	}
+
+	/**
+	 * Submits an influence applied according to a rank.
+	 * <p>May be called by several threads concurrently.</p>
+	 * @param i The influence to add.
+	 * @param rank The influence rank, lower ones are applied first.
+	 * @throws IllegalArgumentException If the rank is negative.
+	 */
+	public void submitInfluence(Influence i, int rank) {
+		checkRank(rank);
+		if (i != null)
+			this.buffer().add(i,rank);
+	}
+
+	/**
+	 * Submits an influence applied according to a rank, from a worker slot.
+	 * <p>
+	 * May be called by several threads concurrently, as long as a slot is
+	 * used by a single thread at a time.
+	 * </p>
+	 * @param i The influence to add.
+	 * @param rank The influence rank, lower ones are applied first.
+	 * @param slot The worker slot, lower than the reserved number of slots.
+	 * @throws IllegalArgumentException If the rank is negative.
+	 * @throws IndexOutOfBoundsException If the slot has not been reserved.
+	 * @see #reserveSlots(int)
+	 */
+	public void submitInfluence(Influence i, int rank, int slot) {
+		checkRank(rank);
+		if (slot >= _nbSlots)
+			throw new IndexOutOfBoundsException("slot "+slot+" not reserved");
+		if (i != null)
+			_slots[slot].add(i,rank);
+	}
+
+	/**
+	 * Makes sure that a number of worker slots may be used.
+	 * <p>
+	 * Slot buffers are kept across pulses, thus submitting through slots
+	 * does not allocate anything once their capacity is reached.
+	 * Must not be called while submitting.
+	 * </p>
+	 */
+	public void reserveSlots(int n) {
+		if (n <= _nbSlots)
+			return;
+		if (_slots.length < n)
+			_slots = Arrays.copyOf(_slots,Math.max(n,_slots.length * 2));
+		for (int k = _nbSlots ; k < n ; k++)
+			_slots[k] = new Buffer(SLOT_CAPACITY);
+		_nbSlots = n;
+	}
+
+	/** @return The buffer of the current thread, registered for this pulse. */
+	private Buffer buffer() {
+		Buffer b = _local.get();
+		int epoch = _epoch;
+		if (b.epoch != epoch) {
+			b.epoch = epoch;
+			b.clear();
+			Buffer head;
+			do {
+				head = _buffers.get();
+				b.next = head;
+			} while (!(_buffers.compareAndSet(head,b)));
+		}
+		return b;
+	}
+
+	private static void checkRank(int rank) {
+		if (rank < 0)
+			throw new IllegalArgumentException("negative rank : "+rank);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>Merges the buffered influences first.</p>
+	 */
+	@Override
+	public List<Influence> pulse() {
+		this.merge();
+		return super.pulse();
+	}
+
+	/** Moves the buffered influences into the influences list, by rank. */
+	private void merge() {
+		Buffer head = _buffers.getAndSet(null);
+		_epoch++;
+		_sequence.set(0);
+		int n = 0;
+		for (Buffer b = head ; b != null ; b = b.next)
+			n += b.size;
+		for (int s = 0 ; s < _nbSlots ; s++)
+			n += _slots[s].size;
+		if (n == 0)
+			return;
+		if (_keys.length < n) {
+			_keys = new long[Math.max(n,_keys.length * 2)];
+			_merged = new Influence[_keys.length];
+		}
+		int k = 0;
+		for (Buffer b = head ; b != null ; b = b.next)
+			k = this.collect(b,k);
+		for (int s = 0 ; s < _nbSlots ; s++)
+			k = this.collect(_slots[s],k);
+		Arrays.sort(_keys,0,n);
+		for (k = 0 ; k < n ; k++) {
+			int index = (int)(_keys[k] & 0xFFFFFFFFL);
+			this.influences().add(_merged[index]);
+			_merged[index] = null;
+		}
+	}
+
+	/**
+	 * Adds the influences of a buffer to the merged ones, and clears it.
+	 * @return The next merge index.
+	 */
+	private int collect(Buffer b, int k) {
+		for (int j = 0 ; j < b.size ; j++) {
+			// rank (high bits) | merge index, the sort is thus stable
+			_keys[k] = (((long)b.ranks[j]) << 32) | k;
+			_merged[k++] = b.influences[j];
+		}
+		b.clear();
+		return k;
+	}
+
+	/** Lowest rank, the band of unranked influences. */
+	private static final int UNRANKED = Integer.MIN_VALUE;
+	private static final int SLOT_CAPACITY = 2;
+
+	private final AtomicReference<Buffer> _buffers = new AtomicReference<Buffer>();
+	private final AtomicInteger _sequence = new AtomicInteger();
+	private volatile int _epoch = 0;
+	private Buffer[] _slots = new Buffer[0];
+	private int _nbSlots = 0;
+	private long[] _keys = new long[64];
+	private Influence[] _merged = new Influence[64];
+	private final ThreadLocal<Buffer> _local = new ThreadLocal<Buffer>() {
+		@Override
+		protected Buffer initialValue() {
+			return new Buffer();
+		}
+	};
+
+	/** Influences submitted by one thread (or worker slot) since last pulse. */
+	private static final class Buffer {
+		Buffer() {
+			this(16);
+		}
+		Buffer(int capacity) {
+			influences = new Influence[capacity];
+			ranks = new int[capacity];
+		}
+		void add(Influence i, int rank) {
+			if (size == influences.length) {
+				influences = Arrays.copyOf(influences,size * 2);
+				ranks = Arrays.copyOf(ranks,size * 2);
+			}
+			influences[size] = i;
+			ranks[size++] = rank;
+		}
+		void clear() {
+			Arrays.fill(influences,0,size,null);
+			size = 0;
+		}
+		Influence[] influences;
+		int[] ranks;
+		int size = 0;
+		/** Last pulse epoch the buffer has been registered for. */
+		int epoch = -1;
+		Buffer next = null;
+	};
+
+};
@@ -7,7 +7,9 @@ import ori.ogapi.geometry.*;
 
 import ori.ogapi.util.OperatorPlus;
 import ori.ogapi.lists.Fifo;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.LinkedList;
 
@@ -19,10 +21,12 @@ public class DefaultHeart implements Heart {
 
 	public DefaultHeart() {
 		_world = null;
+		this.registerDefaultHandlers();
 	}
 
 	public DefaultHeart(World w) {
 		_world = w;
+		this.registerDefaultHandlers();
 	}
 
 	@Override
@@ -30,10 +34,15 @@ public class DefaultHeart implements Heart {
 		_world = w;
 	}
 
+	protected World world() {
+		return _world;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * In this implementation, no influence sum is done.
+	 * In this implementation, no influence sum is done, unless combiners are
+	 * set (see <code>setCombiner</code>).
 	 * All submitted influences are applied in the order they have been added.
 	 * A classic reimplementing subclass will only call <code>super.pulse()</code> and
 	 * then add its specific behaviour, while a more complex heart will completely
@@ -45,8 +54,14 @@ public class DefaultHeart implements Heart {
 		//System.out.println("Heart.pulse()");
 		List<Influence> madeInfluences = new Fifo<Influence>();
 		Influence i;
+		this.aggregate();
+		this.prepareBroadPhase();
+		this.firePulseStarted();
 		while (!(_influences.isEmpty())) {
 			i = _influences.pop();
+			this.fireApplied(i);
+			if (!(keepsBroadPhase(i)))
+				_broadPhaseValid = false;
 			//System.out.println("\tbefore makeInfluence: "+i);
 			i = this.makeInfluence(i);
 			//System.out.println("\tafter makeInfluence: "+i);
@@ -54,9 +69,146 @@ public class DefaultHeart implements Heart {
 				madeInfluences.add(i);
 		}
 		//System.out.println("\tEmpty!!!");
+		this.clearBroadPhase();
+		this.firePulseEnded();
 		return madeInfluences;
 	}
 
+	/**
+	 * Sets the listener following the influences application.
+	 * @param l The listener, <code>null</code> to remove it.
+	 */
+	public void setPulseListener(PulseListener l) {
+		_listener = l;
+	}
+
+	public PulseListener pulseListener() {
+		return _listener;
+	}
+
+	/** Notifies the listener of the submitted influences. */
+	void firePulseStarted() {
+		if (_listener == null)
+			return;
+		_submitted.clear();
+		_submitted.addAll(_influences);
+		_nextSubmitted = 0;
+		_listener.pulseStarted(_submitted);
+	}
+
+	/**
+	 * Notifies the listener, if the influence about to be applied is a
+	 * submitted one, that the previous submitted one is applied.
+	 */
+	void fireApplied(Influence i) {
+		if ((_listener == null)
+		 || (_nextSubmitted >= _submitted.size())
+		 || (_submitted.get(_nextSubmitted) != i))
+			return;
+		if (_nextSubmitted > 0)
+			_listener.influenceApplied(_nextSubmitted - 1);
+		_nextSubmitted++;
+	}
+
+	void firePulseEnded() {
+		if (_listener == null)
+			return;
+		if (_nextSubmitted > 0)
+			_listener.influenceApplied(_nextSubmitted - 1);
+		_submitted.clear();
+		_nextSubmitted = 0;
+		_listener.pulseEnded();
+	}
+
+	/**
+	 * Sets the combiner of an influence class.
+	 * <p>
+	 * Before being applied, the physical influences submitted since last
+	 * pulse are grouped by class, target and kind (as given by the combiner
+	 * of their class), and each group is combined into a single influence,
+	 * applied at the place of the first one.
+	 * Influences submitted during the pulse (including the ones held by a
+	 * multiple influence) are not combined.
+	 * Unlike handlers, combiners are only used for their exact class.
+	 * </p>
+	 * @param type The influence class.
+	 * @param combiner The combiner, <code>null</code> to remove the class one.
+	 * @see ori.mas.influences.Combiners
+	 */
+	public <I extends PhysicalInfluence> void setCombiner(Class<I> type, InfluenceCombiner<? super I> combiner) {
+		if (combiner == null)
+			_combiners.remove(type);
+		else
+			_combiners.put(type,combiner);
+	}
+
+	/**
+	 * Combines the submitted influences.
+	 * @see #setCombiner
+	 */
+	@SuppressWarnings({"unchecked","rawtypes"})
+	protected void aggregate() {
+		if ((_combiners.isEmpty()) || (_influences.size() < 2))
+			return;
+		_aggregated.clear();
+		_groups.clear();
+		for (Influence i : _influences) {
+			InfluenceCombiner c = _combiners.get(i.getClass());
+			Body target = (c == null) ? null : ((PhysicalInfluence)i).target();
+			Object kind = (target == null) ? null : c.kind(i);
+			if (kind == null) {
+				_aggregated.add(i);
+				continue;
+			}
+			Group key = new Group(target,i.getClass(),kind);
+			Integer index = _groups.get(key);
+			if (index == null) {
+				_groups.put(key,_aggregated.size());
+				_aggregated.add(i);
+			}
+			else
+				_aggregated.set(index,c.combine(_aggregated.get(index),i));
+		}
+		if (_aggregated.size() < _influences.size()) {
+			_influences.clear();
+			_influences.addAll(_aggregated);
+		}
+		_aggregated.clear();
+		_groups.clear();
+	}
+
+	/**
+	 * Enables or disables the movement broad phase.
+	 * <p>
+	 * When enabled (default), each pulse starts by a sort and sweep between the
+	 * areas swept by all submitted movement influences and the bodies of the
+	 * scene (themselves extended by their own movements), so that each
+	 * movement only tests the bodies it may reach.
+	 * As the sweep goes through all bodies, it is only run when at least one
+	 * agent in <code>BROAD_PHASE_RATIO</code> moves : fewer movements query
+	 * the scene one by one, which a spatial scene (<code>GridScene</code>,
+	 * <code>QuadTreeScene</code>) answers without going through all bodies.
+	 * Candidates are then filtered as the scene partial intersection query
+	 * would do, and as a movement stops on its first collision in an order
+	 * which does not depend on the candidates one (see <code>clamp</code>),
+	 * movements are not modified, whatever the scene.
+	 * </p>
+	 * <p>
+	 * As soon as the pulse applies an influence which may change the scene in
+	 * another way (birth, death, movement which was not submitted before the
+	 * pulse), the remaining movements of the pulse query the scene directly.
+	 * A subclass moving bodies out of <code>callbackMove</code> should disable
+	 * the broad phase.
+	 * </p>
+	 */
+	public void setBroadPhase(boolean enabled) {
+		_broadPhase = enabled;
+	}
+
+	public boolean isBroadPhaseEnabled() {
+		return _broadPhase;
+	}
+
 	@Override 
 	public void submitInfluence(Influence i) {
 		//System.out.println("Heart.submitInfluence(i)");
@@ -84,24 +236,150 @@ public class DefaultHeart implements Heart {
 	 * colliding influence will also be submitted to the heart by itself.
 	 * </p>
 	 * <p>
-	 * The default implementation does nothing and returns <code>null</code>.
+	 * The influence is given to the handler of its class (see
+	 * <code>setHandler</code>), an influence without handler is ignored and
+	 * <code>null</code> is returned.
 	 * </p>
 	 * @param i The influence to apply.
 	 * @return The influence which has really been applied (may be <code>null</code>).
 	 */
+	@SuppressWarnings("unchecked")
 	protected Influence makeInfluence(Influence i) {
-		if (i instanceof MultipleInfluence) {
-			for (Influence j : (MultipleInfluence)i)
-				submitPrioritaryInfluence(j);
-			return i;
+		// consecutive influences often share their class
+		Class<?> c = i.getClass();
+		if (c != _lastClass) {
+			_lastHandler = this.handler(c);
+			_lastClass = c;
+		}
+		return _lastHandler.make(i);
+	}
+
+	/**
+	 * Sets the handler of an influence type.
+	 * <p>
+	 * An influence is applied by the handler registered for its class, or
+	 * else for its nearest superclass, or else for one of its interfaces.
+	 * The handler of each influence class is resolved once, then cached.
+	 * By default, handlers are registered for the influences of
+	 * <code>ori.mas.influences</code>, calling the matching
+	 * <code>makeInfluence</code> method (physical influences without target
+	 * being ignored).
+	 * </p>
+	 * @param type The influence type.
+	 * @param handler The handler, <code>null</code> to remove the type one.
+	 */
+	public <I extends Influence> void setHandler(Class<I> type, InfluenceHandler<? super I> handler) {
+		if (handler == null)
+			_handlers.remove(type);
+		else
+			_handlers.put(type,handler);
+		_resolved.clear();
+		_lastClass = null;
+		_lastHandler = null;
+	}
+
+	/**
+	 * @param type An influence class.
+	 * @return The handler applying the influences of this class.
+	 */
+	@SuppressWarnings("rawtypes")
+	public InfluenceHandler handler(Class<?> type) {
+		InfluenceHandler h = _resolved.get(type);
+		if (h != null)
+			return h;
+		for (Class<?> c = type ; (c != null) && (h == null) ; c = c.getSuperclass())
+			h = _handlers.get(c);
+		for (Class<?> c = type ; (c != null) && (h == null) ; c = c.getSuperclass())
+			h = this.interfaceHandler(c);
+		if (h == null)
+			h = NO_HANDLER;
+		_resolved.put(type,h);
+		return h;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private InfluenceHandler interfaceHandler(Class<?> type) {
+		for (Class<?> i : type.getInterfaces()) {
+			InfluenceHandler h = _handlers.get(i);
+			if (h == null)
+				h = this.interfaceHandler(i);
+			if (h != null)
+				return h;
 		}
-		if (i instanceof PhysicalInfluence)
-			return this.makeInfluence((PhysicalInfluence)i);
-		if (i instanceof BirthInfluence)
-			return this.makeInfluence((BirthInfluence)i);
 		return null;
 	}
 
+	private void registerDefaultHandlers() {
+		this.setHandler(MultipleInfluence.class,new InfluenceHandler<MultipleInfluence>() {
+			@Override
+			public Influence make(MultipleInfluence i) {
+				for (Influence j : i)
+					submitPrioritaryInfluence(j);
+				return i;
+			}
+		});
+		this.setHandler(BirthInfluence.class,new InfluenceHandler<BirthInfluence>() {
+			@Override
+			public Influence make(BirthInfluence i) {
+				return makeInfluence(i);
+			}
+		});
+		this.setHandler(PhysicalInfluence.class,new InfluenceHandler<PhysicalInfluence>() {
+			@Override
+			public Influence make(PhysicalInfluence i) {
+				return makeInfluence(i);
+			}
+		});
+		this.setHandler(MovementInfluence.class,new InfluenceHandler<MovementInfluence>() {
+			@Override
+			public Influence make(MovementInfluence i) {
+				if (i.target() == null)
+					return null;
+				return makeInfluence(i);
+			}
+		});
+		this.setHandler(CollideInfluence.class,new InfluenceHandler<CollideInfluence>() {
+			@Override
+			public Influence make(CollideInfluence i) {
+				if (i.target() == null)
+					return null;
+				return makeInfluence(i);
+			}
+		});
+		this.setHandler(ChangeBodyPropertyInfluence.class,new InfluenceHandler<ChangeBodyPropertyInfluence>() {
+			@Override
+			public Influence make(ChangeBodyPropertyInfluence i) {
+				if (i.target() == null)
+					return null;
+				return makeInfluence(i);
+			}
+		});
+		this.setHandler(ChangeBodyIntegerPropertyInfluence.class,new InfluenceHandler<ChangeBodyIntegerPropertyInfluence>() {
+			@Override
+			public Influence make(ChangeBodyIntegerPropertyInfluence i) {
+				if (i.target() == null)
+					return null;
+				return makeInfluence(i);
+			}
+		});
+		this.setHandler(PropertyBoundInfluence.class,new InfluenceHandler<PropertyBoundInfluence>() {
+			@Override
+			public Influence make(PropertyBoundInfluence i) {
+				if (i.target() == null)
+					return null;
+				return makeInfluence(i);
+			}
+		});
+		this.setHandler(DeathInfluence.class,new InfluenceHandler<DeathInfluence>() {
+			@Override
+			public Influence make(DeathInfluence i) {
+				if (i.target() == null)
+					return null;
+				return makeInfluence(i);
+			}
+		});
+	}
+
 	protected Influence makeInfluence(PhysicalInfluence i) {
 		if (i.target() == null)
 			return null;
@@ -109,8 +387,12 @@ public class DefaultHeart implements Heart {
 			return this.makeInfluence((MovementInfluence)i);
 		if (i instanceof CollideInfluence)
 			return this.makeInfluence((CollideInfluence)i);
+		if (i instanceof ChangeBodyIntegerPropertyInfluence)
+			return this.makeInfluence((ChangeBodyIntegerPropertyInfluence)i);
 		if (i instanceof ChangeBodyPropertyInfluence)
 			return this.makeInfluence((ChangeBodyPropertyInfluence)i);
+		if (i instanceof PropertyBoundInfluence)
+			return this.makeInfluence((PropertyBoundInfluence)i);
 		if (i instanceof DeathInfluence)
 			return this.makeInfluence((DeathInfluence)i);
 		return null;
@@ -123,9 +405,133 @@ public class DefaultHeart implements Heart {
 		Point vector = i.vector();
 		if (vector == null)
 			return null;
+		sweptArea(target,vector,_area);
+
+		// candidates are buffered, the heart being the only one to query them
+		_candidates.clear();
+		if ((_broadPhaseValid)
+		 && (_nextMovement < _pairs.size())
+		 && (_pairs.movement(_nextMovement) == i))
+			_pairs.candidates(_nextMovement++,_area,_candidates);
+		else {
+			_broadPhaseValid = false;
+			_world.scene().forEachPartlyIn(_area,_candidates);
+		}
+		CollideInfluence collide = this.clamp(i,_candidates,_points);
+		this.callbackMove(i);
+		if (collide != null)
+			this.submitPrioritaryInfluence(collide);
+		return i;
+	}
+
+	/**
+	 * Shortens a movement to its first collision with one of the candidates.
+	 * <p>
+	 * Collisions at the same distance are ordered by the identifiers of the
+	 * agents of the hit bodies, so that the candidates order (thus the scene)
+	 * does not change the result.
+	 * </p>
+	 * <p>
+	 * Only reads the positions of the target and of the candidates (and
+	 * calls <code>mayCollide</code>), thus movements of distinct bodies with
+	 * distinct buffers may be clamped concurrently.
+	 * </p>
+	 * @param points A buffer of <code>2*Collisions.MAX_POINTS</code> integers.
+	 * @return The collision to submit, <code>null</code> if none.
+	 */
+	CollideInfluence clamp(MovementInfluence i, BufferScene candidates, int[] points) {
+		Body target = i.target();
+		Point vector = i.vector();
 		List<Point> tmp;
 		// TODO set comparator
 		Segment wayLine;
+		Body collidingBody = null;
+		Point collidingPoint = null;
+		int d = Integer.MAX_VALUE;
+
+		for (Point p : target.shape().boundingShape().points()) {
+			int x2 = p.x + vector.x;
+			int y2 = p.y + vector.y;
+			wayLine = null;
+			for (int k = 0 ; k < candidates.size() ; k++) {
+				Body b = candidates.get(k);
+				if ((b != target) && (this.mayCollide(target,b))) {
+					int n = Collisions.collidePoints(p.x,p.y,x2,y2,b,points);
+					if (n < 0) {
+						// no fast path for this shape
+						if (wayLine == null)
+							wayLine = new Segment(p.x,p.y,x2,y2);
+						tmp = Shapes.collidePoints(wayLine,b);
+						for (Point p2 : tmp) {
+							int e = p2.euclidian(p);
+							if (before(e,b,p2.x,p2.y,d,collidingBody,collidingPoint)) {
+								d = e;
+								collidingBody = b;
+								collidingPoint = p2;
+								vector.x = p2.x;
+								vector.y = p2.y;
+								vector.minus(p);
+							}
+						}
+						continue;
+					}
+					for (int m = 0 ; m < n ; m++) {
+						int cx = points[2*m];
+						int cy = points[2*m+1];
+						int e = Collisions.euclidian(cx,cy,p.x,p.y);
+						if (before(e,b,cx,cy,d,collidingBody,collidingPoint)) {
+							d = e;
+							collidingBody = b;
+							collidingPoint = new Point(cx,cy);
+							vector.x = cx - p.x;
+							vector.y = cy - p.y;
+						}
+					}
+				}
+			}
+		}
+		
+		if (collidingBody != null)
+			return new CollideInfluence(target,collidingBody,collidingPoint);
+		return null;
+	}
+
+	/**
+	 * Total order of the collision points of a movement, which does not
+	 * depend on the order the candidates are visited in (thus on the scene) :
+	 * points are ordered by distance, then by identifier of the agent of their
+	 * body (bodies without agent last), then by coordinates.
+	 * @return <code>true</code> if the point <code>(x,y)</code> of
+	 * <code>b</code> at distance <code>e</code> comes before the current
+	 * collision, if any.
+	 */
+	static boolean before(int e, Body b, int x, int y, int d, Body current, Point p) {
+		if (current == null)
+			return true;
+		if (e != d)
+			return (e < d);
+		if (b != current) {
+			long rb = rank(b), rc = rank(current);
+			if (rb != rc)
+				return (rb < rc);
+		}
+		if (x != p.x)
+			return (x < p.x);
+		return (y < p.y);
+	}
+
+	private static long rank(Body b) {
+		Agent a = b.agent();
+		if ((a == null) || (a.getID() < 0))
+			return Long.MAX_VALUE;
+		return a.getID();
+	}
+
+	/**
+	 * Computes the bounding rectangle of the area swept by a body moving along
+	 * a vector.
+	 */
+	static void sweptArea(Body target, Point vector, Rectangle area) {
 		int minX = Integer.MAX_VALUE;
 		int minY = Integer.MAX_VALUE;
 		int maxX = Integer.MIN_VALUE;
@@ -148,38 +554,45 @@ public class DefaultHeart implements Heart {
 			if (p.y + vector.y > maxY)
 				maxY = p.y + vector.y;
 		}
-		Point min,max;
-		min = new Point(minX,minY);
-		max = new Point(maxX,maxY);
-
-		Surface<Body> s = _world.scene().getPartlyIn(new Rectangle(min,max));
-		Body collidingBody = null;
-		Point collidingPoint = null;
-		int d = Integer.MAX_VALUE;
+		area.origin().x = minX;
+		area.origin().y = minY;
+		area.end().x = maxX;
+		area.end().y = maxY;
+	}
 
-		for (Point p : target.shape().boundingShape().points()) {
-			wayLine = new Segment(p.x,p.y,p.x+vector.x,p.y+vector.y);
-			for (Body b : s) {
-				if ((b != target) && (this.mayCollide(target,b))) {
-					tmp = Shapes.collidePoints(wayLine,b);
-					for (Point p2 : tmp) {
-						if (p2.euclidian(p) < d) {
-							d = p2.euclidian(p);
-							collidingBody = b;
-							collidingPoint = p2;
-							vector.x = p2.x;
-							vector.y = p2.y;
-							vector.minus(p);
-						}
-					}
-				}
-			}
+	/** Computes the candidate pairs of all movements submitted before the pulse. */
+	private void prepareBroadPhase() {
+		this.clearBroadPhase();
+		if ((!(_broadPhase)) || (_world == null))
+			return;
+		for (Influence i : _influences) {
+			if (!(i instanceof MovementInfluence))
+				continue;
+			MovementInfluence m = (MovementInfluence)i;
+			if ((m.target() != null) && (m.vector() != null))
+				_pairs.add(m);
 		}
-		
-		this.callbackMove(i);
-		if (collidingBody != null)
-			this.submitPrioritaryInfluence(new CollideInfluence(target,collidingBody,collidingPoint));
-		return i;
+		if ((_pairs.size() == 0) || (((long)_pairs.size()) * BROAD_PHASE_RATIO < _world.size())) {
+			_pairs.clear();
+			return;
+		}
+		_pairs.prepare(_world.scene());
+		_broadPhaseValid = true;
+	}
+
+	private void clearBroadPhase() {
+		_broadPhaseValid = false;
+		_nextMovement = 0;
+		_pairs.clear();
+	}
+
+	/** Influences which do not modify the scene beyond the broad phase boxes. */
+	private static boolean keepsBroadPhase(Influence i) {
+		return ((i instanceof MovementInfluence)
+		     || (i instanceof CollideInfluence)
+		     || (i instanceof ChangeBodyPropertyInfluence)
+		     || (i instanceof PropertyBoundInfluence)
+		     || (i instanceof MultipleInfluence));
 	}
 
 	protected Influence makeInfluence(CollideInfluence i) {
@@ -189,14 +602,26 @@ public class DefaultHeart implements Heart {
 
 	protected Influence makeInfluence(ChangeBodyPropertyInfluence i) {
 		Object v = i.value();
+		Body target = i.target();
+		// a typed property is resolved once, its bounds lying in the same slot
+		PropertyKey.Ref ref = PropertyKey.ref(i.property());
+		boolean typed = ((ref != null) && (ref.part == PropertyKey.VALUE));
 		OperatorPlus op = i.operator();
 		if (op != null) {
-			Object c = i.target().get(i.property());
+			Object c = typed ? target.getTyped(ref.key,PropertyKey.VALUE) : target.get(i.property());
 			v = op.exec(c,v);
 		}
 		Comparator cmp = i.comparator();
-		Object min = i.target().get(i.property()+Properties.SUFFIX_MIN);
-		Object max = i.target().get(i.property()+Properties.SUFFIX_MAX);
+		Object min;
+		Object max;
+		if (typed) {
+			min = target.getTyped(ref.key,PropertyKey.MIN);
+			max = target.getTyped(ref.key,PropertyKey.MAX);
+		}
+		else {
+			min = target.get(i.property()+Properties.SUFFIX_MIN);
+			max = target.get(i.property()+Properties.SUFFIX_MAX);
+		}
 		int limit = 0;
 		if ((min != null) || (max != null)) {
 			if (cmp != null) {
@@ -229,6 +654,52 @@ public class DefaultHeart implements Heart {
 		return i;
 	}
 
+	/**
+	 * Adds an <code>int</code> to a typed property, clamped as by
+	 * <code>makeInfluence(ChangeBodyPropertyInfluence)</code>, without boxing.
+	 * Boxed values, properties which are not typed or not set yet go the
+	 * generic way.
+	 */
+	protected Influence makeInfluence(ChangeBodyIntegerPropertyInfluence i) {
+		PropertyKey<Integer> key = i.key();
+		Body target = i.target();
+		if ((key == null) || (!(i.isInt())) || (!(target.has(key))))
+			return this.makeInfluence((ChangeBodyPropertyInfluence)i);
+		int v = target.getInt(key) + i.intValue();
+		int limit = 0;
+		// same comparison as INTEGER_COMPARATOR
+		if ((target.has(key,PropertyKey.MIN)) && (v - target.getInt(key,PropertyKey.MIN) < 0)) {
+			v = target.getInt(key,PropertyKey.MIN);
+			limit = -1;
+		}
+		else if ((target.has(key,PropertyKey.MAX)) && (v - target.getInt(key,PropertyKey.MAX) > 0)) {
+			v = target.getInt(key,PropertyKey.MAX);
+			limit = 1;
+		}
+		i.setIntValue(v);
+		callbackChangeBodyProperty(i);
+		if (limit < 0)
+			onPropertyMinReached(target,i.property());
+		else if (limit > 0)
+			onPropertyMaxReached(target,i.property());
+		return i;
+	}
+
+	/**
+	 * Reports a decaying property reaching its bound, unless it has been set
+	 * since the bound has been scheduled.
+	 */
+	protected Influence makeInfluence(PropertyBoundInfluence i) {
+		Body target = i.target();
+		if ((i.key() == null) || (target.decayVersion(i.key()) != i.version()))
+			return null;
+		if (i.part() == PropertyKey.MIN)
+			onPropertyMinReached(target,i.key().name());
+		else
+			onPropertyMaxReached(target,i.key().name());
+		return i;
+	}
+
 	protected Influence makeInfluence(DeathInfluence i) {
 		//System.out.println("death!");
 		_world.remove(i.target().agent());
@@ -252,6 +723,14 @@ public class DefaultHeart implements Heart {
 		i.target().set(i.property(),i.value());
 	}
 
+	/** Stores the value of an <code>int</code> property change, without boxing it if possible. */
+	protected void callbackChangeBodyProperty(ChangeBodyIntegerPropertyInfluence i) {
+		if ((i.key() != null) && (i.isInt()))
+			i.target().setInt(i.key(),i.intValue());
+		else
+			this.callbackChangeBodyProperty((ChangeBodyPropertyInfluence)i);
+	}
+
 	protected void callbackMove(MovementInfluence i) {
 		//System.out.println("callBackMove()");
 		//System.out.println("\ti.target = "+i.target());
@@ -259,8 +738,13 @@ public class DefaultHeart implements Heart {
 		i.target().translate(i.vector());
 	}
 
+	/**
+	 * Called when a property reaches its minimal value, by an influence or by
+	 * decaying (see <code>Body.setDecay</code>).
+	 * A body without health dies, and so does a starving one, without feed.
+	 */
 	protected void onPropertyMinReached(Body target, String property) {
-		if (property.equals(Properties.HEALTH))
+		if ((property.equals(Properties.HEALTH)) || (property.equals(Properties.FEED)))
 			this.submitPrioritaryInfluence(new DeathInfluence(target));
 	}
 
@@ -277,8 +761,65 @@ public class DefaultHeart implements Heart {
 		return (a.hasBody());
 	}
 
+	/**
+	 * The broad phase is run when at least one agent in this number moves
+	 * (see <code>setBroadPhase</code>).
+	 */
+	public static final int BROAD_PHASE_RATIO = 8;
+
 	private World _world;
 	private LinkedList<Influence> _influences = new LinkedList<Influence>();
+	private final BufferScene _candidates = new BufferScene();
+	private final Rectangle _area = new Rectangle();
+	private final int[] _points = new int[2*Collisions.MAX_POINTS];
+	private boolean _broadPhase = true;
+	private boolean _broadPhaseValid = false;
+	private int _nextMovement = 0;
+	private final MovementBroadPhase _pairs = new MovementBroadPhase();
+	private final HashMap<Class<?>,InfluenceHandler<?>> _handlers = new HashMap<Class<?>,InfluenceHandler<?>>();
+	@SuppressWarnings("rawtypes")
+	private final HashMap<Class<?>,InfluenceHandler> _resolved = new HashMap<Class<?>,InfluenceHandler>();
+	@SuppressWarnings("rawtypes")
+	private final HashMap<Class<?>,InfluenceCombiner> _combiners = new HashMap<Class<?>,InfluenceCombiner>();
+	private final ArrayList<Influence> _aggregated = new ArrayList<Influence>();
+	private final HashMap<Group,Integer> _groups = new HashMap<Group,Integer>();
+	private PulseListener _listener = null;
+	private final ArrayList<Influence> _submitted = new ArrayList<Influence>();
+	private int _nextSubmitted = 0;
+	private Class<?> _lastClass = null;
+	@SuppressWarnings("rawtypes")
+	private InfluenceHandler _lastHandler = null;
+
+	/** Combination group of an influence. */
+	private static final class Group {
+		Group(Body target, Class<?> type, Object kind) {
+			_target = target;
+			_type = type;
+			_kind = kind;
+		}
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Group))
+				return false;
+			Group g = (Group)o;
+			return ((_target == g._target) && (_type == g._type) && (_kind.equals(g._kind)));
+		}
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(_target) * 31 + _type.hashCode()) * 31 + _kind.hashCode();
+		}
+		private final Body _target;
+		private final Class<?> _type;
+		private final Object _kind;
+	};
+
+	@SuppressWarnings("rawtypes")
+	private static final InfluenceHandler NO_HANDLER = new InfluenceHandler<Influence>() {
+		@Override
+		public Influence make(Influence i) {
+			return null;
+		}
+	};
 
 };
 
@@ -0,0 +1,131 @@
+package ori.mas.core;
+
+import ori.mas.influences.PhysicalInfluence;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Heart applying influences at given times.
+ * <p>
+ * Besides the influences submitted for the current tick, influences may be
+ * scheduled to take effect at a later tick (a delayed death, a periodic feed
+ * decay, the end of an action lasting several ticks...).
+ * Scheduled influences are kept in a priority queue, and each pulse first
+ * applies the ones which are due, by time then scheduling order, before the
+ * submitted ones.
+ * Time is the world one (see <code>World.ticks</code>).
+ * </p>
+ * <p>
+ * A due physical influence whose target does not belong to the world scene
+ * any longer is dropped.
+ * The next event time allows the world to skip the ticks where nothing
+ * happens (see <code>World.skipIdle</code>).
+ * </p>
+ */
+public class EventHeart extends DefaultHeart {
+
+	public EventHeart() {
+		super();
+	}
+
+	public EventHeart(World w) {
+		super(w);
+	}
+
+	/**
+	 * Schedules an influence.
+	 * @param i The influence to apply.
+	 * @param delay The number of ticks to wait, <code>0</code> to apply it
+	 * on the next pulse.
+	 */
+	public void schedule(Influence i, long delay) {
+		if (delay < 0)
+			throw new IllegalArgumentException("delay must not be negative: "+delay);
+		this.scheduleAt(i,this.now() + delay);
+	}
+
+	/**
+	 * Schedules an influence at a given time, a past time meaning the next
+	 * pulse.
+	 * @param i The influence to apply.
+	 * @param time The world tick of the pulse applying it.
+	 */
+	public void scheduleAt(Influence i, long time) {
+		if (i != null)
+			_events.add(new Event(time,_sequence++,i));
+	}
+
+	/** @return The number of scheduled influences not applied yet. */
+	public int nbScheduled() {
+		return _events.size();
+	}
+
+	/**
+	 * @return The time of the next pulse having something to apply, the
+	 * current one if influences have been submitted, <code>Long.MAX_VALUE</code>
+	 * if there is none.
+	 */
+	public long nextTime() {
+		if (!(this.influences().isEmpty()))
+			return this.now();
+		Event e = _events.peek();
+		if (e == null)
+			return Long.MAX_VALUE;
+		return Math.max(e.time,this.now());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>Due scheduled influences are applied first.</p>
+	 */
+	@Override
+	public List<Influence> pulse() {
+		long now = this.now();
+		Scene scene = (this.world() == null) ? null : this.world().scene();
+		while ((!(_events.isEmpty())) && (_events.peek().time <= now)) {
+			Influence i = _events.poll().influence;
+			if ((i instanceof PhysicalInfluence) && (scene != null)) {
+				Body target = ((PhysicalInfluence)i).target();
+				if ((target != null) && (!(scene.contains(target))))
+					continue;
+			}
+			_due.add(i);
+		}
+		if (!(_due.isEmpty())) {
+			this.influences().addAll(0,_due);
+			_due.clear();
+		}
+		return super.pulse();
+	}
+
+	/** @return The current world time. */
+	private long now() {
+		return (this.world() == null) ? 0 : this.world().ticks();
+	}
+
+	private final PriorityQueue<Event> _events = new PriorityQueue<Event>(16,new Comparator<Event>() {
+		@Override
+		public int compare(Event a, Event b) {
+			if (a.time != b.time)
+				return (a.time < b.time) ? -1 : 1;
+			return (a.sequence < b.sequence) ? -1 : ((a.sequence == b.sequence) ? 0 : 1);
+		}
+	});
+	private final ArrayList<Influence> _due = new ArrayList<Influence>();
+	private long _sequence = 0;
+
+	private static final class Event {
+		Event(long time, long sequence, Influence influence) {
+			this.time = time;
+			this.sequence = sequence;
+			this.influence = influence;
+		}
+		final long time;
+		final long sequence;
+		final Influence influence;
+	};
+
+};
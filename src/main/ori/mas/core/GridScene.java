@@ -0,0 +1,328 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.geometry.Shape;
+import ori.ogapi.util.AbstractIterator;
+import ori.ogapi.util.Iterator;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * Uniform grid scene (spatial hash).
+ * <p>
+ * The plane is divided into square cells of <code>cellSize</code> units.
+ * Each body is registered into every cell its bounding rectangle overlaps,
+ * and cells are hashed into a fixed number of buckets, so the world does not
+ * need to be bounded.
+ * Queries only visit the cells overlapped by the bounding rectangle of the
+ * query shape, then apply the same exact tests as <code>AdaptedScene</code>
+ * (<code>Shape.contains</code>, <code>Shapes.collide</code> and center
+ * equality) to the bodies whose bounding rectangle overlaps the query one.
+ * Thus, far bodies wrongly reported by <code>Shapes.collide</code> (integer
+ * overflows on large coordinates) are never returned, whatever the cell size.
+ * </p>
+ * <p>
+ * The scene listens to its bodies, thus a body moved through
+ * <code>Body.translate</code> (or whose shape is replaced) is moved to its new
+ * cells automatically.
+ * </p>
+ * <p>
+ * Queries do not modify the scene, they may be run concurrently as long as no
+ * body is added, removed or moved at the same time.
+ * The iteration order is the insertion order, except that removing a body
+ * moves the last inserted body to its place.
+ * </p>
+ */
+public class GridScene implements Scene, BodyListener {
+
+	public static final int DEFAULT_CELL_SIZE   = 64;
+	public static final int DEFAULT_NB_BUCKETS  = 1 << 14;
+
+	public GridScene() {
+		this(DEFAULT_CELL_SIZE,DEFAULT_NB_BUCKETS);
+	}
+
+	public GridScene(int cellSize) {
+		this(cellSize,DEFAULT_NB_BUCKETS);
+	}
+
+	/**
+	 * @param cellSize The side length of a cell, should be close to the
+	 * size of the most common query shapes (sensors).
+	 * @param nbBuckets The number of hash buckets, rounded up to a power of
+	 * two.
+	 */
+	public GridScene(int cellSize, int nbBuckets) {
+		if (cellSize <= 0)
+			throw new IllegalArgumentException("cell size must be positive: "+cellSize);
+		int n = 1;
+		while (n < nbBuckets)
+			n <<= 1;
+		_cellSize = cellSize;
+		_mask = n - 1;
+		_buckets = newBuckets(n);
+	}
+
+	@SuppressWarnings({"unchecked","rawtypes"})
+	private static ArrayList<Entry>[] newBuckets(int n) {
+		return (ArrayList<Entry>[])new ArrayList[n];
+	}
+
+	public int cellSize() {
+		return _cellSize;
+	}
+
+	@Override
+	public boolean add(Body b) {
+		if ((b == null) || (_entries.containsKey(b)))
+			return false;
+		Entry e = new Entry(b);
+		e.index = _list.size();
+		_list.add(e);
+		_entries.put(b,e);
+		this.computeCells(e);
+		this.link(e);
+		b.addListener(this);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Body b) {
+		Entry e = _entries.remove(b);
+		if (e == null)
+			return false;
+		this.unlink(e);
+		this.removeFromList(e);
+		b.removeListener(this);
+		return true;
+	}
+
+	@Override
+	public boolean contains(Body b) {
+		return _entries.containsKey(b);
+	}
+
+	public int size() {
+		return _list.size();
+	}
+
+	@Override
+	public Scene getIn(Shape s) {
+		BufferScene res = new BufferScene();
+		this.query(s,Scenes.IN,null,res);
+		return res;
+	}
+
+	@Override
+	public Scene getPartlyIn(Shape s) {
+		BufferScene res = new BufferScene();
+		this.query(s,Scenes.PARTLY_IN,null,res);
+		return res;
+	}
+
+	@Override
+	public Scene getAt(Point p) {
+		BufferScene res = new BufferScene();
+		this.forEachAt(p,res);
+		return res;
+	}
+
+	@Override
+	public void forEachIn(Shape s, BodyVisitor v) {
+		this.query(s,Scenes.IN,null,v);
+	}
+
+	@Override
+	public void forEachPartlyIn(Shape s, BodyVisitor v) {
+		this.query(s,Scenes.PARTLY_IN,null,v);
+	}
+
+	@Override
+	public void forEachAt(Point p, BodyVisitor v) {
+		int x = p.x, y = p.y;
+		this.query(null,Scenes.AT,p,x,y,x,y,v);
+	}
+
+	@Override
+	public Iterator<Body> iterator() {
+		return new GridIterator();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void onMove(Body b) {
+		Entry e = _entries.get(b);
+		if (e == null)
+			return;
+		int minX = e.minX, minY = e.minY, maxX = e.maxX, maxY = e.maxY;
+		this.computeCells(e);
+		if ((minX == e.minX) && (minY == e.minY) && (maxX == e.maxX) && (maxY == e.maxY))
+			return;
+		this.unlink(e,minX,minY,maxX,maxY);
+		this.link(e);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void onShapeChange(Body b) {
+		this.onMove(b);
+	}
+
+	private void query(Shape s, int mode, Point p, BodyVisitor v) {
+		Rectangle r = s.boundingRect();
+		this.query(s,mode,p,r.origin().x,r.origin().y,r.end().x,r.end().y,v);
+	}
+
+	/**
+	 * Visits the bodies matching a query.
+	 * <p>
+	 * If the query covers more cells than there are bodies, the bodies are
+	 * scanned directly instead.
+	 * </p>
+	 */
+	private void query(Shape s, int mode, Point p,
+	                   int x0, int y0, int x1, int y1, BodyVisitor v) {
+		int qMinX = cell(x0);
+		int qMinY = cell(y0);
+		int qMaxX = cell(x1);
+		int qMaxY = cell(y1);
+		long nbCells = ((long)(qMaxX - qMinX + 1)) * ((long)(qMaxY - qMinY + 1));
+		if (nbCells > _list.size()) {
+			for (int i = 0 ; i < _list.size() ; i++) {
+				Entry e = _list.get(i);
+				if ((e.overlaps(x0,y0,x1,y1))
+				 && (Scenes.matches(s,mode,p,e.body))
+				 && (!(v.visit(e.body))))
+					return;
+			}
+			return;
+		}
+		for (int cy = qMinY ; cy <= qMaxY ; cy++) {
+			for (int cx = qMinX ; cx <= qMaxX ; cx++) {
+				ArrayList<Entry> bucket = _buckets[this.hash(cx,cy)];
+				if (bucket == null)
+					continue;
+				for (int i = 0 ; i < bucket.size() ; i++) {
+					Entry e = bucket.get(i);
+					// a body spanning several cells is only reported from the
+					// first cell shared with the query
+					if ((Math.max(e.minX,qMinX) != cx) || (Math.max(e.minY,qMinY) != cy))
+						continue;
+					if ((e.maxX < cx) || (e.maxY < cy))
+						continue;
+					if ((e.overlaps(x0,y0,x1,y1))
+					 && (Scenes.matches(s,mode,p,e.body))
+					 && (!(v.visit(e.body))))
+						return;
+				}
+			}
+		}
+	}
+
+	private void computeCells(Entry e) {
+		Rectangle r = e.body.boundingRect();
+		e.x0 = r.origin().x;
+		e.y0 = r.origin().y;
+		e.x1 = r.end().x;
+		e.y1 = r.end().y;
+		e.minX = cell(e.x0);
+		e.minY = cell(e.y0);
+		e.maxX = cell(e.x1);
+		e.maxY = cell(e.y1);
+	}
+
+	private void link(Entry e) {
+		for (int cy = e.minY ; cy <= e.maxY ; cy++) {
+			for (int cx = e.minX ; cx <= e.maxX ; cx++) {
+				int h = this.hash(cx,cy);
+				ArrayList<Entry> bucket = _buckets[h];
+				if (bucket == null) {
+					bucket = new ArrayList<Entry>(4);
+					_buckets[h] = bucket;
+				}
+				// distinct cells may share a bucket, keep a single reference
+				if (!(bucket.contains(e)))
+					bucket.add(e);
+			}
+		}
+	}
+
+	private void unlink(Entry e) {
+		this.unlink(e,e.minX,e.minY,e.maxX,e.maxY);
+	}
+
+	private void unlink(Entry e, int minX, int minY, int maxX, int maxY) {
+		for (int cy = minY ; cy <= maxY ; cy++) {
+			for (int cx = minX ; cx <= maxX ; cx++) {
+				ArrayList<Entry> bucket = _buckets[this.hash(cx,cy)];
+				if (bucket != null)
+					bucket.remove(e);
+			}
+		}
+	}
+
+	private void removeFromList(Entry e) {
+		int last = _list.size() - 1;
+		Entry moved = _list.get(last);
+		_list.set(e.index,moved);
+		moved.index = e.index;
+		_list.remove(last);
+	}
+
+	private int cell(int coordinate) {
+		return Math.floorDiv(coordinate,_cellSize);
+	}
+
+	private int hash(int cx, int cy) {
+		return ((cx * 73856093) ^ (cy * 19349663)) & _mask;
+	}
+
+	private final int _cellSize;
+	private final int _mask;
+	private final ArrayList<Entry>[] _buckets;
+	private final ArrayList<Entry> _list = new ArrayList<Entry>();
+	private final IdentityHashMap<Body,Entry> _entries = new IdentityHashMap<Body,Entry>();
+
+	/** Body registration, holds its current bounding rectangle and cell range. */
+	private static final class Entry {
+		Entry(Body b) {
+			body = b;
+		}
+		boolean overlaps(int ox0, int oy0, int ox1, int oy1) {
+			return ((x0 <= ox1) && (ox0 <= x1) && (y0 <= oy1) && (oy0 <= y1));
+		}
+		final Body body;
+		int index;
+		int x0, y0, x1, y1;
+		int minX, minY, maxX, maxY;
+	};
+
+	protected class GridIterator extends AbstractIterator<Body> {
+		@Override
+		public boolean hasNext() {
+			return (_next < _list.size());
+		}
+		@Override
+		public Body next() throws NoSuchElementException {
+			if (!hasNext())
+				throw new NoSuchElementException("no more body");
+			_current = _list.get(_next++).body;
+			return _current;
+		}
+		@Override
+		public void remove() throws UnsupportedOperationException,NoSuchElementException {
+			if (_current == null)
+				throw new NoSuchElementException("next has not been called");
+			GridScene.this.remove(_current);
+			_current = null;
+			// the last body has been swapped into the removed slot
+			_next--;
+		}
+		private int _next = 0;
+		private Body _current = null;
+	};
+
+};
@@ -0,0 +1,478 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Shape;
+import ori.ogapi.geometry.Shapes;
+import ori.ogapi.util.AbstractIterator;
+import ori.ogapi.util.Iterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * Scene indexing its bodies by some of their properties.
+ * <p>
+ * An indexed scene wraps another scene, which answers the spatial queries,
+ * and keeps optional indexes over the properties of its bodies, maintained
+ * as properties are set (the scene listens to its bodies, see
+ * <code>PropertyListener</code>) :
+ * <ul>
+ * <li>sorted indexes, for numeric properties, answering range queries
+ * (<code>forEachBetween</code>),</li>
+ * <li>hash indexes, for categorical properties, answering equality queries
+ * (<code>forEachEqual</code>).</li>
+ * </ul>
+ * Both queries may be restricted to the bodies intersecting a shape : the
+ * bodies selected by the index are then tested against the shape.
+ * A query on a property which is not indexed scans the scene (or the bodies
+ * intersecting the shape).
+ * Bodies are visited by increasing value, then in indexing order.
+ * </p>
+ * <p>
+ * A body must be added and removed through the indexed scene (or its
+ * iterator), not through the wrapped one.
+ * The bodies whose property decays (see <code>Body.setDecay</code>) are
+ * kept out of the index, their current value being tested on each query.
+ * Modifications may happen concurrently (as property changes applied by a
+ * <code>ParallelHeart</code>), but not along with queries.
+ * </p>
+ */
+public class IndexedScene implements Scene, PropertyListener {
+
+	public IndexedScene(Scene scene) {
+		_scene = scene;
+	}
+
+	/** @return The wrapped scene. */
+	public Scene scene() {
+		return _scene;
+	}
+
+	/**
+	 * Indexes a numeric property for range queries.
+	 * Bodies whose property is not set, or is not a number, are not indexed.
+	 */
+	public synchronized void addSortedIndex(String property) {
+		this.addIndex(new SortedIndex(property));
+	}
+
+	/**
+	 * Indexes a property for equality queries.
+	 * Bodies whose property is not set are not indexed.
+	 */
+	public synchronized void addHashIndex(String property) {
+		this.addIndex(new HashIndex(property));
+	}
+
+	public synchronized void removeIndex(String property) {
+		_indexes.remove(property);
+	}
+
+	public boolean isIndexed(String property) {
+		return _indexes.containsKey(property);
+	}
+
+	/**
+	 * Visits the bodies whose property lies in <code>[min,max)</code>.
+	 * @param min The lowest value, <code>Double.NEGATIVE_INFINITY</code> for
+	 * no lower bound.
+	 * @param max The excluded highest value,
+	 * <code>Double.POSITIVE_INFINITY</code> for no upper bound.
+	 */
+	public void forEachBetween(String property, double min, double max, BodyVisitor v) {
+		this.forEachBetween(property,min,max,null,v);
+	}
+
+	/**
+	 * Visits the bodies whose property lies in <code>[min,max)</code>, and
+	 * which intersect a shape.
+	 * @param s The shape 'mask', <code>null</code> for the whole scene.
+	 */
+	public void forEachBetween(String property, double min, double max, Shape s, BodyVisitor v) {
+		Index index = _indexes.get(property);
+		if (index instanceof SortedIndex) {
+			for (Entry e : ((SortedIndex)index).between(min,max)) {
+				if (((s == null) || (Shapes.collide(s,e.body))) && (!(v.visit(e.body))))
+					return;
+			}
+			return;
+		}
+		this.scan(s,new Filter(property,min,max,null,v));
+	}
+
+	/** Visits the bodies whose property equals a value. */
+	public void forEachEqual(String property, Object value, BodyVisitor v) {
+		this.forEachEqual(property,value,null,v);
+	}
+
+	/**
+	 * Visits the bodies whose property equals a value, and which intersect a
+	 * shape.
+	 * @param s The shape 'mask', <code>null</code> for the whole scene.
+	 */
+	public void forEachEqual(String property, Object value, Shape s, BodyVisitor v) {
+		Index index = _indexes.get(property);
+		if (index instanceof HashIndex) {
+			ArrayList<Body> bodies = ((HashIndex)index).bucket(value);
+			for (int i = 0 ; (bodies != null) && (i < bodies.size()) ; i++) {
+				Body b = bodies.get(i);
+				if (((s == null) || (Shapes.collide(s,b))) && (!(v.visit(b))))
+					return;
+			}
+			return;
+		}
+		if (value != null)
+			this.scan(s,new Filter(property,0,0,value,v));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void onPropertyChange(Body b, String property) {
+		if (property == null) {
+			for (Index index : _indexes.values())
+				index.update(b);
+			return;
+		}
+		Index index = _indexes.get(property);
+		if (index != null)
+			index.update(b);
+	}
+
+	@Override
+	public synchronized boolean add(Body b) {
+		if (!(_scene.add(b)))
+			return false;
+		b.addPropertyListener(this);
+		for (Index index : _indexes.values())
+			index.update(b);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean remove(Body b) {
+		if (!(_scene.remove(b)))
+			return false;
+		this.unindex(b);
+		return true;
+	}
+
+	@Override
+	public boolean contains(Body b) {
+		return _scene.contains(b);
+	}
+
+	@Override
+	public Scene getIn(Shape s) {
+		return _scene.getIn(s);
+	}
+
+	@Override
+	public Scene getPartlyIn(Shape s) {
+		return _scene.getPartlyIn(s);
+	}
+
+	@Override
+	public Scene getAt(Point p) {
+		return _scene.getAt(p);
+	}
+
+	@Override
+	public void forEachIn(Shape s, BodyVisitor v) {
+		_scene.forEachIn(s,v);
+	}
+
+	@Override
+	public void forEachPartlyIn(Shape s, BodyVisitor v) {
+		_scene.forEachPartlyIn(s,v);
+	}
+
+	@Override
+	public void forEachAt(Point p, BodyVisitor v) {
+		_scene.forEachAt(p,v);
+	}
+
+	@Override
+	public Iterator<Body> iterator() {
+		return new IndexedIterator(_scene.iterator());
+	}
+
+	private void addIndex(Index index) {
+		_indexes.put(index.property,index);
+		for (Body b : _scene)
+			index.update(b);
+	}
+
+	private synchronized void unindex(Body b) {
+		b.removePropertyListener(this);
+		for (Index index : _indexes.values()) {
+			index.remove(b);
+			index.decaying.remove(b);
+		}
+	}
+
+	private void scan(Shape s, BodyVisitor v) {
+		if (s != null) {
+			_scene.forEachPartlyIn(s,v);
+			return;
+		}
+		for (Body b : _scene) {
+			if (!(v.visit(b)))
+				return;
+		}
+	}
+
+	/**
+	 * @return The value of a numeric property, <code>Double.NaN</code> if
+	 * it is not set or not a number.
+	 */
+	@SuppressWarnings("unchecked")
+	static double numericValue(Body b, String property, PropertyKey.Ref ref) {
+		if ((ref != null) && (ref.part == PropertyKey.VALUE)) {
+			if (!(b.has(ref.key)))
+				return Double.NaN;
+			switch (ref.key.type()) {
+				case INT  : return b.getInt((PropertyKey<Integer>)ref.key);
+				case LONG : return b.getLong((PropertyKey<Long>)ref.key);
+				default   : return b.getDouble((PropertyKey<Double>)ref.key);
+			}
+		}
+		Object value = b.get(property);
+		return (value instanceof Number) ? ((Number)value).doubleValue() : Double.NaN;
+	}
+
+	private final Scene _scene;
+	private final HashMap<String,Index> _indexes = new HashMap<String,Index>();
+
+	private static abstract class Index {
+		Index(String property) {
+			this.property = property;
+			this.ref = PropertyKey.ref(property);
+			_decayKey = ((this.ref != null) && (this.ref.part == PropertyKey.VALUE)) ? PropertyKey.intKeyOf(property) : null;
+		}
+		/** Indexes a body by its current value. */
+		abstract void update(Body b);
+		abstract void remove(Body b);
+		/**
+		 * Keeps a body apart if its property decays, its value changing
+		 * without notification.
+		 * @return <code>true</code> if the body is kept apart.
+		 */
+		boolean setAside(Body b) {
+			if ((_decayKey == null) || (b.decayRate(_decayKey) == 0)) {
+				this.decaying.remove(b);
+				return false;
+			}
+			this.remove(b);
+			this.decaying.put(b,Long.valueOf(this.sequence++));
+			return true;
+		}
+		final String property;
+		final PropertyKey.Ref ref;
+		/** Bodies whose property decays, with their indexing sequence. */
+		final IdentityHashMap<Body,Long> decaying = new IdentityHashMap<Body,Long>();
+		long sequence = 0;
+		private final PropertyKey<Integer> _decayKey;
+	};
+
+	private static final class Entry {
+		Entry(double value, long sequence, Body body) {
+			this.value = value;
+			this.sequence = sequence;
+			this.body = body;
+		}
+		final double value;
+		final long sequence;
+		final Body body;
+	};
+
+	private static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			int c = Double.compare(a.value,b.value);
+			if (c != 0)
+				return c;
+			return (a.sequence < b.sequence) ? -1 : ((a.sequence == b.sequence) ? 0 : 1);
+		}
+	};
+
+	/** Bodies sorted by value, then indexing order. */
+	private static final class SortedIndex extends Index {
+		SortedIndex(String property) {
+			super(property);
+		}
+		@Override
+		void update(Body b) {
+			if (this.setAside(b))
+				return;
+			double value = numericValue(b,this.property,this.ref);
+			Entry e = _entries.get(b);
+			if ((e != null) && (Double.compare(e.value,value) == 0))
+				return;
+			if (e != null) {
+				_sorted.remove(e);
+				_entries.remove(b);
+			}
+			if (Double.isNaN(value))
+				return;
+			e = new Entry(value,this.sequence++,b);
+			_sorted.add(e);
+			_entries.put(b,e);
+		}
+		@Override
+		void remove(Body b) {
+			Entry e = _entries.remove(b);
+			if (e != null)
+				_sorted.remove(e);
+		}
+		Iterable<Entry> between(double min, double max) {
+			if (!(min < max))
+				return Collections.<Entry>emptyList();
+			Iterable<Entry> indexed = _sorted.subSet(new Entry(min,Long.MIN_VALUE,null),true,new Entry(max,Long.MIN_VALUE,null),false);
+			if (this.decaying.isEmpty())
+				return indexed;
+			// merges the decaying bodies by their current value
+			ArrayList<Entry> res = new ArrayList<Entry>();
+			for (Entry e : indexed)
+				res.add(e);
+			for (Map.Entry<Body,Long> d : this.decaying.entrySet()) {
+				double value = numericValue(d.getKey(),this.property,this.ref);
+				if ((value >= min) && (value < max))
+					res.add(new Entry(value,d.getValue().longValue(),d.getKey()));
+			}
+			Collections.sort(res,ENTRY_ORDER);
+			return res;
+		}
+		private final TreeSet<Entry> _sorted = new TreeSet<Entry>(ENTRY_ORDER);
+		private final IdentityHashMap<Body,Entry> _entries = new IdentityHashMap<Body,Entry>();
+	};
+
+	/**
+	 * Bodies by value, each bucket in indexing order (removal swapping the
+	 * last body in), decaying ones following in indexing order.
+	 */
+	private static final class HashIndex extends Index {
+		HashIndex(String property) {
+			super(property);
+		}
+		@Override
+		void update(Body b) {
+			if (this.setAside(b))
+				return;
+			Object value = b.get(this.property);
+			Object current = _values.get(b);
+			if ((current != null) && (current.equals(value)))
+				return;
+			if (current != null)
+				this.remove(b);
+			if (value == null)
+				return;
+			ArrayList<Body> bucket = _buckets.get(value);
+			if (bucket == null) {
+				bucket = new ArrayList<Body>();
+				_buckets.put(value,bucket);
+			}
+			_values.put(b,value);
+			_positions.put(b,Integer.valueOf(bucket.size()));
+			bucket.add(b);
+		}
+		@Override
+		void remove(Body b) {
+			Object value = _values.remove(b);
+			if (value == null)
+				return;
+			ArrayList<Body> bucket = _buckets.get(value);
+			int i = _positions.remove(b).intValue();
+			Body last = bucket.remove(bucket.size() - 1);
+			if (last != b) {
+				bucket.set(i,last);
+				_positions.put(last,Integer.valueOf(i));
+			}
+			if (bucket.isEmpty())
+				_buckets.remove(value);
+		}
+		ArrayList<Body> bucket(Object value) {
+			ArrayList<Body> bucket = (value == null) ? null : _buckets.get(value);
+			if ((value == null) || (this.decaying.isEmpty()))
+				return bucket;
+			// appends the decaying bodies whose current value matches
+			ArrayList<Entry> matches = new ArrayList<Entry>();
+			for (Map.Entry<Body,Long> d : this.decaying.entrySet()) {
+				if (value.equals(d.getKey().get(this.property)))
+					matches.add(new Entry(0,d.getValue().longValue(),d.getKey()));
+			}
+			if (matches.isEmpty())
+				return bucket;
+			Collections.sort(matches,ENTRY_ORDER);
+			ArrayList<Body> res = (bucket == null) ? new ArrayList<Body>() : new ArrayList<Body>(bucket);
+			for (int i = 0 ; i < matches.size() ; i++)
+				res.add(matches.get(i).body);
+			return res;
+		}
+		private final HashMap<Object,ArrayList<Body>> _buckets = new HashMap<Object,ArrayList<Body>>();
+		private final IdentityHashMap<Body,Object> _values = new IdentityHashMap<Body,Object>();
+		private final IdentityHashMap<Body,Integer> _positions = new IdentityHashMap<Body,Integer>();
+	};
+
+	/** Visitor filtering the bodies of a non indexed query (by value if any, else by range). */
+	private static final class Filter implements BodyVisitor {
+		Filter(String property, double min, double max, Object value, BodyVisitor v) {
+			_property = property;
+			_ref = PropertyKey.ref(property);
+			_min = min;
+			_max = max;
+			_value = value;
+			_visitor = v;
+		}
+		@Override
+		public boolean visit(Body b) {
+			if (_value != null) {
+				if (!(_value.equals(b.get(_property))))
+					return true;
+			}
+			else {
+				double value = numericValue(b,_property,_ref);
+				if ((!(value >= _min)) || (!(value < _max)))
+					return true;
+			}
+			return _visitor.visit(b);
+		}
+		private final String _property;
+		private final PropertyKey.Ref _ref;
+		private final double _min;
+		private final double _max;
+		private final Object _value;
+		private final BodyVisitor _visitor;
+	};
+
+	/** Iterator unindexing the bodies it removes. */
+	protected class IndexedIterator extends AbstractIterator<Body> {
+		public IndexedIterator(Iterator<Body> it) {
+			_iterator = it;
+		}
+		@Override
+		public boolean hasNext() {
+			return _iterator.hasNext();
+		}
+		@Override
+		public Body next() throws NoSuchElementException {
+			_current = _iterator.next();
+			return _current;
+		}
+		@Override
+		public void remove() throws UnsupportedOperationException {
+			_iterator.remove();
+			if (_current != null)
+				unindex(_current);
+			_current = null;
+		}
+		private final Iterator<Body> _iterator;
+		private Body _current = null;
+	};
+
+};
@@ -0,0 +1,27 @@
+package ori.mas.core;
+
+/**
+ * Combines simultaneous influences of a given type on a same target.
+ * @param <I> The combined influence type.
+ * @see DefaultHeart#setCombiner
+ */
+public interface InfluenceCombiner<I extends Influence> {
+
+	/**
+	 * Gives the kind of an influence : influences of a same class, on a same
+	 * target and of equal kinds are combined.
+	 * @param influence The influence.
+	 * @return The influence kind, <code>null</code> if this influence must
+	 * not be combined.
+	 */
+	public Object kind(I influence);
+
+	/**
+	 * Combines two influences of the same kind.
+	 * @param first The first submitted influence (possibly already combined).
+	 * @param second The next one.
+	 * @return The influence having the effect of both.
+	 */
+	public I combine(I first, I second);
+
+};
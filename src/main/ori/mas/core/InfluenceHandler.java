@@ -0,0 +1,18 @@
+package ori.mas.core;
+
+/**
+ * Applies the influences of a given type.
+ * @param <I> The handled influence type.
+ * @see DefaultHeart#setHandler
+ */
+public interface InfluenceHandler<I extends Influence> {
+
+	/**
+	 * Applies an influence.
+	 * @param influence The influence to apply.
+	 * @return The influence which has really been applied (may be
+	 * <code>null</code>).
+	 */
+	public Influence make(I influence);
+
+};
@@ -0,0 +1,178 @@
+package ori.mas.core;
+
+import ori.mas.influences.MovementInfluence;
+
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.geometry.Shape;
+import ori.ogapi.geometry.Shapes;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Candidate pairs of a set of movements, computed by a single sort and sweep.
+ * <p>
+ * A moving body may be anywhere between its position and its position
+ * translated by the sum of its movements (movements are only shortened by
+ * collisions), thus the boxes of the movements and of the scene bodies are
+ * extended by the sum of the negative and positive components of the
+ * movements of their body.
+ * Candidates of a movement are then filtered and ordered as the scene partial
+ * intersection query of an <code>AdaptedScene</code> would do.
+ * </p>
+ * <p>
+ * Once prepared, candidates of distinct movements may be read concurrently.
+ * </p>
+ */
+class MovementBroadPhase {
+
+	/** Removes all movements and pairs. */
+	void clear() {
+		_movements.clear();
+		_bodies.clear();
+		_reaches.clear();
+		_sweep.clear();
+		_nbReaches = 0;
+	}
+
+	/** Adds a movement, whose target and vector must be defined. */
+	void add(MovementInfluence m) {
+		_movements.add(m);
+		this.reach(m.target()).add(m.vector());
+	}
+
+	int size() {
+		return _movements.size();
+	}
+
+	MovementInfluence movement(int k) {
+		return _movements.get(k);
+	}
+
+	/** @return The number of added movements of a body. */
+	int nbMovements(Body b) {
+		Reach r = _reaches.get(b);
+		return (r == null) ? 0 : r.count;
+	}
+
+	/**
+	 * Computes the candidate pairs of the added movements against the bodies
+	 * of a scene.
+	 */
+	void prepare(Scene scene) {
+		if (_boxes.length < 4*_movements.size())
+			_boxes = new int[Math.max(4*_movements.size(),_boxes.length * 2)];
+		for (int k = 0 ; k < _movements.size() ; k++) {
+			MovementInfluence m = _movements.get(k);
+			Reach r = _reaches.get(m.target());
+			DefaultHeart.sweptArea(m.target(),ZERO,_area);
+			_boxes[4*k]   = _area.origin().x - r.negX - MARGIN;
+			_boxes[4*k+1] = _area.origin().y - r.negY - MARGIN;
+			_boxes[4*k+2] = _area.end().x + r.posX + MARGIN;
+			_boxes[4*k+3] = _area.end().y + r.posY + MARGIN;
+			_sweep.addA(_boxes[4*k],_boxes[4*k+1],_boxes[4*k+2],_boxes[4*k+3]);
+		}
+		for (Body b : scene) {
+			Rectangle box = b.boundingRect();
+			Reach r = _reaches.get(b);
+			if (r == null)
+				_sweep.addB(box.origin().x,box.origin().y,box.end().x,box.end().y);
+			else
+				_sweep.addB(box.origin().x - r.negX - MARGIN,box.origin().y - r.negY - MARGIN,
+				            box.end().x + r.posX + MARGIN,box.end().y + r.posY + MARGIN);
+			_bodies.add(b);
+		}
+		int n = _sweep.sweep();
+		int nbA = _sweep.nbA();
+		if (_firstPair.length < nbA + 1)
+			_firstPair = new int[Math.max(nbA + 1,_firstPair.length * 2)];
+		int k = 0;
+		for (int p = 0 ; p < n ; p++) {
+			int a = _sweep.pairA(p);
+			while (k <= a)
+				_firstPair[k++] = p;
+		}
+		while (k <= nbA)
+			_firstPair[k++] = n;
+	}
+
+	/**
+	 * Visits the candidates of a movement, in scene order.
+	 * @param k The movement index.
+	 * @param area The area currently swept by the movement.
+	 */
+	void candidates(int k, Shape area, BodyVisitor v) {
+		for (int n = _firstPair[k] ; n < _firstPair[k+1] ; n++) {
+			Body b = _bodies.get(_sweep.pairB(n));
+			if (Shapes.collide(area,b))
+				v.visit(b);
+		}
+	}
+
+	/** @return The index of the first pair of a movement. */
+	int firstPair(int k) {
+		return _firstPair[k];
+	}
+
+	/** @return The body of a pair. */
+	Body pairBody(int n) {
+		return _bodies.get(_sweep.pairB(n));
+	}
+
+	/**
+	 * @return The coordinates of the box of a movement (x0, y0, x1, y1 from
+	 * <code>4*k</code>).
+	 */
+	int[] boxes() {
+		return _boxes;
+	}
+
+	private Reach reach(Body b) {
+		Reach r = _reaches.get(b);
+		if (r == null) {
+			if (_nbReaches == _reachPool.size())
+				_reachPool.add(new Reach());
+			r = _reachPool.get(_nbReaches++);
+			r.negX = 0;
+			r.negY = 0;
+			r.posX = 0;
+			r.posY = 0;
+			r.count = 0;
+			_reaches.put(b,r);
+		}
+		return r;
+	}
+
+	/** Collision points are rounded, boxes of moving bodies are widened. */
+	private static final int MARGIN = 1;
+	private static final Point ZERO = new Point(0,0);
+
+	private final SweepAndPrune _sweep = new SweepAndPrune();
+	private final ArrayList<MovementInfluence> _movements = new ArrayList<MovementInfluence>();
+	private final ArrayList<Body> _bodies = new ArrayList<Body>();
+	private int[] _firstPair = new int[16];
+	private int[] _boxes = new int[64];
+	private final Rectangle _area = new Rectangle();
+	private final IdentityHashMap<Body,Reach> _reaches = new IdentityHashMap<Body,Reach>();
+	private final ArrayList<Reach> _reachPool = new ArrayList<Reach>();
+	private int _nbReaches = 0;
+
+	/** Sums of the movement components of a body. */
+	private static final class Reach {
+		void add(Point v) {
+			if (v.x < 0)
+				negX -= v.x;
+			else
+				posX += v.x;
+			if (v.y < 0)
+				negY -= v.y;
+			else
+				posY += v.y;
+			count++;
+		}
+		int negX, negY, posX, posY;
+		int count;
+	};
+
+};
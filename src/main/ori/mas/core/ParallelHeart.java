@@ -0,0 +1,306 @@
+package ori.mas.core;
+
+import ori.mas.influences.CollideInfluence;
+import ori.mas.influences.MovementInfluence;
+
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.lists.Fifo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Heart applying movements of distinct spatial regions in parallel.
+ * <p>
+ * Influences are applied in the order they have been added, as for
+ * <code>DefaultHeart</code>, except for runs of consecutive movement
+ * influences (of distinct bodies) : such a run is split into groups of
+ * movements which may interact (their swept areas overlap, directly or
+ * through other movements of the group).
+ * The plane is divided into square regions of <code>regionSize</code> units,
+ * and the groups lying inside a single region are applied region by region
+ * in parallel, while the groups crossing a region boundary are applied
+ * afterwards by an ordered serial pass.
+ * Within each region, movements are applied in their submission order.
+ * Then bodies listeners are notified and collisions are applied, in the
+ * submission order.
+ * </p>
+ * <p>
+ * As groups do not interact, the resulting movements are those of
+ * <code>DefaultHeart</code>, as long as :
+ * <ul>
+ * <li><code>mayCollide</code> only depends on bodies positions,</li>
+ * <li>collision influences do not move nor remove bodies.</li>
+ * </ul>
+ * Candidates come from the movements broad phase rather than from the scene,
+ * and a movement hitting several bodies at the same distance stops on the
+ * one of smallest agent identifier, as for <code>DefaultHeart</code>, thus
+ * the result does not depend on the scene.
+ * Moved bodies are translated without notifying their listeners, which are
+ * notified afterwards by a single thread, so that the scene index (a
+ * quadtree may redistribute other bodies) is only updated serially.
+ * Parallel movements are applied without calling <code>callbackMove</code>
+ * nor <code>makeInfluence(MovementInfluence)</code>.
+ * </p>
+ */
+public class ParallelHeart extends DefaultHeart {
+
+	public static final int DEFAULT_REGION_SIZE = 256;
+
+	public ParallelHeart() {
+		this(DEFAULT_REGION_SIZE,ForkJoinPool.commonPool());
+	}
+
+	public ParallelHeart(int regionSize) {
+		this(regionSize,ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param regionSize The side length of a region, should be large compared
+	 * to the movements lengths.
+	 * @param executor The executor applying the regions movements.
+	 */
+	public ParallelHeart(int regionSize, Executor executor) {
+		super();
+		if (regionSize <= 0)
+			throw new IllegalArgumentException("region size must be positive: "+regionSize);
+		if (executor == null)
+			throw new IllegalArgumentException("executor must not be null");
+		_regionSize = regionSize;
+		_executor = executor;
+		this.setBroadPhase(false);
+	}
+
+	public int regionSize() {
+		return _regionSize;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Influence> pulse() {
+		List<Influence> madeInfluences = new Fifo<Influence>();
+		LinkedList<Influence> influences = this.influences();
+		Influence i;
+		this.aggregate();
+		this.firePulseStarted();
+		while (!(influences.isEmpty())) {
+			if ((_next == _pairs.size()) && (this.collectSegment()))
+				this.applySegment();
+			i = influences.pop();
+			this.fireApplied(i);
+			if ((_next < _pairs.size()) && (_pairs.movement(_next) == i)) {
+				// already applied, only its collision remains
+				madeInfluences.add(i);
+				CollideInfluence c = _collides[_next++];
+				if (c != null)
+					this.submitPrioritaryInfluence(c);
+				continue;
+			}
+			i = this.makeInfluence(i);
+			if (i != null)
+				madeInfluences.add(i);
+		}
+		_pairs.clear();
+		_next = 0;
+		this.firePulseEnded();
+		return madeInfluences;
+	}
+
+	/**
+	 * Collects the run of movements starting the influences list.
+	 * @return <code>true</code> if the run is long enough to be applied in
+	 * parallel.
+	 */
+	private boolean collectSegment() {
+		_pairs.clear();
+		_next = 0;
+		for (Influence i : this.influences()) {
+			if (!(i instanceof MovementInfluence))
+				break;
+			MovementInfluence m = (MovementInfluence)i;
+			if ((m.target() == null) || (m.vector() == null)
+			 || (_pairs.nbMovements(m.target()) > 0))
+				break;
+			_pairs.add(m);
+		}
+		if (_pairs.size() < MIN_SEGMENT) {
+			_pairs.clear();
+			return false;
+		}
+		return true;
+	}
+
+	/** Applies the collected movements, region by region. */
+	private void applySegment() {
+		int n = _pairs.size();
+		_pairs.prepare(this.world().scene());
+		if (_collides.length < n) {
+			_collides = new CollideInfluence[Math.max(n,_collides.length * 2)];
+			_parent = new int[_collides.length];
+			_groups = new int[4*_collides.length];
+		}
+		// groups of interacting movements
+		_indexes.clear();
+		for (int k = 0 ; k < n ; k++) {
+			_parent[k] = k;
+			_indexes.put(_pairs.movement(k).target(),k);
+		}
+		for (int k = 0 ; k < n ; k++) {
+			for (int p = _pairs.firstPair(k) ; p < _pairs.firstPair(k+1) ; p++) {
+				Integer j = _indexes.get(_pairs.pairBody(p));
+				if (j != null)
+					this.union(k,j);
+			}
+		}
+		int[] boxes = _pairs.boxes();
+		for (int k = 0 ; k < n ; k++) {
+			int r = this.find(k);
+			if (r == k) {
+				System.arraycopy(boxes,4*k,_groups,4*k,4);
+				continue;
+			}
+			_groups[4*r]   = Math.min(_groups[4*r],boxes[4*k]);
+			_groups[4*r+1] = Math.min(_groups[4*r+1],boxes[4*k+1]);
+			_groups[4*r+2] = Math.max(_groups[4*r+2],boxes[4*k+2]);
+			_groups[4*r+3] = Math.max(_groups[4*r+3],boxes[4*k+3]);
+		}
+		// dispatch groups on regions
+		HashMap<Long,Region> regions = new HashMap<Long,Region>();
+		ArrayList<Region> tasks = new ArrayList<Region>();
+		_serial.clear();
+		for (int k = 0 ; k < n ; k++) {
+			int r = this.find(k);
+			int x0 = Math.floorDiv(_groups[4*r],_regionSize);
+			int y0 = Math.floorDiv(_groups[4*r+1],_regionSize);
+			int x1 = Math.floorDiv(_groups[4*r+2],_regionSize);
+			int y1 = Math.floorDiv(_groups[4*r+3],_regionSize);
+			if ((x0 != x1) || (y0 != y1)) {
+				_serial.add(k);
+				continue;
+			}
+			Long key = (((long)x0) << 32) | (y0 & 0xFFFFFFFFL);
+			Region region = regions.get(key);
+			if (region == null) {
+				region = new Region();
+				regions.put(key,region);
+				tasks.add(region);
+			}
+			region.movements.add(k);
+		}
+		this.run(tasks);
+		for (int k = 0 ; k < _serial.size() ; k++)
+			this.apply(_serial.get(k),_buffers);
+		for (int k = 0 ; k < n ; k++)
+			_pairs.movement(k).target().fireMove();
+	}
+
+	/** Runs the regions on the executor, and waits for their completion. */
+	private void run(ArrayList<Region> tasks) {
+		if (tasks.size() == 1) {
+			tasks.get(0).run();
+			return;
+		}
+		CountDownLatch done = new CountDownLatch(tasks.size());
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int t = 0 ; t < tasks.size() ; t++) {
+			Region region = tasks.get(t);
+			region.done = done;
+			region.failure = failure;
+			_executor.execute(region);
+		}
+		try {
+			done.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while applying movements",e);
+		}
+		Throwable t = failure.get();
+		if (t instanceof RuntimeException)
+			throw (RuntimeException)t;
+		if (t instanceof Error)
+			throw (Error)t;
+	}
+
+	/** Applies a movement without notifying the body listeners. */
+	private void apply(int k, Buffers buffers) {
+		MovementInfluence m = _pairs.movement(k);
+		Body target = m.target();
+		sweptArea(target,m.vector(),buffers.area);
+		buffers.candidates.clear();
+		_pairs.candidates(k,buffers.area,buffers.candidates);
+		_collides[k] = this.clamp(m,buffers.candidates,buffers.points);
+		target.translateQuietly(m.vector());
+	}
+
+	private int find(int k) {
+		while (_parent[k] != k) {
+			_parent[k] = _parent[_parent[k]];
+			k = _parent[k];
+		}
+		return k;
+	}
+
+	private void union(int a, int b) {
+		a = this.find(a);
+		b = this.find(b);
+		// the smallest index is kept as root
+		if (a < b)
+			_parent[b] = a;
+		else if (b < a)
+			_parent[a] = b;
+	}
+
+	/** Minimal number of consecutive movements applied in parallel. */
+	private static final int MIN_SEGMENT = 64;
+
+	private final int _regionSize;
+	private final Executor _executor;
+	private final MovementBroadPhase _pairs = new MovementBroadPhase();
+	private int _next = 0;
+	private CollideInfluence[] _collides = new CollideInfluence[64];
+	private int[] _parent = new int[64];
+	private int[] _groups = new int[256];
+	private final IdentityHashMap<Body,Integer> _indexes = new IdentityHashMap<Body,Integer>();
+	private final ArrayList<Integer> _serial = new ArrayList<Integer>();
+	private final Buffers _buffers = new Buffers();
+
+	/** Per thread buffers of the narrow phase. */
+	private static final class Buffers {
+		final Rectangle area = new Rectangle();
+		final BufferScene candidates = new BufferScene();
+		final int[] points = new int[2*Collisions.MAX_POINTS];
+	};
+
+	/** Movements of the groups lying inside a single region. */
+	private final class Region implements Runnable {
+		@Override
+		public void run() {
+			try {
+				Buffers buffers = new Buffers();
+				for (int k = 0 ; k < movements.size() ; k++)
+					apply(movements.get(k),buffers);
+			}
+			catch (Throwable t) {
+				if (failure == null)
+					throw t;
+				failure.compareAndSet(null,t);
+			}
+			finally {
+				if (done != null)
+					done.countDown();
+			}
+		}
+		final ArrayList<Integer> movements = new ArrayList<Integer>();
+		CountDownLatch done = null;
+		AtomicReference<Throwable> failure = null;
+	};
+
+};
@@ -0,0 +1,337 @@
+package ori.mas.core;
+
+import ori.mas.influences.BirthInfluence;
+import ori.mas.influences.MovementInfluence;
+import ori.mas.influences.MultipleInfluence;
+import ori.mas.influences.PhysicalInfluence;
+
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prepares the agents of the next tick while the heart pulses.
+ * <p>
+ * When the pulse starts, the footprint of each submitted influence (the
+ * swept area of a movement, the bounding rectangle of the target of any other
+ * physical influence, and of the children of a multiple influence) is counted
+ * in every square region of <code>regionSize</code> units it overlaps.
+ * Once an influence has been applied, its regions are released, and a region
+ * is complete when all influences overlapping it have been applied.
+ * Each agent waits for the regions overlapped by its body, its range sensors
+ * and their possible displacement, then it senses the scene (on the pulsing
+ * thread, between two influences) and thinks on the world executor, while the
+ * heart goes on with other regions.
+ * </p>
+ * <p>
+ * An agent is only prepared when nothing it senses or reads can still change
+ * during the pulse, thus its percepts are those it would get after the pulse,
+ * as long as an influence (and the ones its application submits) only modifies
+ * its targets.
+ * Agents having a sensor which is not a <code>RangeSensor</code>, and all
+ * agents of a pulse holding an influence whose footprint is unknown (birth,
+ * non physical influence), are not prepared, they sense and think at the
+ * start of the next tick.
+ * </p>
+ */
+final class Pipeline implements PulseListener {
+
+	static final int DEFAULT_REGION_SIZE = 128;
+
+	/** Maximal number of regions of a footprint, larger ones are unknown. */
+	private static final int MAX_REGIONS = 1024;
+
+	Pipeline(World world, int regionSize) {
+		if (regionSize <= 0)
+			throw new IllegalArgumentException("region size must be positive: "+regionSize);
+		_world = world;
+		_regionSize = regionSize;
+	}
+
+	int regionSize() {
+		return _regionSize;
+	}
+
+	/** @return <code>true</code> if the agent has been prepared during the last pulse. */
+	boolean isPrepared(Agent a) {
+		return _prepared.contains(a);
+	}
+
+	/** Forgets the prepared agents, once they have acted. */
+	void clearPrepared() {
+		_prepared.clear();
+	}
+
+	/**
+	 * Waits for the prepared agents to finish thinking.
+	 * @throws RuntimeException The first failure of a thinking agent.
+	 */
+	void await() {
+		try {
+			_done.acquire(_nbTasks);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while agents were thinking",e);
+		}
+		finally {
+			_nbTasks = 0;
+		}
+		Throwable t = _failure.getAndSet(null);
+		if (t instanceof RuntimeException)
+			throw (RuntimeException)t;
+		if (t instanceof Error)
+			throw (Error)t;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void pulseStarted(List<Influence> influences) {
+		_enabled = true;
+		for (int k = 0 ; k < influences.size() ; k++) {
+			Influence i = influences.get(k);
+			_box[0] = Integer.MAX_VALUE;
+			_box[1] = Integer.MAX_VALUE;
+			_box[2] = Integer.MIN_VALUE;
+			_box[3] = Integer.MIN_VALUE;
+			if ((!(this.footprint(i))) || (!(this.fits(_box)))) {
+				this.reset();
+				return;
+			}
+			this.pushFootprint(k);
+		}
+		for (Agent a : _world) {
+			if ((a == null) || (!(a.hasMind())) || (!(a.hasBody()))
+			 || (!(_world.isScheduled(a,_world.ticks() + 1))))
+				continue;
+			if (!(this.waitBox(a.body())))
+				continue;
+			Waiter w = new Waiter(a);
+			for (int ry = region(_box[1]) ; ry <= region(_box[3]) ; ry++) {
+				for (int rx = region(_box[0]) ; rx <= region(_box[2]) ; rx++) {
+					Region r = _regions.get(key(rx,ry));
+					if (r == null)
+						continue;
+					r.waiting.add(w);
+					w.pending++;
+				}
+			}
+			if (w.pending == 0)
+				this.prepare(a);
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void influenceApplied(int index) {
+		if ((!(_enabled)) || (_footprints[4*index] > _footprints[4*index+2]))
+			return;
+		for (int ry = region(_footprints[4*index+1]) ; ry <= region(_footprints[4*index+3]) ; ry++) {
+			for (int rx = region(_footprints[4*index]) ; rx <= region(_footprints[4*index+2]) ; rx++) {
+				Region r = _regions.get(key(rx,ry));
+				if (--r.pending > 0)
+					continue;
+				for (int n = 0 ; n < r.waiting.size() ; n++) {
+					Waiter w = r.waiting.get(n);
+					if (--w.pending == 0)
+						this.prepare(w.agent);
+				}
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void pulseEnded() {
+		this.reset();
+	}
+
+	private void reset() {
+		_enabled = false;
+		_regions.clear();
+		_reaches.clear();
+	}
+
+	/**
+	 * Senses on the calling thread, and thinks on the world executor, if the
+	 * agent still lives in the world.
+	 */
+	private void prepare(final Agent a) {
+		if (!(_world.contains(a)))
+			return;
+		a.sense(_world);
+		_prepared.add(a);
+		Executor executor = _world.executor();
+		if (executor == null) {
+			a.think();
+			return;
+		}
+		_nbTasks++;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					a.think();
+				}
+				catch (Throwable t) {
+					_failure.compareAndSet(null,t);
+				}
+				finally {
+					_done.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Extends the current box with the footprint of an influence.
+	 * @return <code>false</code> if the footprint is unknown.
+	 */
+	private boolean footprint(Influence i) {
+		if (i instanceof MultipleInfluence) {
+			for (Influence child : (MultipleInfluence)i) {
+				if (!(this.footprint(child)))
+					return false;
+			}
+			return true;
+		}
+		if ((i instanceof BirthInfluence) || (!(i instanceof PhysicalInfluence)))
+			return false;
+		Body target = ((PhysicalInfluence)i).target();
+		if (target == null)
+			return true;
+		// the target may have been moved by previous influences
+		int[] reach = _reaches.get(target);
+		Point v = null;
+		if (i instanceof MovementInfluence)
+			v = ((MovementInfluence)i).vector();
+		if (v == null)
+			this.extend(target.boundingRect(),reach);
+		else {
+			DefaultHeart.sweptArea(target,v,_area);
+			this.extend(_area,reach);
+			if (reach == null) {
+				reach = new int[2];
+				_reaches.put(target,reach);
+			}
+			reach[0] += Math.abs(v.x);
+			reach[1] += Math.abs(v.y);
+		}
+		return true;
+	}
+
+	/** Counts the current box as the footprint of the k-th influence. */
+	private void pushFootprint(int k) {
+		if (_footprints.length < 4*(k+1))
+			_footprints = Arrays.copyOf(_footprints,Math.max(4*(k+1),_footprints.length * 2));
+		System.arraycopy(_box,0,_footprints,4*k,4);
+		if (_box[0] > _box[2])
+			return;
+		for (int ry = region(_box[1]) ; ry <= region(_box[3]) ; ry++) {
+			for (int rx = region(_box[0]) ; rx <= region(_box[2]) ; rx++) {
+				Long key = key(rx,ry);
+				Region r = _regions.get(key);
+				if (r == null) {
+					r = new Region();
+					_regions.put(key,r);
+				}
+				r.pending++;
+			}
+		}
+	}
+
+	/**
+	 * Sets the current box to the area an agent body may sense or read once
+	 * moved by its influences.
+	 * @return <code>false</code> if the body has a sensor of unknown range.
+	 */
+	private boolean waitBox(Body b) {
+		_box[0] = Integer.MAX_VALUE;
+		_box[1] = Integer.MAX_VALUE;
+		_box[2] = Integer.MIN_VALUE;
+		_box[3] = Integer.MIN_VALUE;
+		this.extend(b.boundingRect());
+		for (Sensor s : b.sensors()) {
+			if (!(s instanceof RangeSensor))
+				return false;
+			this.extend(((RangeSensor)s).region().boundingRect());
+		}
+		int[] reach = _reaches.get(b);
+		if (reach != null) {
+			_box[0] -= reach[0];
+			_box[1] -= reach[1];
+			_box[2] += reach[0];
+			_box[3] += reach[1];
+		}
+		return this.fits(_box);
+	}
+
+	private void extend(Rectangle r) {
+		this.extend(r,null);
+	}
+
+	/** Extends the current box with a rectangle grown by a reach. */
+	private void extend(Rectangle r, int[] reach) {
+		int rx = (reach == null) ? 0 : reach[0];
+		int ry = (reach == null) ? 0 : reach[1];
+		_box[0] = Math.min(_box[0],r.origin().x - rx);
+		_box[1] = Math.min(_box[1],r.origin().y - ry);
+		_box[2] = Math.max(_box[2],r.end().x + rx);
+		_box[3] = Math.max(_box[3],r.end().y + ry);
+	}
+
+	/** @return <code>true</code> if the box is empty or covers few enough regions. */
+	private boolean fits(int[] box) {
+		if (box[0] > box[2])
+			return true;
+		long nb = ((long)(region(box[2]) - region(box[0]) + 1))
+		        * ((long)(region(box[3]) - region(box[1]) + 1));
+		return (nb <= MAX_REGIONS);
+	}
+
+	private int region(int coordinate) {
+		return Math.floorDiv(coordinate,_regionSize);
+	}
+
+	private static Long key(int rx, int ry) {
+		return Long.valueOf((((long)rx) << 32) | (ry & 0xFFFFFFFFL));
+	}
+
+	private final World _world;
+	private final int _regionSize;
+	private boolean _enabled = false;
+	private final HashMap<Long,Region> _regions = new HashMap<Long,Region>();
+	private final IdentityHashMap<Body,int[]> _reaches = new IdentityHashMap<Body,int[]>();
+	private final Set<Agent> _prepared = Collections.newSetFromMap(new IdentityHashMap<Agent,Boolean>());
+	private int[] _footprints = new int[256];
+	private final int[] _box = new int[4];
+	private final Rectangle _area = new Rectangle(0,0,0,0);
+	private int _nbTasks = 0;
+	private final Semaphore _done = new Semaphore(0);
+	private final AtomicReference<Throwable> _failure = new AtomicReference<Throwable>();
+
+	/** Influences not applied yet overlapping a region, and agents waiting for it. */
+	private static final class Region {
+		int pending = 0;
+		final ArrayList<Waiter> waiting = new ArrayList<Waiter>(4);
+	};
+
+	private static final class Waiter {
+		Waiter(Agent a) {
+			agent = a;
+		}
+		final Agent agent;
+		int pending = 0;
+	};
+
+};
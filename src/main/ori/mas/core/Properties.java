@@ -20,7 +20,12 @@ public class Properties {
 	public static final String FEED_MIN   = FEED+SUFFIX_MIN;
 	public static final String FEED_MAX   = FEED+SUFFIX_MAX;
 
-	public static final String FEED_TICK  = "feed-tick"; // -1
+	public static final String FEED_TICK  = "feed-tick"; // -1, see setFeedTick
+
+	// typed slots (see PropertyKey)
+	public static final PropertyKey<Integer> HEALTH_KEY    = PropertyKey.intKey(HEALTH);
+	public static final PropertyKey<Integer> FEED_KEY      = PropertyKey.intKey(FEED);
+	public static final PropertyKey<Integer> FEED_TICK_KEY = PropertyKey.intKey(FEED_TICK);
 
 	// Body
 	public static final String TARGET     = "target";
@@ -31,38 +36,44 @@ public class Properties {
 		return (Body)(b.get(TARGET));
 	}
 	public static final int getHealth(Body b) {
-		try { return ((Integer)(b.get(HEALTH))).intValue(); }
-		catch (Exception e) { return 0; }
+		return b.getInt(HEALTH_KEY);
 	}
 	public static final int getHealthMax(Body b) {
-		try { return ((Integer)(b.get(HEALTH_MAX))).intValue(); }
-		catch (Exception e) { return 0; }
+		return b.getInt(HEALTH_KEY,PropertyKey.MAX);
 	}
 	public static final int getFeed(Body b) {
-		try { return ((Integer)(b.get(FEED))).intValue(); }
-		catch (Exception e) { return 0; }
+		return b.getInt(FEED_KEY);
 	}
 	public static final int getFeedMax(Body b) {
-		try { return ((Integer)(b.get(FEED_MAX))).intValue(); }
-		catch (Exception e) { return 0; }
+		return b.getInt(FEED_KEY,PropertyKey.MAX);
 	}
 	public static final float healthRatio(Body b) {
-		try {
-		float healthMax = (float)(((Integer)(b.get(HEALTH_MAX))).intValue());
-		float health = (float)(((Integer)(b.get(HEALTH))).intValue());
-		return health / healthMax;
-		}
-		catch (Exception e) { return 0.f; }
+		return ratio(b,HEALTH_KEY);
 	}
 	public static final float feedRatio(Body b) {
-		try {
-		float feedMax = (float)(((Integer)(b.get(FEED_MAX))).intValue());
-		float feed = (float)(((Integer)(b.get(FEED))).intValue());
-		return feed / feedMax;
-		}
-		catch (Exception e) { return 0.f; }
+		return ratio(b,FEED_KEY);
+	}
+
+	/**
+	 * Makes the feed of a body change by <code>tick</code> units per tick
+	 * (see <code>Body.setDecay</code>), the body starving once it reaches
+	 * its minimal value (see <code>DefaultHeart.onPropertyMinReached</code>).
+	 */
+	public static final void setFeedTick(Body b, int tick) {
+		b.setInt(FEED_TICK_KEY,tick);
+		b.setDecay(FEED_KEY,-tick);
 	}
 
+	/** @return value / max, <code>0</code> if either is not set. */
+	private static float ratio(Body b, PropertyKey<Integer> key) {
+		if ((!(b.has(key))) || (!(b.has(key,PropertyKey.MAX))))
+			return 0.f;
+		return ((float)b.getInt(key)) / ((float)b.getInt(key,PropertyKey.MAX));
+	}
+
+	/** Loads the class, thus registers the typed keys above (see <code>PropertyKey</code>). */
+	static void registerKeys() { }
+
 	private Properties() { }
 
 };
@@ -0,0 +1,165 @@
+package ori.mas.core;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handle of a typed body property.
+ * <p>
+ * A registered property is stored by bodies in a fixed slot of a primitive
+ * array (<code>int</code>, <code>long</code> or <code>double</code>), with
+ * its minimal and maximal values alongside, instead of their properties map.
+ * Typed accessors (see <code>Body.getInt</code>) read and write the slot
+ * without any lookup nor boxing.
+ * The string accessors (<code>Body.get</code> and <code>Body.set</code>) stay
+ * available as a slower path : the property name, suffixed or not by
+ * <code>Properties.SUFFIX_MIN</code> or <code>Properties.SUFFIX_MAX</code>,
+ * resolves to the same slot, values being boxed.
+ * </p>
+ * <p>
+ * Keys should be registered once, before any body uses their name (as
+ * static fields, see <code>Properties.HEALTH_KEY</code>), values set through
+ * the name beforehand staying in the properties map.
+ * The keys of <code>Properties</code> are registered along with this class.
+ * </p>
+ */
+public final class PropertyKey<T> {
+
+	/** Slot types. */
+	public static enum Type { INT, LONG, DOUBLE };
+
+	/** Parts of a slot. */
+	public static final int VALUE = 0;
+	public static final int MIN   = 1;
+	public static final int MAX   = 2;
+
+	/** @return The key of an <code>int</code> property, registered on first call. */
+	@SuppressWarnings("unchecked")
+	public static PropertyKey<Integer> intKey(String name) {
+		return (PropertyKey<Integer>)register(name,Type.INT);
+	}
+
+	/** @return The key of a <code>long</code> property, registered on first call. */
+	@SuppressWarnings("unchecked")
+	public static PropertyKey<Long> longKey(String name) {
+		return (PropertyKey<Long>)register(name,Type.LONG);
+	}
+
+	/** @return The key of a <code>double</code> property, registered on first call. */
+	@SuppressWarnings("unchecked")
+	public static PropertyKey<Double> doubleKey(String name) {
+		return (PropertyKey<Double>)register(name,Type.DOUBLE);
+	}
+
+	/**
+	 * @return The key registered for a property name, <code>null</code> if
+	 * there is none.
+	 */
+	public static PropertyKey<?> forName(String name) {
+		Ref r = _names.get(name);
+		return ((r == null) || (r.part != VALUE)) ? null : r.key;
+	}
+
+	/**
+	 * @return The <code>int</code> key registered for a property name,
+	 * <code>null</code> if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public static PropertyKey<Integer> intKeyOf(String name) {
+		PropertyKey<?> key = (name == null) ? null : forName(name);
+		return ((key == null) || (key.type() != Type.INT)) ? null : (PropertyKey<Integer>)key;
+	}
+
+	/** @return The number of keys registered for a slot type. */
+	static int nbSlots(Type type) {
+		return _nbSlots[type.ordinal()];
+	}
+
+	/**
+	 * @return The key and part a property name (possibly suffixed) resolves
+	 * to, <code>null</code> if it is not registered.
+	 */
+	static Ref ref(String name) {
+		return (name == null) ? null : _names.get(name);
+	}
+
+	private static synchronized PropertyKey<?> register(String name, Type type) {
+		if ((name == null) || (name.endsWith(Properties.SUFFIX_MIN)) || (name.endsWith(Properties.SUFFIX_MAX)))
+			throw new IllegalArgumentException("invalid property key name: "+name);
+		Ref r = _names.get(name);
+		if (r != null) {
+			if (r.key.type() != type)
+				throw new IllegalArgumentException("property "+name+" already registered as "+r.key.type());
+			return r.key;
+		}
+		PropertyKey<?> key = new PropertyKey<Object>(name,type,_nbSlots[type.ordinal()]++);
+		_names.put(name,new Ref(key,VALUE));
+		_names.put(name+Properties.SUFFIX_MIN,new Ref(key,MIN));
+		_names.put(name+Properties.SUFFIX_MAX,new Ref(key,MAX));
+		_keys.add(key);
+		if (type == Type.INT)
+			_bySlot.add(key);
+		return key;
+	}
+
+	/** @return The <code>int</code> key of a slot. */
+	@SuppressWarnings("unchecked")
+	static synchronized PropertyKey<Integer> intKey(int slot) {
+		return (PropertyKey<Integer>)_bySlot.get(slot);
+	}
+
+	/** @return All registered keys, in registration order. */
+	static synchronized PropertyKey<?>[] keys() {
+		return _keys.toArray(new PropertyKey<?>[_keys.size()]);
+	}
+
+	private PropertyKey(String name, Type type, int slot) {
+		_name = name;
+		_type = type;
+		_slot = slot;
+	}
+
+	public String name() {
+		return _name;
+	}
+
+	public Type type() {
+		return _type;
+	}
+
+	/** @return The slot index, among the slots of the key type. */
+	public int slot() {
+		return _slot;
+	}
+
+	@Override
+	public String toString() {
+		return _name+":"+_type;
+	}
+
+	private final String _name;
+	private final Type _type;
+	private final int _slot;
+
+	private static final ConcurrentHashMap<String,Ref> _names = new ConcurrentHashMap<String,Ref>();
+	private static final ArrayList<PropertyKey<?>> _keys = new ArrayList<PropertyKey<?>>();
+	private static final ArrayList<PropertyKey<?>> _bySlot = new ArrayList<PropertyKey<?>>();
+	private static final int[] _nbSlots = new int[Type.values().length];
+
+	static {
+		// the keys of Properties must be known before a name is resolved,
+		// once the tables above are ready
+		Properties.registerKeys();
+	}
+
+	/** Part of a key a property name stands for. */
+	static final class Ref {
+		Ref(PropertyKey<?> key, int part) {
+			this.key = key;
+			this.part = part;
+		}
+		final PropertyKey<?> key;
+		final int part;
+	};
+
+};
@@ -0,0 +1,25 @@
+package ori.mas.core;
+
+/**
+ * Listens to body properties modifications.
+ * <p>
+ * Called whenever a property is set or removed, by name or through its
+ * typed key (the bounds of typed properties excepted), including by the
+ * heart applying a property change influence, and when a property starts
+ * or stops decaying.
+ * The current value of a decaying property changes without notification
+ * (see <code>Body.setDecay</code>).
+ * </p>
+ * @see Body#addPropertyListener
+ */
+public interface PropertyListener {
+
+	/**
+	 * Called after a body property has been modified.
+	 * @param b The modified body.
+	 * @param property The property name, <code>null</code> if all
+	 * properties have been replaced.
+	 */
+	public void onPropertyChange(Body b, String property);
+
+};
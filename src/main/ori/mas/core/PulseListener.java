@@ -0,0 +1,28 @@
+package ori.mas.core;
+
+import java.util.List;
+
+/**
+ * Follows the application of the influences of a heart pulse.
+ * @see DefaultHeart#setPulseListener
+ */
+public interface PulseListener {
+
+	/**
+	 * Called when the pulse starts, before any influence is applied.
+	 * @param influences The submitted influences, in application order
+	 * (only valid until the end of the pulse).
+	 */
+	public void pulseStarted(List<Influence> influences);
+
+	/**
+	 * Called once a submitted influence, and all the influences its
+	 * application has submitted, have been applied.
+	 * @param index The influence index in the submitted ones.
+	 */
+	public void influenceApplied(int index);
+
+	/** Called once all influences have been applied. */
+	public void pulseEnded();
+
+};
@@ -0,0 +1,442 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.geometry.Shape;
+import ori.ogapi.util.AbstractIterator;
+import ori.ogapi.util.Iterator;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * Loose quadtree scene.
+ * <p>
+ * Each node covers a square region, its <i>loose</i> bounds being that region
+ * scaled by the policy looseness factor.
+ * A body is stored in the deepest node whose loose bounds contain its bounding
+ * rectangle, the child being chosen by the body center, so each body belongs
+ * to exactly one node and dense clusters only make the tree deeper locally.
+ * </p>
+ * <p>
+ * When a body moves (through <code>Body.translate</code>), its node is updated
+ * in place: the tree is climbed only until a node still containing the body is
+ * found, then descended again, which is a no-op for most small moves.
+ * Nodes are split and merged following a <code>Policy</code>, which may be
+ * chosen per world.
+ * </p>
+ * <p>
+ * Bodies lying outside the root loose bounds are kept in the root node.
+ * Queries do not modify the scene, they may be run concurrently as long as no
+ * body is added, removed or moved at the same time.
+ * </p>
+ */
+public class QuadTreeScene implements Scene, BodyListener {
+
+	/**
+	 * Node split and merge policy.
+	 * <ul>
+	 * <li>a leaf holding more than <code>splitThreshold</code> bodies is split,
+	 * unless it is <code>maxDepth</code> deep,</li>
+	 * <li>a node whose subtree holds at most <code>mergeThreshold</code> bodies
+	 * gets its children merged back into it,</li>
+	 * <li><code>looseness</code> is the ratio between the loose and the tight
+	 * bounds of a node (at least 1, 2 being the classic value).</li>
+	 * </ul>
+	 */
+	public static class Policy {
+
+		public Policy(int splitThreshold, int mergeThreshold, int maxDepth, double looseness) {
+			if (mergeThreshold >= splitThreshold)
+				throw new IllegalArgumentException("merge threshold must be lower than split threshold");
+			if (looseness < 1.)
+				throw new IllegalArgumentException("looseness must be at least 1: "+looseness);
+			_splitThreshold = splitThreshold;
+			_mergeThreshold = mergeThreshold;
+			_maxDepth = maxDepth;
+			_looseness = looseness;
+		}
+
+		public int splitThreshold() {
+			return _splitThreshold;
+		}
+
+		public int mergeThreshold() {
+			return _mergeThreshold;
+		}
+
+		public int maxDepth() {
+			return _maxDepth;
+		}
+
+		public double looseness() {
+			return _looseness;
+		}
+
+		private final int _splitThreshold;
+		private final int _mergeThreshold;
+		private final int _maxDepth;
+		private final double _looseness;
+
+	};
+
+	public static final Policy DEFAULT_POLICY = new Policy(16,8,16,2.);
+	public static final Rectangle DEFAULT_BOUNDS = new Rectangle(-(1 << 16),-(1 << 16),1 << 17,1 << 17);
+
+	public QuadTreeScene() {
+		this(DEFAULT_BOUNDS,DEFAULT_POLICY);
+	}
+
+	public QuadTreeScene(Rectangle bounds) {
+		this(bounds,DEFAULT_POLICY);
+	}
+
+	/**
+	 * @param bounds The region covered by the root node (its largest side is
+	 * used for both).
+	 * @param policy The split and merge policy.
+	 */
+	public QuadTreeScene(Rectangle bounds, Policy policy) {
+		_policy = policy;
+		double half = Math.max(bounds.width(),bounds.height()) / 2.;
+		_root = new Node(null,
+		                 (bounds.origin().x + bounds.end().x) / 2.,
+		                 (bounds.origin().y + bounds.end().y) / 2.,
+		                 half,
+		                 0);
+	}
+
+	public Policy policy() {
+		return _policy;
+	}
+
+	@Override
+	public boolean add(Body b) {
+		if ((b == null) || (_entries.containsKey(b)))
+			return false;
+		Entry e = new Entry(b);
+		e.index = _list.size();
+		_list.add(e);
+		_entries.put(b,e);
+		e.computeBounds();
+		Node n = this.descend(_root,e);
+		n.attach(e);
+		addCount(n,1,null);
+		this.split(n);
+		b.addListener(this);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Body b) {
+		Entry e = _entries.remove(b);
+		if (e == null)
+			return false;
+		Node n = e.node;
+		n.detach(e);
+		addCount(n,-1,null);
+		this.merge(n,null);
+		this.removeFromList(e);
+		b.removeListener(this);
+		return true;
+	}
+
+	@Override
+	public boolean contains(Body b) {
+		return _entries.containsKey(b);
+	}
+
+	public int size() {
+		return _list.size();
+	}
+
+	@Override
+	public Scene getIn(Shape s) {
+		BufferScene res = new BufferScene();
+		this.query(s,Scenes.IN,null,res);
+		return res;
+	}
+
+	@Override
+	public Scene getPartlyIn(Shape s) {
+		BufferScene res = new BufferScene();
+		this.query(s,Scenes.PARTLY_IN,null,res);
+		return res;
+	}
+
+	@Override
+	public Scene getAt(Point p) {
+		BufferScene res = new BufferScene();
+		this.forEachAt(p,res);
+		return res;
+	}
+
+	@Override
+	public void forEachIn(Shape s, BodyVisitor v) {
+		this.query(s,Scenes.IN,null,v);
+	}
+
+	@Override
+	public void forEachPartlyIn(Shape s, BodyVisitor v) {
+		this.query(s,Scenes.PARTLY_IN,null,v);
+	}
+
+	@Override
+	public void forEachAt(Point p, BodyVisitor v) {
+		int x = p.x, y = p.y;
+		this.query(null,Scenes.AT,p,x,y,x,y,v);
+	}
+
+	@Override
+	public Iterator<Body> iterator() {
+		return new QuadTreeIterator();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The body node is updated in place, the tree being only climbed up to the
+	 * first node still containing the body.
+	 * </p>
+	 */
+	@Override
+	public void onMove(Body b) {
+		Entry e = _entries.get(b);
+		if (e == null)
+			return;
+		e.computeBounds();
+		Node node = e.node;
+		Node up = node;
+		while ((up.parent != null) && (!(up.fits(e))))
+			up = up.parent;
+		Node down = this.descend(up,e);
+		if (down == node)
+			return;
+		node.detach(e);
+		addCount(node,-1,up);
+		// only nodes strictly under 'up' lost a body, 'up' remains alive
+		this.merge(node,up);
+		down = this.descend(up,e);
+		down.attach(e);
+		addCount(down,1,up);
+		this.split(down);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void onShapeChange(Body b) {
+		this.onMove(b);
+	}
+
+	private void query(Shape s, int mode, Point p, BodyVisitor v) {
+		Rectangle r = s.boundingRect();
+		this.query(s,mode,p,r.origin().x,r.origin().y,r.end().x,r.end().y,v);
+	}
+
+	private void query(Shape s, int mode, Point p,
+	                   int x0, int y0, int x1, int y1, BodyVisitor v) {
+		this.query(_root,s,mode,p,x0,y0,x1,y1,v);
+	}
+
+	/** @return <code>false</code> if the visitor stopped the query. */
+	private boolean query(Node n, Shape s, int mode, Point p,
+	                      int x0, int y0, int x1, int y1, BodyVisitor v) {
+		for (int i = 0 ; i < n.entries.size() ; i++) {
+			Entry e = n.entries.get(i);
+			if ((e.overlaps(x0,y0,x1,y1))
+			 && (Scenes.matches(s,mode,p,e.body))
+			 && (!(v.visit(e.body))))
+				return false;
+		}
+		if (n.children == null)
+			return true;
+		for (int i = 0 ; i < 4 ; i++) {
+			Node c = n.children[i];
+			if ((c.count > 0)
+			 && (c.overlaps(x0,y0,x1,y1))
+			 && (!(this.query(c,s,mode,p,x0,y0,x1,y1,v))))
+				return false;
+		}
+		return true;
+	}
+
+	/** Deepest existing node under <code>n</code> which may hold the entry. */
+	private Node descend(Node n, Entry e) {
+		while (n.children != null) {
+			Node c = n.childFor(e);
+			if (!(c.fits(e)))
+				break;
+			n = c;
+		}
+		return n;
+	}
+
+	private void split(Node n) {
+		if ((n.children != null)
+		 || (n.entries.size() <= _policy.splitThreshold())
+		 || (n.depth >= _policy.maxDepth()))
+			return;
+		double h = n.half / 2.;
+		n.children = new Node[4];
+		n.children[0] = new Node(n,n.cx - h,n.cy - h,h,n.depth + 1);
+		n.children[1] = new Node(n,n.cx + h,n.cy - h,h,n.depth + 1);
+		n.children[2] = new Node(n,n.cx - h,n.cy + h,h,n.depth + 1);
+		n.children[3] = new Node(n,n.cx + h,n.cy + h,h,n.depth + 1);
+		int i = 0;
+		while (i < n.entries.size()) {
+			Entry e = n.entries.get(i);
+			Node c = n.childFor(e);
+			if (c.fits(e)) {
+				n.detach(e);
+				c.attach(e);
+				c.count++;
+			}
+			else
+				i++;
+		}
+		for (Node c : n.children)
+			this.split(c);
+	}
+
+	/**
+	 * Merges the highest node between <code>from</code> (included) and
+	 * <code>stop</code> (excluded) whose subtree became small enough.
+	 */
+	private void merge(Node from, Node stop) {
+		Node target = null;
+		for (Node n = from ; n != stop ; n = n.parent) {
+			if ((n.children != null) && (n.count <= _policy.mergeThreshold()))
+				target = n;
+		}
+		if (target == null)
+			return;
+		for (Node c : target.children)
+			this.collect(c,target);
+		target.children = null;
+	}
+
+	private void collect(Node n, Node into) {
+		for (int i = 0 ; i < n.entries.size() ; i++)
+			into.attach(n.entries.get(i));
+		if (n.children != null) {
+			for (Node c : n.children)
+				this.collect(c,into);
+		}
+	}
+
+	private static void addCount(Node from, int delta, Node stop) {
+		for (Node n = from ; n != stop ; n = n.parent)
+			n.count += delta;
+	}
+
+	private void removeFromList(Entry e) {
+		int last = _list.size() - 1;
+		Entry moved = _list.get(last);
+		_list.set(e.index,moved);
+		moved.index = e.index;
+		_list.remove(last);
+	}
+
+	private final Policy _policy;
+	private final Node _root;
+	private final ArrayList<Entry> _list = new ArrayList<Entry>();
+	private final IdentityHashMap<Body,Entry> _entries = new IdentityHashMap<Body,Entry>();
+
+	/** Body registration, holds its current bounding rectangle and node. */
+	private static final class Entry {
+		Entry(Body b) {
+			body = b;
+		}
+		void computeBounds() {
+			Rectangle r = body.boundingRect();
+			x0 = r.origin().x;
+			y0 = r.origin().y;
+			x1 = r.end().x;
+			y1 = r.end().y;
+		}
+		boolean overlaps(int ox0, int oy0, int ox1, int oy1) {
+			return ((x0 <= ox1) && (ox0 <= x1) && (y0 <= oy1) && (oy0 <= y1));
+		}
+		final Body body;
+		Node node;
+		int slot;
+		int index;
+		int x0, y0, x1, y1;
+	};
+
+	private final class Node {
+		Node(Node parent, double cx, double cy, double half, int depth) {
+			this.parent = parent;
+			this.cx = cx;
+			this.cy = cy;
+			this.half = half;
+			this.depth = depth;
+			this.loose = half * _policy.looseness();
+		}
+		boolean fits(Entry e) {
+			return ((e.x0 >= cx - loose) && (e.x1 <= cx + loose)
+			     && (e.y0 >= cy - loose) && (e.y1 <= cy + loose));
+		}
+		boolean overlaps(int x0, int y0, int x1, int y1) {
+			return ((x0 <= cx + loose) && (cx - loose <= x1)
+			     && (y0 <= cy + loose) && (cy - loose <= y1));
+		}
+		Node childFor(Entry e) {
+			double x = (e.x0 + e.x1) / 2.;
+			double y = (e.y0 + e.y1) / 2.;
+			int i = 0;
+			if (x >= cx)
+				i += 1;
+			if (y >= cy)
+				i += 2;
+			return children[i];
+		}
+		void attach(Entry e) {
+			e.node = this;
+			e.slot = entries.size();
+			entries.add(e);
+		}
+		void detach(Entry e) {
+			int last = entries.size() - 1;
+			Entry moved = entries.get(last);
+			entries.set(e.slot,moved);
+			moved.slot = e.slot;
+			entries.remove(last);
+			e.node = null;
+		}
+		final Node parent;
+		final double cx, cy, half, loose;
+		final int depth;
+		Node[] children = null;
+		/** Number of bodies in this subtree. */
+		int count = 0;
+		final ArrayList<Entry> entries = new ArrayList<Entry>(4);
+	};
+
+	protected class QuadTreeIterator extends AbstractIterator<Body> {
+		@Override
+		public boolean hasNext() {
+			return (_next < _list.size());
+		}
+		@Override
+		public Body next() throws NoSuchElementException {
+			if (!hasNext())
+				throw new NoSuchElementException("no more body");
+			_current = _list.get(_next++).body;
+			return _current;
+		}
+		@Override
+		public void remove() throws UnsupportedOperationException,NoSuchElementException {
+			if (_current == null)
+				throw new NoSuchElementException("next has not been called");
+			QuadTreeScene.this.remove(_current);
+			_current = null;
+			// the last body has been swapped into the removed slot
+			_next--;
+		}
+		private int _next = 0;
+		private Body _current = null;
+	};
+
+};
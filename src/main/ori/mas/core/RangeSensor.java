@@ -0,0 +1,36 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.Shape;
+
+/**
+ * Sensor whose perception is a single partial intersection query.
+ * <p>
+ * Such a sensor may be answered by the world batched sensing pass instead of
+ * querying the scene by itself.
+ * </p>
+ * @see World#setBatchedSensing
+ */
+public interface RangeSensor extends Sensor {
+
+	/**
+	 * Places the sensing shape at the body position.
+	 * @return The shape which would be queried by the next call to
+	 * <code>sense</code>.
+	 */
+	public Shape region();
+
+	/**
+	 * Prepares the sensor to receive its perception from a batched pass.
+	 * <p>
+	 * The previous perception is cleared, and the next call to
+	 * <code>sense</code> on the same world tick returns the bodies given to
+	 * the returned visitor, instead of querying the world.
+	 * A batch which is not sensed on its tick (the agent having been put to
+	 * sleep or removed meanwhile) is dropped, later calls querying the world.
+	 * </p>
+	 * @param tick The world tick the perception is made for.
+	 * @return The visitor receiving the sensed bodies.
+	 */
+	public BodyVisitor batch(long tick);
+
+};
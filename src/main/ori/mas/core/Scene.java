@@ -56,6 +56,30 @@ public interface Scene extends Surface<Body> {
 	 */
 	@Override public abstract Scene getAt(Point p);
 
+	/**
+	 * Visits all bodies inside the specific shape.
+	 * <p>Same as <code>getIn</code>, without building the subscene.</p>
+	 * @param s The shape 'mask'.
+	 * @param v The visitor to call on each matching body.
+	 */
+	public abstract void forEachIn(Shape s, BodyVisitor v);
+
+	/**
+	 * Visits all bodies which intersect the specific shape.
+	 * <p>Same as <code>getPartlyIn</code>, without building the subscene.</p>
+	 * @param s The shape 'mask'.
+	 * @param v The visitor to call on each matching body.
+	 */
+	public abstract void forEachPartlyIn(Shape s, BodyVisitor v);
+
+	/**
+	 * Visits all bodies centered on a single point.
+	 * <p>Same as <code>getAt</code>, without building the subscene.</p>
+	 * @param p A point.
+	 * @param v The visitor to call on each matching body.
+	 */
+	public abstract void forEachAt(Point p, BodyVisitor v);
+
 	/**
 	 * Gets an iterator over the bodies.
 	 * @return An iterator.
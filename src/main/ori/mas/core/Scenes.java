@@ -1,13 +1,37 @@
 package ori.mas.core;
 
 import ori.ogapi.geometry.Shape;
+import ori.ogapi.geometry.Shapes;
 import ori.ogapi.geometry.Point;
 import ori.ogapi.util.Iterator;
 
 public class Scenes {
 
+	/** Query kinds shared by the spatial scene implementations. */
+	static final int IN        = 0;
+	static final int PARTLY_IN = 1;
+	static final int AT        = 2;
+
+	/**
+	 * Exact test of a body against a query, as done by
+	 * <code>AbstractSurface</code>.
+	 * @param s The query shape.
+	 * @param mode The query kind.
+	 * @param p The query point (<code>AT</code> queries only).
+	 * @param b The body (or a copy of its shape) to test.
+	 * @return <code>true</code> if the body belongs to the query result.
+	 */
+	static boolean matches(Shape s, int mode, Point p, Shape b) {
+		switch (mode) {
+			case IN:
+				return s.contains(b);
+			case PARTLY_IN:
+				return Shapes.collide(s,b);
+			default:
+				return b.center().equals(p);
+		}
+	}
 
 	private Scenes() { }
 
 };
-
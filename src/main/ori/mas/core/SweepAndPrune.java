@@ -0,0 +1,163 @@
+package ori.mas.core;
+
+import java.util.Arrays;
+
+/**
+ * Sort and sweep broad phase between two sets of axis aligned boxes.
+ * <p>
+ * Boxes of both sets are sorted once on their minimal x, then swept from left
+ * to right, each box being only tested against the boxes of the other set
+ * whose x interval is still open.
+ * Resulting pairs are sorted by first set index, then by second set index
+ * (ie insertion orders), so that the output does not depend on coordinates.
+ * </p>
+ * <p>
+ * All internal arrays are kept from one sweep to another, a steady-state
+ * sweep does not allocate anything.
+ * An instance must not be shared between concurrent sweeps.
+ * </p>
+ */
+public class SweepAndPrune {
+
+	public SweepAndPrune() { }
+
+	/** Removes all boxes and pairs. */
+	public void clear() {
+		_nbA = 0;
+		_nbB = 0;
+		_nbPairs = 0;
+	}
+
+	/**
+	 * Adds a box to the first set (bounds are inclusive).
+	 * @return The box index in the first set.
+	 */
+	public int addA(int x0, int y0, int x1, int y1) {
+		_a = this.push(_a,_nbA,x0,y0,x1,y1);
+		return _nbA++;
+	}
+
+	/**
+	 * Adds a box to the second set (bounds are inclusive).
+	 * @return The box index in the second set.
+	 */
+	public int addB(int x0, int y0, int x1, int y1) {
+		_b = this.push(_b,_nbB,x0,y0,x1,y1);
+		return _nbB++;
+	}
+
+	public int nbA() {
+		return _nbA;
+	}
+
+	public int nbB() {
+		return _nbB;
+	}
+
+	/**
+	 * Computes all pairs of overlapping boxes (one of each set).
+	 * @return The number of pairs.
+	 */
+	public int sweep() {
+		_nbPairs = 0;
+		int n = _nbA + _nbB;
+		if ((_nbA == 0) || (_nbB == 0))
+			return 0;
+		if (_events.length < n)
+			_events = new long[Math.max(n,_events.length * 2)];
+		// event = min x (high bits) | set bit | index
+		for (int i = 0 ; i < _nbA ; i++)
+			_events[i] = key(_a[4*i]) | i;
+		for (int i = 0 ; i < _nbB ; i++)
+			_events[_nbA + i] = key(_b[4*i]) | SET_B | i;
+		Arrays.sort(_events,0,n);
+		int nbActiveA = 0, nbActiveB = 0;
+		if (_activeA.length < _nbA)
+			_activeA = new int[Math.max(_nbA,_activeA.length * 2)];
+		if (_activeB.length < _nbB)
+			_activeB = new int[Math.max(_nbB,_activeB.length * 2)];
+		for (int e = 0 ; e < n ; e++) {
+			long event = _events[e];
+			int index = (int)(event & INDEX_MASK);
+			if ((event & SET_B) == 0) {
+				int x0 = _a[4*index];
+				nbActiveB = prune(_b,_activeB,nbActiveB,x0);
+				for (int k = 0 ; k < nbActiveB ; k++)
+					this.test(index,_activeB[k]);
+				_activeA[nbActiveA++] = index;
+			}
+			else {
+				int x0 = _b[4*index];
+				nbActiveA = prune(_a,_activeA,nbActiveA,x0);
+				for (int k = 0 ; k < nbActiveA ; k++)
+					this.test(_activeA[k],index);
+				_activeB[nbActiveB++] = index;
+			}
+		}
+		Arrays.sort(_pairs,0,_nbPairs);
+		return _nbPairs;
+	}
+
+	public int nbPairs() {
+		return _nbPairs;
+	}
+
+	/** @return The first set index of the i-th pair. */
+	public int pairA(int i) {
+		return (int)(_pairs[i] >>> 32);
+	}
+
+	/** @return The second set index of the i-th pair. */
+	public int pairB(int i) {
+		return (int)(_pairs[i] & 0xFFFFFFFFL);
+	}
+
+	private void test(int a, int b) {
+		// x intervals overlap, both boxes being active
+		if ((_a[4*a+1] > _b[4*b+3]) || (_b[4*b+1] > _a[4*a+3]))
+			return;
+		if (_nbPairs == _pairs.length)
+			_pairs = Arrays.copyOf(_pairs,_pairs.length * 2);
+		_pairs[_nbPairs++] = (((long)a) << 32) | b;
+	}
+
+	/** Removes the active boxes which end before <code>x</code>. */
+	private static int prune(int[] boxes, int[] active, int nbActive, int x) {
+		int k = 0;
+		while (k < nbActive) {
+			if (boxes[4*active[k]+2] < x)
+				active[k] = active[--nbActive];
+			else
+				k++;
+		}
+		return nbActive;
+	}
+
+	private int[] push(int[] boxes, int nb, int x0, int y0, int x1, int y1) {
+		if (boxes.length < 4*(nb+1))
+			boxes = Arrays.copyOf(boxes,Math.max(4*(nb+1),boxes.length * 2));
+		boxes[4*nb]   = x0;
+		boxes[4*nb+1] = y0;
+		boxes[4*nb+2] = x1;
+		boxes[4*nb+3] = y1;
+		return boxes;
+	}
+
+	private static long key(int x) {
+		return ((long)x) << 32;
+	}
+
+	private static final long SET_B      = 1L << 31;
+	private static final long INDEX_MASK = SET_B - 1;
+
+	private int[] _a = new int[64];
+	private int[] _b = new int[64];
+	private int _nbA = 0;
+	private int _nbB = 0;
+	private long[] _events = new long[32];
+	private int[] _activeA = new int[16];
+	private int[] _activeB = new int[16];
+	private long[] _pairs = new long[64];
+	private int _nbPairs = 0;
+
+};
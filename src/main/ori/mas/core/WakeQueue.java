@@ -0,0 +1,154 @@
+package ori.mas.core;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of agent identifiers, keyed by their wake tick.
+ * <p>
+ * An identifier is held at most once, and its position in the heap is
+ * indexed, so that changing the wake tick of a queued identifier or removing
+ * it costs <code>O(log n)</code>, without leaving any stale entry.
+ * </p>
+ */
+final class WakeQueue {
+
+	WakeQueue() {
+		Arrays.fill(_positions,-1);
+	}
+
+	boolean isEmpty() {
+		return (_size == 0);
+	}
+
+	int size() {
+		return _size;
+	}
+
+	boolean contains(int id) {
+		return ((id >= 0) && (id < _positions.length) && (_positions[id] >= 0));
+	}
+
+	/** @return The first identifier to wake, <code>-1</code> if empty. */
+	int peek() {
+		return (_size == 0) ? -1 : _ids[0];
+	}
+
+	/** @return The first wake tick, <code>Long.MAX_VALUE</code> if empty. */
+	long peekTime() {
+		return (_size == 0) ? Long.MAX_VALUE : _times[0];
+	}
+
+	/** Queues an identifier, or changes its wake tick if it is queued. */
+	void add(int id, long time) {
+		this.ensure(id);
+		int k = _positions[id];
+		if (k >= 0) {
+			long previous = _times[k];
+			_times[k] = time;
+			if (time < previous)
+				this.up(k);
+			else
+				this.down(k);
+			return;
+		}
+		if (_size == _ids.length) {
+			_ids = Arrays.copyOf(_ids,2 * _size);
+			_times = Arrays.copyOf(_times,2 * _size);
+		}
+		this.set(_size,id,time);
+		this.up(_size++);
+	}
+
+	/** Removes and returns the first identifier to wake. */
+	int poll() {
+		int id = _ids[0];
+		this.remove(id);
+		return id;
+	}
+
+	/** Removes an identifier, if it is queued. */
+	void remove(int id) {
+		if (!(this.contains(id)))
+			return;
+		int k = _positions[id];
+		_positions[id] = -1;
+		if (k == --_size)
+			return;
+		long time = _times[k];
+		this.set(k,_ids[_size],_times[_size]);
+		if (_times[k] < time)
+			this.up(k);
+		else
+			this.down(k);
+	}
+
+	/**
+	 * Renames a queued identifier, which keeps its wake tick.
+	 * @param to The new identifier, which must not be queued.
+	 */
+	void rename(int from, int to) {
+		if (!(this.contains(from)))
+			return;
+		int k = _positions[from];
+		_positions[from] = -1;
+		this.ensure(to);
+		this.set(k,to,_times[k]);
+	}
+
+	void clear() {
+		for (int k = 0 ; k < _size ; k++)
+			_positions[_ids[k]] = -1;
+		_size = 0;
+	}
+
+	/** Makes room for the position of an identifier. */
+	private void ensure(int id) {
+		if (id < _positions.length)
+			return;
+		int n = _positions.length;
+		_positions = Arrays.copyOf(_positions,Math.max(id + 1,2 * n));
+		Arrays.fill(_positions,n,_positions.length,-1);
+	}
+
+	private void up(int k) {
+		int id = _ids[k];
+		long time = _times[k];
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			if (_times[parent] <= time)
+				break;
+			this.set(k,_ids[parent],_times[parent]);
+			k = parent;
+		}
+		this.set(k,id,time);
+	}
+
+	private void down(int k) {
+		int id = _ids[k];
+		long time = _times[k];
+		int half = _size >>> 1;
+		while (k < half) {
+			int child = 2 * k + 1;
+			if ((child + 1 < _size) && (_times[child + 1] < _times[child]))
+				child++;
+			if (time <= _times[child])
+				break;
+			this.set(k,_ids[child],_times[child]);
+			k = child;
+		}
+		this.set(k,id,time);
+	}
+
+	private void set(int k, int id, long time) {
+		_ids[k] = id;
+		_times[k] = time;
+		_positions[id] = k;
+	}
+
+	private int[] _ids = new int[16];
+	private long[] _times = new long[16];
+	/** Heap position of each identifier, <code>-1</code> if not queued. */
+	private int[] _positions = new int[16];
+	private int _size = 0;
+
+};
@@ -0,0 +1,186 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.geometry.Shape;
+import ori.ogapi.geometry.Shapes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Uniform grid of the sensing regions of the sleeping agents watching their
+ * sensors.
+ * <p>
+ * A watching agent is registered once when it falls asleep : the region of
+ * each of its range sensors is put in every square cell of
+ * <code>CELL_SIZE</code> units its bounding rectangle overlaps (regions
+ * overlapping more than <code>MAX_CELLS</code> cells are kept aside, and
+ * tested for every body), and removed when the agent wakes.
+ * Finding the watchers of a moved body thus only visits the cells of the
+ * body, whatever the number of sleeping agents.
+ * </p>
+ * <p>
+ * Regions are those of the sensors when the agent is registered : a
+ * sleeping agent does not move (else it wakes).
+ * </p>
+ */
+final class WatchIndex {
+
+	static final int CELL_SIZE = 64;
+
+	/** Maximal number of cells of an indexed region, or of a visited body. */
+	private static final int MAX_CELLS = 64;
+
+	boolean contains(Agent a) {
+		return _watches.containsKey(a);
+	}
+
+	/** @return The number of registered agents. */
+	int size() {
+		return _watches.size();
+	}
+
+	/** Registers the range sensors regions of an agent, unless it is registered. */
+	void add(Agent a) {
+		if ((_watches.containsKey(a)) || (!(a.hasBody())))
+			return;
+		ArrayList<Watch> watches = new ArrayList<Watch>(1);
+		for (Sensor s : a.body().sensors()) {
+			if (!(s instanceof RangeSensor))
+				continue;
+			Watch w = new Watch(a,((RangeSensor)s).region());
+			watches.add(w);
+			if (w.isLarge()) {
+				_large.add(w);
+				continue;
+			}
+			for (int cy = w.cells[1] ; cy <= w.cells[3] ; cy++) {
+				for (int cx = w.cells[0] ; cx <= w.cells[2] ; cx++) {
+					Long key = key(cx,cy);
+					ArrayList<Watch> cell = _cells.get(key);
+					if (cell == null) {
+						cell = new ArrayList<Watch>(2);
+						_cells.put(key,cell);
+					}
+					cell.add(w);
+				}
+			}
+		}
+		_watches.put(a,watches);
+	}
+
+	/** Unregisters an agent, if it is registered. */
+	void remove(Agent a) {
+		ArrayList<Watch> watches = _watches.remove(a);
+		if (watches == null)
+			return;
+		for (int k = 0 ; k < watches.size() ; k++) {
+			Watch w = watches.get(k);
+			if (w.isLarge()) {
+				_large.remove(w);
+				continue;
+			}
+			for (int cy = w.cells[1] ; cy <= w.cells[3] ; cy++) {
+				for (int cx = w.cells[0] ; cx <= w.cells[2] ; cx++) {
+					Long key = key(cx,cy);
+					ArrayList<Watch> cell = _cells.get(key);
+					cell.remove(w);
+					if (cell.isEmpty())
+						_cells.remove(key);
+				}
+			}
+		}
+	}
+
+	void clear() {
+		_watches.clear();
+		_cells.clear();
+		_large.clear();
+	}
+
+	/**
+	 * Adds the registered agents having a region colliding a body to a list
+	 * (an agent is added once per colliding region).
+	 */
+	void collect(Body b, List<Agent> res) {
+		if (_watches.isEmpty())
+			return;
+		_stamp++;
+		Rectangle r = b.boundingRect();
+		int x0 = r.origin().x;
+		int y0 = r.origin().y;
+		int x1 = r.end().x;
+		int y1 = r.end().y;
+		int cx0 = cell(x0);
+		int cy0 = cell(y0);
+		int cx1 = cell(x1);
+		int cy1 = cell(y1);
+		if (((long)(cx1 - cx0 + 1)) * (cy1 - cy0 + 1) > MAX_CELLS) {
+			for (ArrayList<Watch> watches : _watches.values()) {
+				for (int k = 0 ; k < watches.size() ; k++)
+					this.visit(watches.get(k),b,x0,y0,x1,y1,res);
+			}
+			return;
+		}
+		for (int cy = cy0 ; cy <= cy1 ; cy++) {
+			for (int cx = cx0 ; cx <= cx1 ; cx++) {
+				ArrayList<Watch> cell = _cells.get(key(cx,cy));
+				if (cell == null)
+					continue;
+				for (int k = 0 ; k < cell.size() ; k++)
+					this.visit(cell.get(k),b,x0,y0,x1,y1,res);
+			}
+		}
+		for (int k = 0 ; k < _large.size() ; k++)
+			this.visit(_large.get(k),b,x0,y0,x1,y1,res);
+	}
+
+	private void visit(Watch w, Body b, int x0, int y0, int x1, int y1, List<Agent> res) {
+		// a region overlapping several cells of the body is tested once
+		if (w.stamp == _stamp)
+			return;
+		w.stamp = _stamp;
+		if ((w.box[0] <= x1) && (x0 <= w.box[2]) && (w.box[1] <= y1) && (y0 <= w.box[3])
+		 && (Shapes.collide(w.region,b)))
+			res.add(w.agent);
+	}
+
+	private static int cell(int coordinate) {
+		return Math.floorDiv(coordinate,CELL_SIZE);
+	}
+
+	private static Long key(int cx, int cy) {
+		return Long.valueOf((((long)cx) << 32) | (cy & 0xFFFFFFFFL));
+	}
+
+	private final IdentityHashMap<Agent,ArrayList<Watch>> _watches = new IdentityHashMap<Agent,ArrayList<Watch>>();
+	private final HashMap<Long,ArrayList<Watch>> _cells = new HashMap<Long,ArrayList<Watch>>();
+	private final ArrayList<Watch> _large = new ArrayList<Watch>();
+	private long _stamp = 0;
+
+	/** Sensing region of a watching agent. */
+	private static final class Watch {
+		Watch(Agent agent, Shape region) {
+			this.agent = agent;
+			this.region = region;
+			Rectangle r = region.boundingRect();
+			box[0] = r.origin().x;
+			box[1] = r.origin().y;
+			box[2] = r.end().x;
+			box[3] = r.end().y;
+			for (int k = 0 ; k < 4 ; k++)
+				cells[k] = cell(box[k]);
+		}
+		boolean isLarge() {
+			return (((long)(cells[2] - cells[0] + 1)) * (cells[3] - cells[1] + 1) > MAX_CELLS);
+		}
+		final Agent agent;
+		final Shape region;
+		final int[] box = new int[4];
+		final int[] cells = new int[4];
+		long stamp = -1;
+	};
+
+};
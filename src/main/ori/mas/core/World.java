@@ -1,37 +1,1088 @@
 package ori.mas.core;
 
+import ori.mas.influences.BirthInfluence;
+import ori.mas.influences.MovementInfluence;
+import ori.mas.influences.PropertyBoundInfluence;
+
+import ori.ogapi.util.Identifiable;
 import ori.ogapi.util.Iterator;
 import ori.ogapi.util.AbstractIterator;
 import ori.ogapi.report.Reportable;
 import ori.ogapi.report.Reporter;
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.geometry.Shape;
+import ori.ogapi.geometry.Shapes;
 import ori.ogapi.geometry.Surface;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Multi-agent world.
+ * <p>
+ * The world holds its agents bodies in a scene, and keeps a registry of its
+ * agents giving each one a dense identifier (from <code>0</code> to
+ * <code>size()-1</code>), so that membership test, lookup by identifier and
+ * removal of an agent which does not belong to the world any longer are done
+ * in constant time.
+ * Removing an agent gives its identifier to the last registered one : an
+ * identifier is only valid while no agent is removed, it must not be kept
+ * to name an agent over time (the agent random generator, see
+ * <code>setSeed</code>, is derived from a registration number which is never
+ * reused instead).
+ * Agents must thus be added and removed through the world, not directly
+ * through its scene.
+ * </p>
+ * <p>
+ * Removing an agent also removes its body from the scene, at the cost of
+ * the scene removal : it is linear in the number of bodies for an
+ * <code>AdaptedScene</code> over a <code>LinkedListSurface</code> (the
+ * default scene), but only depends on the neighbouring bodies for a
+ * <code>GridScene</code> or a <code>QuadTreeScene</code>, which should be
+ * preferred when agents are often removed.
+ * </p>
+ * <p>
+ * Agents are ticked in scene order, except the sleeping ones and the ones
+ * whose period skips the tick (see <code>sleep</code> and
+ * <code>setPeriod</code>).
+ * Agents waiting for a later tick are queued by wake tick, and the world
+ * keeps the set of awake agents : when most agents are awake, a tick goes
+ * through the scene, recording the rank of each agent, otherwise it only
+ * goes through the awake agents, sorted by their last recorded rank (agents
+ * added since then coming last, in addition order).
+ * Scenes keeping their iteration order as bodies move and are added (as
+ * the default one) thus get the scene order in both cases.
+ * </p>
+ */
 public class World implements Iterable<Agent>,Reportable {
 
 	private Scene _scene;
 	private Heart _heart;
+	private boolean _batchedSensing = false;
+	private final ArrayList<Agent> _agents = new ArrayList<Agent>();
+	private Executor _executor = null;
+	private long _ticks = 0;
+	private boolean _doubleBuffered = false;
+	private volatile WorldState _front = null;
+	private WorldState _back = null;
+	private boolean _frontStale = false;
+	private boolean _pulsing = false;
+	private final ArrayList<Agent> _ticked = new ArrayList<Agent>();
+	private Pipeline _pipeline = null;
+	private Executor _agentThreads = null;
+	private Influence[] _made = new Influence[16];
+	private static Executor _virtualThreads = null;
+	private static boolean _virtualThreadsChecked = false;
+	/** Maximal number of platform threads of the thread per agent mode. */
+	public static final int DEFAULT_MAX_AGENT_THREADS = 256;
+	private static final long AGENT_THREADS_KEEP_ALIVE = 10;
+	private boolean _ticking = false;
+	private long _idleSleep = 0;
+	private long _seed = new SplittableRandom().nextLong();
+	private long _nbRegistered = 0;
+	private long[] _serial = new long[16];
+	private long[] _wakeAt = new long[16];
+	private int[] _period = new int[16];
+	private boolean[] _watching = new boolean[16];
+	private final WakeQueue _sleeping = new WakeQueue();
+	private int[] _awake = new int[16];
+	private int _nbAwake = 0;
+	/** Position of each agent in the awake ones, <code>-1</code> if it is queued. */
+	private int[] _awakePositions = new int[16];
+	private int[] _ranks = new int[16];
+	private int _nextRank = 0;
+	private long[] _rankKeys = new long[16];
+	/** The awake agents are sorted when less than one in this number are awake. */
+	private static final int SPARSE_RATIO = 8;
+	private final WatchIndex _watchers = new WatchIndex();
+	private final ArrayList<Agent> _woken = new ArrayList<Agent>();
+	private final ArrayList<Body> _moved = new ArrayList<Body>();
+	private final ArrayList<Agent> _acting = new ArrayList<Agent>();
+	private static final int TASKS_PER_CORE = 4;
+	private final SweepAndPrune _sweep = new SweepAndPrune();
+	private final ArrayList<Body> _bodies = new ArrayList<Body>();
+	private final ArrayList<Shape> _regions = new ArrayList<Shape>();
+	private final ArrayList<Shape> _shapes = new ArrayList<Shape>();
+	private final ArrayList<BodyVisitor> _visitors = new ArrayList<BodyVisitor>();
+	/** Tick each scheduled bound is reached, by bound identifier. */
+	private final WakeQueue _boundTimes = new WakeQueue();
+	/** Bounds scheduled, by identifier, at most one per body and property. */
+	private final ArrayList<Bound> _bounds = new ArrayList<Bound>();
+	private final IdentityHashMap<Body,ArrayList<Bound>> _bodyBounds = new IdentityHashMap<Body,ArrayList<Bound>>();
+	private final ArrayList<Bound> _dueBounds = new ArrayList<Bound>();
+	private final Clock _clock = new Clock() {
+		@Override
+		public long ticks() {
+			return _ticks;
+		}
+		@Override
+		public void decayChanged(Body b, PropertyKey<Integer> key, int version) {
+			// may be called by a parallel heart
+			synchronized (_bounds) {
+				scheduleBound(b,key,version);
+			}
+		}
+	};
 
 	public World(Heart h, Scene s) {
 		setHeart(h);
-		_scene = s;
+		setScene(s);
 	}
 
 	public void setHeart(Heart h) {
+		if (_pipeline != null)
+			this.attach(null);
 		_heart = h;
 		_heart.setWorld(this);
+		if (_pipeline != null)
+			this.attach(_pipeline);
 	}
 
+	public Heart heart() {
+		return _heart;
+	}
+
+	/**
+	 * Sets the world scene, the agents of its bodies replacing the registered
+	 * ones.
+	 */
 	public void setScene(Scene s) {
+		for (int i = 0 ; i < _agents.size() ; i++)
+			_agents.get(i).setID(Identifiable.UNDEFINED);
+		_agents.clear();
+		synchronized (_sleeping) {
+			_sleeping.clear();
+			_watchers.clear();
+		}
+		synchronized (_bounds) {
+			_boundTimes.clear();
+			_bounds.clear();
+			_bodyBounds.clear();
+		}
+		_nbAwake = 0;
+		_nextRank = 0;
 		_scene = s;
+		for (Body b : _scene) {
+			Agent a = b.agent();
+			if ((a != null) && (!(this.contains(a))))
+				this.register(a);
+		}
+		_frontStale = true;
+	}
+	
+	/**
+	 * Enables or disables the batched sensing pass.
+	 * <p>
+	 * When enabled, each tick starts by answering all range sensors
+	 * (<code>RangeSensor</code>) at once, through a sort and sweep between the
+	 * sensing regions and the bodies bounding rectangles, instead of running
+	 * one scene query per sensor.
+	 * Each sensor receives the same bodies, in the same order, as its own
+	 * partial intersection query on an <code>AdaptedScene</code> would give,
+	 * except for bodies whose bounding rectangle does not overlap the region
+	 * one (which <code>Shapes.collide</code> may wrongly report on large
+	 * coordinates).
+	 * </p>
+	 */
+	public void setBatchedSensing(boolean batched) {
+		_batchedSensing = batched;
+	}
+
+	public boolean isSensingBatched() {
+		return _batchedSensing;
+	}
+	
+	/**
+	 * Sets the executor running the agents sense and think phases.
+	 * <p>
+	 * When an executor is set, each tick splits the agents into contiguous
+	 * chunks (in scene order) which sense and think concurrently, then the
+	 * agents act and their influences are submitted one after the other in
+	 * scene order, so the heart receives them in a stable order whatever the
+	 * scheduling.
+	 * Sensing and thinking only read the world and write into the agent own
+	 * body and mind, thus minds and sensors must not share mutable state
+	 * between agents (they should draw from their own generator, see
+	 * <code>Agent.random</code>), else results depend on the scheduling.
+	 * </p>
+	 * @param executor The executor, <code>null</code> to tick agents
+	 * sequentially (default).
+	 * @see #setParallel
+	 */
+	public void setExecutor(Executor executor) {
+		_executor = executor;
+	}
+
+	public Executor executor() {
+		return _executor;
+	}
+
+	/**
+	 * Runs the sense and think phases on the common fork join pool, or
+	 * sequentially.
+	 * @see #setExecutor
+	 */
+	public void setParallel(boolean parallel) {
+		this.setExecutor(parallel ? ForkJoinPool.commonPool() : null);
+	}
+
+	public boolean isParallel() {
+		return (_executor != null);
+	}
+
+	/**
+	 * Enables or disables the thread per agent mode.
+	 * <p>
+	 * In this mode, the whole tick of each agent (sense, think and act) runs
+	 * on its own thread, and the world waits for all of them before the
+	 * pulse, then submits their influences in scene order.
+	 * It is meant for minds blocking for a long time (remote planners, I/O),
+	 * which would starve a pool sized on the number of cores.
+	 * The world simply waits for all agents with a latch, rethrowing the
+	 * first failure once they are all done.
+	 * With a <code>ConcurrentHeart</code>, each thread submits its influence
+	 * itself, ranked by the agent position and through the heart worker slot
+	 * of that position.
+	 * Actors, as minds and sensors, must not share mutable state between
+	 * agents.
+	 * This mode takes precedence over the executor one, but not over the
+	 * pipelined one.
+	 * </p>
+	 * <p>
+	 * Threads are virtual ones when the running platform provides them
+	 * (Java 21 and later).
+	 * Otherwise, platform threads are used, and as one platform thread per
+	 * agent would exhaust the system with large populations, at most
+	 * <code>DEFAULT_MAX_AGENT_THREADS</code> run at once (see
+	 * <code>setThreadPerAgent(boolean,int)</code>) : further agents wait for a
+	 * free thread, thus a mind must not block waiting for another agent.
+	 * </p>
+	 */
+	public void setThreadPerAgent(boolean threadPerAgent) {
+		this.setThreadPerAgent(threadPerAgent,DEFAULT_MAX_AGENT_THREADS);
+	}
+
+	/**
+	 * Enables or disables the thread per agent mode, bounding the number of
+	 * platform threads.
+	 * @param maxThreads The maximal number of agents ticked at once when
+	 * virtual threads are not available, ignored otherwise.
+	 * @see #setThreadPerAgent(boolean)
+	 */
+	public void setThreadPerAgent(boolean threadPerAgent, int maxThreads) {
+		if (maxThreads <= 0)
+			throw new IllegalArgumentException("maximal number of threads must be positive: "+maxThreads);
+		Executor previous = _agentThreads;
+		_agentThreads = null;
+		if (threadPerAgent) {
+			_agentThreads = virtualThreads();
+			if (_agentThreads == null)
+				_agentThreads = platformThreads(maxThreads);
+		}
+		if ((previous instanceof ExecutorService) && (previous != _virtualThreads))
+			((ExecutorService)previous).shutdown();
+	}
+
+	public boolean isThreadPerAgent() {
+		return (_agentThreads != null);
+	}
+
+	/**
+	 * @return The shared executor starting a new virtual thread for each
+	 * task, <code>null</code> if the platform has no virtual threads.
+	 */
+	private static synchronized Executor virtualThreads() {
+		if (!(_virtualThreadsChecked)) {
+			_virtualThreadsChecked = true;
+			try {
+				_virtualThreads = (Executor)Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor")
+					.invoke(null);
+			}
+			catch (NoSuchMethodException e) {
+				// no virtual threads before Java 21
+				_virtualThreads = null;
+			}
+			catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("cannot create virtual threads",e);
+			}
+		}
+		return _virtualThreads;
+	}
+
+	/**
+	 * @return An executor running tasks on at most <code>maxThreads</code>
+	 * daemon platform threads, released when idle.
+	 */
+	private static ExecutorService platformThreads(int maxThreads) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads,maxThreads,
+			AGENT_THREADS_KEEP_ALIVE,TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r,"agent-"+_nbThreads.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+				private final AtomicInteger _nbThreads = new AtomicInteger();
+			});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+	
+	/**
+	 * Enables or disables the publication of the world state.
+	 * <p>
+	 * In double buffered mode, the world owns two <code>WorldState</code>
+	 * buffers, holding the bodies shapes and typed properties in arrays
+	 * allocated once.
+	 * At the end of each tick, the back buffer is written from the bodies
+	 * (which only the heart modifies), then the buffers are swapped, the
+	 * written one becoming the front one.
+	 * Agents added or removed between two ticks are published at the start
+	 * of the next tick.
+	 * </p>
+	 * <p>
+	 * Sensors query the front buffer (see <code>sensingScene</code>), which
+	 * is a read-only scene whose queries test the buffered shapes, and
+	 * minds may read the buffered properties of an agent through
+	 * <code>front()</code>.
+	 * Agents prepared by the pipeline during a pulse (see
+	 * <code>setPipelined</code>) still sense the live scene, whose regions
+	 * are then complete.
+	 * Other threads (renderers, observers) may read the front buffer without
+	 * synchronization for up to a tick, see <code>WorldState</code>.
+	 * </p>
+	 */
+	public void setDoubleBuffered(boolean doubleBuffered) {
+		_doubleBuffered = doubleBuffered;
+		if (doubleBuffered) {
+			_front = new WorldState();
+			_back = new WorldState();
+			this.publish();
+		}
+		else {
+			_front = null;
+			_back = null;
+		}
+	}
+
+	public boolean isDoubleBuffered() {
+		return _doubleBuffered;
+	}
+
+	/**
+	 * @return The state published at the end of last tick, <code>null</code>
+	 * if the world is not double buffered.
+	 */
+	public WorldState front() {
+		return _front;
+	}
+
+	/**
+	 * @return The scene sensors query : the front buffer in double buffered
+	 * mode (except during a pipelined pulse), the world scene otherwise.
+	 */
+	public Scene sensingScene() {
+		WorldState front = _front;
+		return ((front != null) && (!(_pulsing))) ? front : _scene;
+	}
+
+	/** Writes the back buffer from the bodies, and swaps the buffers. */
+	private void publish() {
+		_back.write(this,_ticks);
+		WorldState written = _back;
+		_back = _front;
+		_front = written;
+		_frontStale = false;
+	}
+
+	/**
+	 * Enables or disables pipelined ticks.
+	 * <p>
+	 * In pipelined mode, the agents of the next tick are sensed and think
+	 * during the pulse, as soon as the heart has applied all influences which
+	 * may change what they sense (see <code>PulseListener</code>) : each agent
+	 * waits for the square regions (of <code>regionSize</code> units) its
+	 * sensors cover, instead of the whole pulse.
+	 * Prepared agents sense on the pulsing thread and think on the executor
+	 * (see <code>setExecutor</code>) while the heart goes on, the tick
+	 * returning once they are all done.
+	 * The other agents sense and think at the start of next tick, as usual,
+	 * and all agents act in scene order, thus the heart receives the same
+	 * influences as without pipelining, as long as minds do not share mutable
+	 * state and influences only modify their targets.
+	 * </p>
+	 * <p>
+	 * Requires a <code>DefaultHeart</code>.
+	 * The batched sensing pass is not run in pipelined mode.
+	 * </p>
+	 * @param regionSize The side length of a region, should be close to the
+	 * sensors ranges.
+	 * @throws IllegalStateException If the heart is not a <code>DefaultHeart</code>.
+	 */
+	public void setPipelined(boolean pipelined, int regionSize) {
+		if ((pipelined) && (!(_heart instanceof DefaultHeart)))
+			throw new IllegalStateException("pipelined ticks require a default heart");
+		Pipeline p = pipelined ? new Pipeline(this,regionSize) : null;
+		this.attach(p);
+		_pipeline = p;
+	}
+
+	/** Enables or disables pipelined ticks, with default regions. */
+	public void setPipelined(boolean pipelined) {
+		this.setPipelined(pipelined,Pipeline.DEFAULT_REGION_SIZE);
+	}
+
+	public boolean isPipelined() {
+		return (_pipeline != null);
+	}
+
+	private void attach(Pipeline p) {
+		if (!(_heart instanceof DefaultHeart)) {
+			if (p != null)
+				throw new IllegalStateException("pipelined ticks require a default heart");
+			return;
+		}
+		((DefaultHeart)_heart).setPulseListener(p);
+	}
+
+	/**
+	 * Seeds the agents random generators.
+	 * <p>
+	 * Each agent receives its own generator when added, derived from the
+	 * seed and from its registration number (the number of agents added to
+	 * the world before it, which is kept when identifiers are reassigned by
+	 * a removal), whatever the threads running them.
+	 * Setting the seed gives new generators to the registered agents.
+	 * Without seed, the world is randomly seeded.
+	 * </p>
+	 * @see Agent#random
+	 */
+	public void setSeed(long seed) {
+		_seed = seed;
+		for (int id = 0 ; id < _agents.size() ; id++)
+			_agents.get(id).setRandom(this.generator(_serial[id]));
+	}
+
+	/** @return The generator of an agent registration number. */
+	private SplittableRandom generator(long serial) {
+		// the split generator seed and gamma are mixed from the parent seed,
+		// so that the generators of consecutive numbers are unrelated
+		return new SplittableRandom(_seed + serial * 0xBF58476D1CE4E5B9L).split();
+	}
+
+	/**
+	 * Sets the period of an agent, which then only ticks once every
+	 * <code>period</code> ticks (from its next tick on).
+	 * @param period The period, <code>1</code> to tick on each tick (default).
+	 */
+	public void setPeriod(Agent a, int period) {
+		if (period <= 0)
+			throw new IllegalArgumentException("period must be positive: "+period);
+		if (this.contains(a))
+			_period[a.getID()] = period;
+	}
+
+	public int period(Agent a) {
+		return this.contains(a) ? _period[a.getID()] : 0;
+	}
+
+	/**
+	 * Puts an agent to sleep.
+	 * <p>
+	 * A sleeping agent neither senses, thinks nor acts.
+	 * It is queued by wake tick, thus costs nothing on the ticks it sleeps
+	 * through, as long as most agents sleep (see the class documentation).
+	 * It wakes once its timer expires, when it is woken (see
+	 * <code>wake</code>), or, if it watches its sensors, as soon as a body
+	 * moves or is born inside the region of one of its range sensors (or its
+	 * own body moves).
+	 * The regions of a watching agent are indexed in a grid when it falls
+	 * asleep, so that a movement only tests the watchers of its cells.
+	 * May be called during a tick (by the agent mind, from any thread), the
+	 * agent then sleeps from the next tick on.
+	 * </p>
+	 * @param ticks The number of ticks to sleep, <code>Long.MAX_VALUE</code>
+	 * to sleep until woken.
+	 * @param watching <code>true</code> to wake on sensed movements.
+	 */
+	public void sleep(Agent a, long ticks, boolean watching) {
+		if (ticks < 0)
+			throw new IllegalArgumentException("ticks must not be negative: "+ticks);
+		if (!(this.contains(a)))
+			return;
+		long next = this.nextTick();
+		this.schedule(a.getID(),(ticks > Long.MAX_VALUE - next) ? Long.MAX_VALUE : next + ticks,watching);
+	}
+
+	/** Puts an agent to sleep until woken or sensing a movement. */
+	public void sleep(Agent a) {
+		this.sleep(a,Long.MAX_VALUE,true);
+	}
+
+	/** Wakes an agent up, it ticks on the next tick. */
+	public void wake(Agent a) {
+		if (!(this.contains(a)))
+			return;
+		this.schedule(a.getID(),this.nextTick(),false);
+	}
+
+	public boolean isAsleep(Agent a) {
+		return (this.contains(a)) && (_wakeAt[a.getID()] > this.nextTick());
+	}
+
+	/**
+	 * Makes idle agents sleep.
+	 * <p>
+	 * An agent whose tick submits no influence is put to sleep, watching its
+	 * sensors, for at most the given number of ticks.
+	 * This is only transparent for minds which stay idle as long as their
+	 * percepts do not change.
+	 * </p>
+	 * @param ticks The maximal number of ticks to sleep, <code>0</code> to
+	 * disable (default).
+	 */
+	public void setIdleSleep(long ticks) {
+		if (ticks < 0)
+			throw new IllegalArgumentException("ticks must not be negative: "+ticks);
+		_idleSleep = ticks;
+	}
+
+	public long idleSleep() {
+		return _idleSleep;
+	}
+
+	/**
+	 * Skips the ticks where nothing happens.
+	 * <p>
+	 * With an <code>EventHeart</code>, when no agent is scheduled for the
+	 * next tick (all are sleeping, or their period skips it) and no influence
+	 * is due, the world time jumps to the first tick where an agent wakes, an
+	 * influence is due or a decaying property reaches its bound, as if the
+	 * ticks between had been run.
+	 * Nothing is skipped with another heart, whose pending influences are
+	 * unknown, nor when nothing will ever happen.
+	 * </p>
+	 * @return The number of skipped ticks.
+	 */
+	public long skipIdle() {
+		if ((_ticking) || (!(_heart instanceof EventHeart)))
+			return 0;
+		long next = ((EventHeart)_heart).nextTime();
+		next = Math.min(next,Math.max(_boundTimes.peekTime(),_ticks));
+		for (int k = 0 ; (k < _nbAwake) && (next > _ticks) ; k++)
+			next = Math.min(next,_wakeAt[_awake[k]]);
+		next = Math.min(next,_sleeping.peekTime());
+		if ((next <= _ticks) || (next == Long.MAX_VALUE))
+			return 0;
+		long skipped = next - _ticks;
+		_ticks = next;
+		if (_doubleBuffered)
+			this.publish();
+		return skipped;
+	}
+
+	/** @return The tick the agents currently decide for. */
+	private long nextTick() {
+		return _ticking ? _ticks + 1 : _ticks;
+	}
+
+	/** @return <code>true</code> if the agent ticks on the given tick. */
+	boolean isScheduled(Agent a, long tick) {
+		return ((a != null) && (this.contains(a)) && (_wakeAt[a.getID()] <= tick));
+	}
+
+	/**
+	 * Schedules the next tick of an agent which has just ticked, unless it
+	 * has been put to sleep meanwhile.
+	 */
+	private void ticked(Agent a, Influence made) {
+		int id = a.getID();
+		if ((id < 0) || (id >= _agents.size()) || (_agents.get(id) != a)
+		 || (_wakeAt[id] > _ticks))
+			return;
+		if ((made == null) && (_idleSleep > 0)) {
+			_wakeAt[id] = (_idleSleep > Long.MAX_VALUE - _ticks - 1) ? Long.MAX_VALUE : _ticks + 1 + _idleSleep;
+			_watching[id] = true;
+		}
+		else
+			_wakeAt[id] = _ticks + _period[id];
+	}
+
+	/**
+	 * Wakes the watching agents which sense one of the moved or born bodies
+	 * of a pulse.
+	 */
+	private void wakeWatching(List<Influence> made) {
+		if ((made == null) || (made.isEmpty()) || (_watchers.size() == 0))
+			return;
+		for (Influence i : made) {
+			if (i instanceof MovementInfluence) {
+				Body b = ((MovementInfluence)i).target();
+				if (b != null)
+					_moved.add(b);
+			}
+			else if (i instanceof BirthInfluence) {
+				Agent a = ((BirthInfluence)i).agent();
+				if ((a != null) && (a.hasBody()))
+					_moved.add(a.body());
+			}
+		}
+		for (int k = 0 ; k < _moved.size() ; k++) {
+			Body b = _moved.get(k);
+			Agent a = b.agent();
+			if (a != null)
+				_woken.add(a);
+			_watchers.collect(b,_woken);
+		}
+		for (int k = 0 ; k < _woken.size() ; k++) {
+			Agent a = _woken.get(k);
+			if ((this.contains(a)) && (_watching[a.getID()]))
+				this.wake(a);
+		}
+		_woken.clear();
+		_moved.clear();
+	}
+
+	/**
+	 * Sets the tick an agent wakes at.
+	 * <p>
+	 * A queued agent is moved in the queue right away, an awake one is
+	 * queued at the end of the tick (it may be ticking on another thread),
+	 * or right away out of a tick.
+	 * </p>
+	 */
+	private void schedule(int id, long time, boolean watching) {
+		_wakeAt[id] = time;
+		_watching[id] = watching;
+		if (_awakePositions[id] >= 0) {
+			if ((!(_ticking)) && (time > _ticks))
+				this.fallAsleep(id);
+			return;
+		}
+		// may be called by minds, from any thread
+		synchronized (_sleeping) {
+			_sleeping.add(id,time);
+			this.index(id);
+		}
+	}
+
+	/** Indexes the regions of a queued agent if it watches its sensors. */
+	private void index(int id) {
+		if (_watching[id])
+			_watchers.add(_agents.get(id));
+		else
+			_watchers.remove(_agents.get(id));
+	}
+
+	/** Moves an awake agent to the queue. */
+	private void fallAsleep(int id) {
+		this.removeAwake(id);
+		synchronized (_sleeping) {
+			_sleeping.add(id,_wakeAt[id]);
+			this.index(id);
+		}
+	}
+
+	/** Moves the queued agents due on this tick to the awake ones. */
+	private void wakeDue() {
+		synchronized (_sleeping) {
+			while (_sleeping.peekTime() <= _ticks) {
+				int id = _sleeping.poll();
+				_watchers.remove(_agents.get(id));
+				this.addAwake(id);
+			}
+		}
+	}
+
+	/** Queues the awake agents which do not tick on the given tick. */
+	private void queueSleeping(long tick) {
+		// removing an awake agent moves the last one to its place
+		for (int k = _nbAwake - 1 ; k >= 0 ; k--) {
+			int id = _awake[k];
+			if (_wakeAt[id] > tick)
+				this.fallAsleep(id);
+		}
+	}
+
+	private void addAwake(int id) {
+		if (_nbAwake == _awake.length)
+			_awake = Arrays.copyOf(_awake,2 * _nbAwake);
+		_awakePositions[id] = _nbAwake;
+		_awake[_nbAwake++] = id;
+	}
+
+	private void removeAwake(int id) {
+		int k = _awakePositions[id];
+		int last = _awake[--_nbAwake];
+		_awake[k] = last;
+		_awakePositions[last] = k;
+		_awakePositions[id] = -1;
+	}
+
+	/** @return The number of ticks done. */
+	public long ticks() {
+		return _ticks;
 	}
 	
 	public void tick() {
-		for (Agent a : this)
-			_heart.submitInfluence(a.tick(this));
-		_heart.pulse();
+		List<Influence> made;
+		if ((_doubleBuffered) && (_frontStale))
+			this.publish();
+		_ticking = true;
+		try {
+			this.wakeDue();
+			this.submitBounds();
+			if (_pipeline != null)
+				made = this.tickPipelined();
+			else
+				made = this.tickAgents();
+			this.queueSleeping(_ticks + 1);
+			this.wakeWatching(made);
+		}
+		finally {
+			_ticking = false;
+		}
+		_ticks++;
+		if (_doubleBuffered)
+			this.publish();
+	}
+
+	/**
+	 * Submits the decaying properties reaching their bound on this tick,
+	 * before the agents influences.
+	 */
+	private void submitBounds() {
+		synchronized (_bounds) {
+			while (_boundTimes.peekTime() <= _ticks) {
+				Bound bound = _bounds.get(_boundTimes.peek());
+				_dueBounds.add(bound);
+				this.removeBound(bound);
+			}
+		}
+		// in the order of the agents, whatever the order the bounds were set
+		Collections.sort(_dueBounds,BOUND_ORDER);
+		for (int k = 0 ; k < _dueBounds.size() ; k++) {
+			Bound bound = _dueBounds.get(k);
+			Agent a = bound.body.agent();
+			if ((a != null) && (this.contains(a)) && (a.body() == bound.body)
+			 && (bound.body.decayVersion(bound.key) == bound.version))
+				_heart.submitInfluence(new PropertyBoundInfluence(bound.body,bound.key,bound.part,bound.version));
+		}
+		_dueBounds.clear();
+	}
+
+	/**
+	 * Schedules the tick a decaying property reaches its bound, replacing
+	 * the tick scheduled before for this body and property.
+	 * Called with the lock of <code>_bounds</code>.
+	 */
+	private void scheduleBound(Body b, PropertyKey<Integer> key, int version) {
+		long time = b.decayEnd(key);
+		ArrayList<Bound> bounds = _bodyBounds.get(b);
+		Bound bound = null;
+		for (int k = 0 ; (bounds != null) && (k < bounds.size()) && (bound == null) ; k++) {
+			if (bounds.get(k).key == key)
+				bound = bounds.get(k);
+		}
+		if (time == Long.MAX_VALUE) {
+			if (bound != null)
+				this.removeBound(bound);
+			return;
+		}
+		if (bound == null) {
+			if (bounds == null) {
+				bounds = new ArrayList<Bound>(1);
+				_bodyBounds.put(b,bounds);
+			}
+			bound = new Bound(_bounds.size(),b,key);
+			_bounds.add(bound);
+			bounds.add(bound);
+		}
+		bound.time = time;
+		bound.part = (b.decayRate(key) > 0) ? PropertyKey.MIN : PropertyKey.MAX;
+		bound.version = version;
+		_boundTimes.add(bound.id,time);
+	}
+
+	/**
+	 * Unschedules a bound, the last one taking its identifier.
+	 * Called with the lock of <code>_bounds</code>.
+	 */
+	private void removeBound(Bound bound) {
+		_boundTimes.remove(bound.id);
+		ArrayList<Bound> bounds = _bodyBounds.get(bound.body);
+		bounds.remove(bound);
+		if (bounds.isEmpty())
+			_bodyBounds.remove(bound.body);
+		Bound last = _bounds.remove(_bounds.size() - 1);
+		if (last != bound) {
+			_bounds.set(bound.id,last);
+			_boundTimes.rename(last.id,bound.id);
+			last.id = bound.id;
+		}
+	}
+
+	/** @return The number of decaying properties whose bound is scheduled. */
+	int nbBounds() {
+		synchronized (_bounds) {
+			return _bounds.size();
+		}
+	}
+
+	/** Unschedules the bounds of a body leaving the world. */
+	private void removeBounds(Body b) {
+		synchronized (_bounds) {
+			ArrayList<Bound> bounds = _bodyBounds.get(b);
+			while ((bounds != null) && (!(bounds.isEmpty())))
+				this.removeBound(bounds.get(bounds.size() - 1));
+		}
+	}
+
+	private List<Influence> tickAgents() {
+		if (_batchedSensing)
+			this.senseAll();
+		if (_agentThreads != null)
+			this.tickThreads();
+		else if (_executor == null) {
+			this.collectScheduled(_ticked);
+			try {
+				for (int k = 0 ; k < _ticked.size() ; k++) {
+					Agent a = _ticked.get(k);
+					// an agent may put a later one to sleep
+					if (!(this.isScheduled(a,_ticks)))
+						continue;
+					Influence i = a.tick(this);
+					this.ticked(a,i);
+					_heart.submitInfluence(i);
+				}
+			}
+			finally {
+				_ticked.clear();
+			}
+		}
+		else {
+			this.collectScheduled(_ticked);
+			this.thinkAll();
+			for (int i = 0 ; i < _ticked.size() ; i++)
+				this.act(_ticked.get(i));
+			_ticked.clear();
+		}
+		return _heart.pulse();
+	}
+
+	/**
+	 * Adds the agents scheduled for this tick to a list, in scene order.
+	 * <p>
+	 * When most agents are awake, the scene is gone through, and the rank of
+	 * each agent recorded, otherwise the awake agents are sorted by rank.
+	 * </p>
+	 */
+	private void collectScheduled(List<Agent> res) {
+		if ((((long)_nbAwake) * SPARSE_RATIO >= _agents.size()) || (_nextRank < 0)) {
+			int rank = 0;
+			for (Agent a : this) {
+				if ((a == null) || (!(this.contains(a))))
+					continue;
+				_ranks[a.getID()] = rank++;
+				if (_wakeAt[a.getID()] <= _ticks)
+					res.add(a);
+			}
+			_nextRank = rank;
+			return;
+		}
+		if (_rankKeys.length < _nbAwake)
+			_rankKeys = new long[Math.max(_nbAwake,2 * _rankKeys.length)];
+		int n = 0;
+		for (int k = 0 ; k < _nbAwake ; k++) {
+			int id = _awake[k];
+			if (_wakeAt[id] <= _ticks)
+				_rankKeys[n++] = (((long)_ranks[id]) << 32) | id;
+		}
+		Arrays.sort(_rankKeys,0,n);
+		for (int k = 0 ; k < n ; k++)
+			res.add(_agents.get((int)(_rankKeys[k] & 0xFFFFFFFFL)));
+	}
+
+	private void act(Agent a) {
+		Influence i = a.act();
+		this.ticked(a,i);
+		_heart.submitInfluence(i);
+	}
+
+	/**
+	 * Senses and thinks the agents not prepared by last pulse, makes all
+	 * agents act, then pulses while the pipeline prepares the next tick.
+	 */
+	private List<Influence> tickPipelined() {
+		this.collectScheduled(_acting);
+		for (int i = 0 ; i < _acting.size() ; i++) {
+			if (!(_pipeline.isPrepared(_acting.get(i))))
+				_ticked.add(_acting.get(i));
+		}
+		_pipeline.clearPrepared();
+		if (_executor == null) {
+			for (int i = 0 ; i < _ticked.size() ; i++) {
+				_ticked.get(i).sense(this);
+				_ticked.get(i).think();
+			}
+		}
+		else
+			this.thinkAll();
+		_ticked.clear();
+		for (int i = 0 ; i < _acting.size() ; i++)
+			this.act(_acting.get(i));
+		_acting.clear();
+		_pulsing = true;
+		try {
+			return _heart.pulse();
+		}
+		finally {
+			try {
+				_pipeline.await();
+			}
+			finally {
+				_pulsing = false;
+			}
+		}
+	}
+
+	/**
+	 * Runs the sense and think phases of the ticked agents on the executor,
+	 * and waits for their completion.
+	 */
+	private void thinkAll() {
+		int n = _ticked.size();
+		if (n == 0)
+			return;
+		int nbTasks = Math.min(n,TASKS_PER_CORE * Runtime.getRuntime().availableProcessors());
+		CountDownLatch done = new CountDownLatch(nbTasks);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int t = 0 ; t < nbTasks ; t++) {
+			int from = (int)(((long)n) * t / nbTasks);
+			int to = (int)(((long)n) * (t + 1) / nbTasks);
+			_executor.execute(new ThinkTask(from,to,done,failure));
+		}
+		join(done,failure);
+	}
+
+	/**
+	 * Ticks each agent on its own thread, waits for all of them, then
+	 * submits their influences in scene order.
+	 */
+	private void tickThreads() {
+		this.collectScheduled(_ticked);
+		int n = _ticked.size();
+		if (_made.length < n)
+			_made = new Influence[Math.max(n,_made.length * 2)];
+		CountDownLatch done = new CountDownLatch(n);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		ConcurrentHeart heart = null;
+		if (_heart instanceof ConcurrentHeart) {
+			heart = (ConcurrentHeart)_heart;
+			heart.reserveSlots(n);
+		}
+		for (int i = 0 ; i < n ; i++)
+			_agentThreads.execute(new AgentTask(i,heart,done,failure));
+		try {
+			join(done,failure);
+			if (heart == null) {
+				for (int i = 0 ; i < n ; i++)
+					_heart.submitInfluence(_made[i]);
+			}
+		}
+		finally {
+			Arrays.fill(_made,0,n,null);
+			_ticked.clear();
+		}
+	}
+
+	/**
+	 * Waits for the completion of all tasks of a tick.
+	 * @throws RuntimeException The first failure of a task.
+	 */
+	private static void join(CountDownLatch done, AtomicReference<Throwable> failure) {
+		try {
+			done.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while agents were thinking",e);
+		}
+		Throwable t = failure.get();
+		if (t instanceof RuntimeException)
+			throw (RuntimeException)t;
+		if (t instanceof Error)
+			throw (Error)t;
+	}
+
+	/**
+	 * Fills all range sensors of the sensing agents in a single pass.
+	 * <p>
+	 * Bodies do not move between this pass and the agents ticks, as
+	 * influences are only applied by the heart pulse.
+	 * </p>
+	 */
+	protected void senseAll() {
+		_sweep.clear();
+		_bodies.clear();
+		_visitors.clear();
+		_regions.clear();
+		Scene scene = this.sensingScene();
+		// in double buffered mode, the buffered shapes are tested
+		WorldState front = (scene == _front) ? _front : null;
+		int k = 0;
+		for (Body b : scene) {
+			Shape shape = (front == null) ? b : front.shapeAt(k++);
+			Rectangle r = shape.boundingRect();
+			_sweep.addB(r.origin().x,r.origin().y,r.end().x,r.end().y);
+			_bodies.add(b);
+			_shapes.add(shape);
+			Agent a = b.agent();
+			if ((a == null) || (!(a.hasMind())) || (!(this.isScheduled(a,_ticks))))
+				continue;
+			for (Sensor s : b.sensors()) {
+				if (!(s instanceof RangeSensor))
+					continue;
+				RangeSensor sensor = (RangeSensor)s;
+				Shape region = sensor.region();
+				r = region.boundingRect();
+				_sweep.addA(r.origin().x,r.origin().y,r.end().x,r.end().y);
+				_regions.add(region);
+				_visitors.add(sensor.batch(_ticks));
+			}
+		}
+		int n = _sweep.sweep();
+		// pairs are sorted by sensor, then by scene order
+		for (int i = 0 ; i < n ; i++) {
+			Shape region = _regions.get(_sweep.pairA(i));
+			if (Shapes.collide(region,_shapes.get(_sweep.pairB(i))))
+				_visitors.get(_sweep.pairA(i)).visit(_bodies.get(_sweep.pairB(i)));
+		}
+		_bodies.clear();
+		_shapes.clear();
+		_visitors.clear();
+		_regions.clear();
 	}
 
 	public Scene scene() {
@@ -44,15 +1095,102 @@ public class World implements Iterable<Agent>,Reportable {
 	}
 
 	public boolean remove(Agent a) {
-		if ((a.hasBody()) && (_scene.remove(a.body())))
-			return true;
-		return false;
+		if (!(this.contains(a)))
+			return false;
+		_scene.remove(a.body());
+		this.unregister(a);
+		if (!(_ticking))
+			_frontStale = true;
+		return true;
 	}
 
 	public boolean add(Agent a) {
-		if (a.hasBody())
-			return _scene.add(a.body());
-		return false;
+		if ((!(a.hasBody())) || (this.contains(a)))
+			return false;
+		if (!(_scene.add(a.body())))
+			return false;
+		this.register(a);
+		if (!(_ticking))
+			_frontStale = true;
+		return true;
+	}
+
+	public boolean contains(Agent a) {
+		int id = a.getID();
+		return ((id >= 0) && (id < _agents.size()) && (_agents.get(id) == a));
+	}
+
+	/**
+	 * @param id An agent identifier.
+	 * @return The agent of this identifier, <code>null</code> if there is
+	 * none.
+	 */
+	public Agent agent(int id) {
+		if ((id < 0) || (id >= _agents.size()))
+			return null;
+		return _agents.get(id);
+	}
+
+	/** @return The number of agents. */
+	public int size() {
+		return _agents.size();
+	}
+
+	private void register(Agent a) {
+		int id = _agents.size();
+		if (id == _wakeAt.length) {
+			_wakeAt = Arrays.copyOf(_wakeAt,2 * id);
+			_period = Arrays.copyOf(_period,2 * id);
+			_watching = Arrays.copyOf(_watching,2 * id);
+			_serial = Arrays.copyOf(_serial,2 * id);
+			_awakePositions = Arrays.copyOf(_awakePositions,2 * id);
+			_ranks = Arrays.copyOf(_ranks,2 * id);
+		}
+		_wakeAt[id] = 0;
+		_period[id] = 1;
+		_watching[id] = false;
+		_serial[id] = _nbRegistered++;
+		_ranks[id] = _nextRank++;
+		this.addAwake(id);
+		a.setID(id);
+		a.setRandom(this.generator(_serial[id]));
+		_agents.add(a);
+		a.body().setClock(_clock);
+	}
+
+	private void unregister(Agent a) {
+		int id = a.getID();
+		int last = _agents.size() - 1;
+		if (_awakePositions[id] >= 0)
+			this.removeAwake(id);
+		synchronized (_sleeping) {
+			_sleeping.remove(id);
+			_watchers.remove(a);
+		}
+		Agent moved = _agents.remove(last);
+		if (moved != a) {
+			_agents.set(id,moved);
+			moved.setID(id);
+			_wakeAt[id] = _wakeAt[last];
+			_period[id] = _period[last];
+			_watching[id] = _watching[last];
+			_serial[id] = _serial[last];
+			_ranks[id] = _ranks[last];
+			_awakePositions[id] = _awakePositions[last];
+			if (_awakePositions[id] >= 0)
+				_awake[_awakePositions[id]] = id;
+			else {
+				synchronized (_sleeping) {
+					_sleeping.rename(last,id);
+				}
+			}
+			_awakePositions[last] = -1;
+		}
+		a.setID(Identifiable.UNDEFINED);
+		if (a.hasBody()) {
+			this.removeBounds(a.body());
+			a.body().setClock(null);
+		}
 	}
 
 	/** {@inheritDoc} */
@@ -69,6 +1207,76 @@ public class World implements Iterable<Agent>,Reportable {
 		out.report("}");
 	}
 	
+	/** Senses and thinks a contiguous range of the ticked agents. */
+	private final class ThinkTask implements Runnable {
+		ThinkTask(int from, int to, CountDownLatch done, AtomicReference<Throwable> failure) {
+			_from = from;
+			_to = to;
+			_done = done;
+			_failure = failure;
+		}
+		@Override
+		public void run() {
+			try {
+				for (int i = _from ; i < _to ; i++) {
+					Agent a = _ticked.get(i);
+					a.sense(World.this);
+					a.think();
+				}
+			}
+			catch (Throwable t) {
+				_failure.compareAndSet(null,t);
+			}
+			finally {
+				_done.countDown();
+			}
+		}
+		private final int _from;
+		private final int _to;
+		private final CountDownLatch _done;
+		private final AtomicReference<Throwable> _failure;
+	};
+	
+	/**
+	 * Ticks one of the ticked agents, submitting its influence ranked by the
+	 * agent position to a concurrent heart, else keeping it.
+	 * <p>
+	 * The agent position is also its worker slot in the heart : agent threads
+	 * may not be pooled, and a thread local buffer would then be allocated
+	 * and registered for each agent on each tick.
+	 * </p>
+	 */
+	private final class AgentTask implements Runnable {
+		AgentTask(int index, ConcurrentHeart heart, CountDownLatch done, AtomicReference<Throwable> failure) {
+			_index = index;
+			_heart = heart;
+			_done = done;
+			_failure = failure;
+		}
+		@Override
+		public void run() {
+			try {
+				Agent a = _ticked.get(_index);
+				Influence i = a.tick(World.this);
+				ticked(a,i);
+				if (_heart != null)
+					_heart.submitInfluence(i,_index,_index);
+				else
+					_made[_index] = i;
+			}
+			catch (Throwable t) {
+				_failure.compareAndSet(null,t);
+			}
+			finally {
+				_done.countDown();
+			}
+		}
+		private final int _index;
+		private final ConcurrentHeart _heart;
+		private final CountDownLatch _done;
+		private final AtomicReference<Throwable> _failure;
+	};
+	
 	protected class AgentIterator extends AbstractIterator<Agent> {
 		public AgentIterator(Iterator<Body> it) {
 			_iterator = it;
@@ -81,14 +1289,47 @@ public class World implements Iterable<Agent>,Reportable {
 		public Agent next() throws NoSuchElementException {
 			if (!hasNext())
 				throw new NoSuchElementException("no more physical agent body");
-			return _iterator.next().agent();
+			_current = _iterator.next().agent();
+			return _current;
 		}
 		@Override
 		public void remove() throws UnsupportedOperationException,NoSuchElementException {
 			_iterator.remove();
+			if ((_current != null) && (contains(_current)))
+				unregister(_current);
+			_current = null;
 		}
 		private Iterator<Body> _iterator;
+		private Agent _current = null;
 	};
 
-};
+	/** Orders the bounds reached on a tick by time, agent then property. */
+	private static final Comparator<Bound> BOUND_ORDER = new Comparator<Bound>() {
+		@Override
+		public int compare(Bound a, Bound b) {
+			if (a.time != b.time)
+				return (a.time < b.time) ? -1 : 1;
+			int ia = (a.body.agent() == null) ? -1 : a.body.agent().getID();
+			int ib = (b.body.agent() == null) ? -1 : b.body.agent().getID();
+			if (ia != ib)
+				return (ia < ib) ? -1 : 1;
+			return a.key.slot() - b.key.slot();
+		}
+	};
+
+	/** Tick a decaying property reaches its bound. */
+	private static final class Bound {
+		Bound(int id, Body body, PropertyKey<Integer> key) {
+			this.id = id;
+			this.body = body;
+			this.key = key;
+		}
+		int id;
+		final Body body;
+		final PropertyKey<Integer> key;
+		long time;
+		int part;
+		int version;
+	};
 
+};
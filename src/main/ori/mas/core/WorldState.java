@@ -0,0 +1,507 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.AdaptedShape;
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.geometry.Shape;
+import ori.ogapi.util.AbstractIterator;
+import ori.ogapi.util.Iterator;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Buffer of the bodies state at the end of a tick.
+ * <p>
+ * A state holds, for each body of the scene (in scene order), a copy of its
+ * shape and of its typed properties (see <code>PropertyKey</code>), in
+ * arrays indexed by body, allocated once and rewritten on each publication.
+ * Untyped properties (held in the body properties map) are not buffered.
+ * The world owns two states, the front one being published while the other
+ * is written, then they are swapped (see <code>World.setDoubleBuffered</code>).
+ * </p>
+ * <p>
+ * A state is also a read-only scene, whose queries test the buffered shapes
+ * and return the live bodies : this is the scene the sensors query in double
+ * buffered mode.
+ * Bodies are indexed in a uniform grid when the state is written, and
+ * queries visit the matching bodies in scene order (as an
+ * <code>AdaptedScene</code> does), which may differ from the order of a
+ * spatial scene queries.
+ * </p>
+ * <p>
+ * A published state is rewritten when it becomes the back buffer, that is
+ * by the end of the tick following its publication : a reader running on
+ * another thread must not keep it longer, and may check that
+ * <code>tick()</code> has not changed once done reading.
+ * </p>
+ * @see World#setDoubleBuffered
+ */
+public class WorldState implements Scene {
+
+	WorldState() {
+	}
+
+	/** Copies the bodies of the world scene, replacing the buffered ones. */
+	void write(World w, long tick) {
+		_tick = -1;
+		int intStride = 3 * PropertyKey.nbSlots(PropertyKey.Type.INT);
+		int longStride = 3 * PropertyKey.nbSlots(PropertyKey.Type.LONG);
+		int doubleStride = 3 * PropertyKey.nbSlots(PropertyKey.Type.DOUBLE);
+		if (_slots.length < w.size())
+			_slots = new int[Math.max(w.size(),2 * _slots.length)];
+		Arrays.fill(_slots,-1);
+		if ((intStride != _intStride) || (longStride != _longStride) || (doubleStride != _doubleStride))
+			this.resize(intStride,longStride,doubleStride);
+		_size = 0;
+		for (Body b : w.scene()) {
+			int k = _size++;
+			if (k == _bodies.length)
+				this.grow();
+			_bodies[k] = b;
+			Agent a = b.agent();
+			if ((a != null) && (w.contains(a)))
+				_slots[a.getID()] = k;
+			this.copyShape(k,b);
+			b.copyInts(_ints,_intSet,k * _intStride,_intStride);
+			b.copyLongs(_longs,_longSet,k * _longStride,_longStride);
+			b.copyDoubles(_doubles,_doubleSet,k * _doubleStride,_doubleStride);
+		}
+		for (int k = _size ; (k < _bodies.length) && (_bodies[k] != null) ; k++) {
+			_bodies[k] = null;
+			_sources[k] = null;
+			_shapes[k] = null;
+		}
+		this.index();
+		_tick = tick;
+	}
+
+	/**
+	 * @return The number of ticks done by the world when published,
+	 * <code>-1</code> while the state is being written.
+	 */
+	public long tick() {
+		return _tick;
+	}
+
+	/** @return The number of buffered bodies. */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * @param id An agent identifier (see <code>World.agent</code>).
+	 * @return <code>true</code> if the agent body is buffered.
+	 */
+	public boolean hasAgent(int id) {
+		return ((id >= 0) && (id < _slots.length) && (_slots[id] >= 0));
+	}
+
+	/** @return The body of an agent. */
+	public Body body(int id) {
+		return _bodies[this.slot(id)];
+	}
+
+	/**
+	 * @return The copy of the agent body shape, which must not be modified.
+	 */
+	public Shape shape(int id) {
+		return _shapes[this.slot(id)];
+	}
+
+	public Point center(int id) {
+		return _shapes[this.slot(id)].center();
+	}
+
+	public int getInt(int id, PropertyKey<Integer> key) {
+		return this.getInt(id,key,PropertyKey.VALUE);
+	}
+
+	/** @return The part of a typed property, <code>0</code> if it was not set. */
+	public int getInt(int id, PropertyKey<Integer> key, int part) {
+		int i = 3 * key.slot() + part;
+		return (i < _intStride) ? _ints[this.slot(id) * _intStride + i] : 0;
+	}
+
+	public long getLong(int id, PropertyKey<Long> key) {
+		return this.getLong(id,key,PropertyKey.VALUE);
+	}
+
+	public long getLong(int id, PropertyKey<Long> key, int part) {
+		int i = 3 * key.slot() + part;
+		return (i < _longStride) ? _longs[this.slot(id) * _longStride + i] : 0;
+	}
+
+	public double getDouble(int id, PropertyKey<Double> key) {
+		return this.getDouble(id,key,PropertyKey.VALUE);
+	}
+
+	public double getDouble(int id, PropertyKey<Double> key, int part) {
+		int i = 3 * key.slot() + part;
+		return (i < _doubleStride) ? _doubles[this.slot(id) * _doubleStride + i] : 0.;
+	}
+
+	public boolean has(int id, PropertyKey<?> key) {
+		return this.has(id,key,PropertyKey.VALUE);
+	}
+
+	/** @return <code>true</code> if the part of a typed property was set. */
+	public boolean has(int id, PropertyKey<?> key, int part) {
+		int i = 3 * key.slot() + part;
+		switch (key.type()) {
+			case INT  : return (i < _intStride) && (_intSet[this.slot(id) * _intStride + i]);
+			case LONG : return (i < _longStride) && (_longSet[this.slot(id) * _longStride + i]);
+			default   : return (i < _doubleStride) && (_doubleSet[this.slot(id) * _doubleStride + i]);
+		}
+	}
+
+	/** @throws UnsupportedOperationException A state is read-only. */
+	@Override
+	public boolean add(Body b) {
+		throw new UnsupportedOperationException("world state is read-only");
+	}
+
+	/** @throws UnsupportedOperationException A state is read-only. */
+	@Override
+	public boolean remove(Body b) {
+		throw new UnsupportedOperationException("world state is read-only");
+	}
+
+	@Override
+	public boolean contains(Body b) {
+		Agent a = b.agent();
+		if ((a != null) && (this.hasAgent(a.getID())))
+			return (_bodies[_slots[a.getID()]] == b);
+		for (int k = 0 ; k < _size ; k++) {
+			if (_bodies[k] == b)
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public Scene getIn(Shape s) {
+		BufferScene res = new BufferScene();
+		this.visit(s,Scenes.IN,null,res);
+		return res;
+	}
+
+	@Override
+	public Scene getPartlyIn(Shape s) {
+		BufferScene res = new BufferScene();
+		this.visit(s,Scenes.PARTLY_IN,null,res);
+		return res;
+	}
+
+	@Override
+	public Scene getAt(Point p) {
+		BufferScene res = new BufferScene();
+		this.visit(null,Scenes.AT,p,res);
+		return res;
+	}
+
+	@Override
+	public void forEachIn(Shape s, BodyVisitor v) {
+		this.visit(s,Scenes.IN,null,v);
+	}
+
+	@Override
+	public void forEachPartlyIn(Shape s, BodyVisitor v) {
+		this.visit(s,Scenes.PARTLY_IN,null,v);
+	}
+
+	@Override
+	public void forEachAt(Point p, BodyVisitor v) {
+		this.visit(null,Scenes.AT,p,v);
+	}
+
+	@Override
+	public Iterator<Body> iterator() {
+		return new StateIterator();
+	}
+
+	/** @return The <code>k</code>th buffered body, in scene order. */
+	Body bodyAt(int k) {
+		return _bodies[k];
+	}
+
+	/** @return The shape copy of the <code>k</code>th buffered body. */
+	Shape shapeAt(int k) {
+		return _shapes[k];
+	}
+
+	/**
+	 * @return The bounding rectangle (<code>x0,y0,x1,y1</code>) of the
+	 * <code>k</code>th body, from index <code>4*k</code>.
+	 */
+	int[] rects() {
+		return _rects;
+	}
+
+	private int slot(int id) {
+		if (!(this.hasAgent(id)))
+			throw new IllegalArgumentException("no buffered agent: "+id);
+		return _slots[id];
+	}
+
+	private void visit(Shape s, int mode, Point p, BodyVisitor v) {
+		int x0, y0, x1, y1;
+		if (s != null) {
+			Rectangle r = s.boundingRect();
+			x0 = r.origin().x;
+			y0 = r.origin().y;
+			x1 = r.end().x;
+			y1 = r.end().y;
+		}
+		else {
+			x0 = x1 = p.x;
+			y0 = y1 = p.y;
+		}
+		int qMinX = cell(x0), qMinY = cell(y0), qMaxX = cell(x1), qMaxY = cell(y1);
+		long nbCells = ((long)(qMaxX - qMinX + 1)) * ((long)(qMaxY - qMinY + 1));
+		if (nbCells > _size) {
+			for (int k = 0 ; k < _size ; k++) {
+				if ((this.overlaps(k,x0,y0,x1,y1))
+				 && (Scenes.matches(s,mode,p,_shapes[k]))
+				 && (!(v.visit(_bodies[k]))))
+					return;
+			}
+			return;
+		}
+		// candidates are gathered from the cells, then visited in scene order
+		int[] found = CANDIDATES.get();
+		int n = 0;
+		for (int cy = qMinY ; cy <= qMaxY ; cy++) {
+			for (int cx = qMinX ; cx <= qMaxX ; cx++) {
+				int h = this.hash(cx,cy);
+				for (int e = _bucketStart[h] ; e < _bucketStart[h+1] ; e++) {
+					int k = _entries[e];
+					// a body spanning several cells is only reported from the
+					// first cell shared with the query, and bodies of other
+					// cells sharing the bucket are skipped
+					if ((Math.max(_cells[4*k],qMinX) != cx) || (Math.max(_cells[4*k+1],qMinY) != cy)
+					 || (_cells[4*k+2] < cx) || (_cells[4*k+3] < cy)
+					 || (!(this.overlaps(k,x0,y0,x1,y1))))
+						continue;
+					if (n == found.length) {
+						found = Arrays.copyOf(found,2 * n);
+						CANDIDATES.set(found);
+					}
+					found[n++] = k;
+				}
+			}
+		}
+		for (int e = 0 ; e < _nbLarge ; e++) {
+			int k = _large[e];
+			if (this.overlaps(k,x0,y0,x1,y1)) {
+				if (n == found.length) {
+					found = Arrays.copyOf(found,2 * n);
+					CANDIDATES.set(found);
+				}
+				found[n++] = k;
+			}
+		}
+		Arrays.sort(found,0,n);
+		for (int i = 0 ; i < n ; i++) {
+			int k = found[i];
+			if ((Scenes.matches(s,mode,p,_shapes[k])) && (!(v.visit(_bodies[k]))))
+				return;
+		}
+	}
+
+	private boolean overlaps(int k, int x0, int y0, int x1, int y1) {
+		return ((_rects[4*k] <= x1) && (x0 <= _rects[4*k+2])
+		     && (_rects[4*k+1] <= y1) && (y0 <= _rects[4*k+3]));
+	}
+
+	/**
+	 * Indexes the buffered bodies in a uniform grid, each body being listed in
+	 * the bucket of every cell its bounding rectangle overlaps, unless it
+	 * overlaps more than <code>MAX_CELLS</code> cells.
+	 */
+	private void index() {
+		int nbBuckets = 16;
+		while (nbBuckets < 2 * _size)
+			nbBuckets <<= 1;
+		if (_bucketStart.length != nbBuckets + 1) {
+			_bucketStart = new int[nbBuckets + 1];
+			_lastBody = new int[nbBuckets];
+		}
+		_mask = nbBuckets - 1;
+		Arrays.fill(_bucketStart,0);
+		Arrays.fill(_lastBody,-1);
+		_nbLarge = 0;
+		int total = 0;
+		// counts the entries of each bucket (shifted by one)
+		for (int k = 0 ; k < _size ; k++) {
+			_cells[4*k]   = cell(_rects[4*k]);
+			_cells[4*k+1] = cell(_rects[4*k+1]);
+			_cells[4*k+2] = cell(_rects[4*k+2]);
+			_cells[4*k+3] = cell(_rects[4*k+3]);
+			long nbCells = ((long)(_cells[4*k+2] - _cells[4*k] + 1)) * ((long)(_cells[4*k+3] - _cells[4*k+1] + 1));
+			if (nbCells > MAX_CELLS) {
+				if (_nbLarge == _large.length)
+					_large = Arrays.copyOf(_large,Math.max(16,2 * _nbLarge));
+				_large[_nbLarge++] = k;
+				continue;
+			}
+			for (int cy = _cells[4*k+1] ; cy <= _cells[4*k+3] ; cy++) {
+				for (int cx = _cells[4*k] ; cx <= _cells[4*k+2] ; cx++) {
+					int h = this.hash(cx,cy);
+					// distinct cells may share a bucket, keep a single entry
+					if (_lastBody[h] != k) {
+						_lastBody[h] = k;
+						_bucketStart[h+1]++;
+						total++;
+					}
+				}
+			}
+		}
+		for (int h = 0 ; h < nbBuckets ; h++)
+			_bucketStart[h+1] += _bucketStart[h];
+		if (_entries.length < total)
+			_entries = new int[Math.max(total,2 * _entries.length)];
+		Arrays.fill(_lastBody,-1);
+		// fills the buckets, using their starts as cursors
+		for (int k = 0 ; k < _size ; k++) {
+			if ((_nbLarge > 0) && (this.isLarge(k)))
+				continue;
+			for (int cy = _cells[4*k+1] ; cy <= _cells[4*k+3] ; cy++) {
+				for (int cx = _cells[4*k] ; cx <= _cells[4*k+2] ; cx++) {
+					int h = this.hash(cx,cy);
+					if (_lastBody[h] != k) {
+						_lastBody[h] = k;
+						_entries[_bucketStart[h]++] = k;
+					}
+				}
+			}
+		}
+		// each cursor ends on the start of the next bucket
+		for (int h = nbBuckets ; h > 0 ; h--)
+			_bucketStart[h] = _bucketStart[h-1];
+		_bucketStart[0] = 0;
+	}
+
+	private boolean isLarge(int k) {
+		long nbCells = ((long)(_cells[4*k+2] - _cells[4*k] + 1)) * ((long)(_cells[4*k+3] - _cells[4*k+1] + 1));
+		return (nbCells > MAX_CELLS);
+	}
+
+	private static int cell(int coordinate) {
+		return Math.floorDiv(coordinate,CELL_SIZE);
+	}
+
+	private int hash(int cx, int cy) {
+		return ((cx * 73856093) ^ (cy * 19349663)) & _mask;
+	}
+
+	/**
+	 * Copies a body shape, only translating the previous copy when the body
+	 * still has the same shape instance.
+	 */
+	private void copyShape(int k, Body b) {
+		Shape source = b.shape();
+		if (_sources[k] != source) {
+			_sources[k] = source;
+			// wrapped as the body is, Shapes.collide testing adapted shapes
+			// in its own way
+			_shapes[k] = new AdaptedShape(source.clone());
+		}
+		else {
+			Point from = _shapes[k].center();
+			Point to = source.center();
+			_delta.x = to.x - from.x;
+			_delta.y = to.y - from.y;
+			if ((_delta.x != 0) || (_delta.y != 0))
+				_shapes[k].translate(_delta);
+		}
+		Rectangle r = _shapes[k].boundingRect();
+		_rects[4*k]   = r.origin().x;
+		_rects[4*k+1] = r.origin().y;
+		_rects[4*k+2] = r.end().x;
+		_rects[4*k+3] = r.end().y;
+	}
+
+	private void grow() {
+		int n = Math.max(16,2 * _bodies.length);
+		_bodies = Arrays.copyOf(_bodies,n);
+		_shapes = Arrays.copyOf(_shapes,n);
+		_sources = Arrays.copyOf(_sources,n);
+		_rects = Arrays.copyOf(_rects,4 * n);
+		_cells = Arrays.copyOf(_cells,4 * n);
+		_ints = Arrays.copyOf(_ints,n * _intStride);
+		_intSet = Arrays.copyOf(_intSet,n * _intStride);
+		_longs = Arrays.copyOf(_longs,n * _longStride);
+		_longSet = Arrays.copyOf(_longSet,n * _longStride);
+		_doubles = Arrays.copyOf(_doubles,n * _doubleStride);
+		_doubleSet = Arrays.copyOf(_doubleSet,n * _doubleStride);
+	}
+
+	/** Reallocates the properties buffers once new keys have been registered. */
+	private void resize(int intStride, int longStride, int doubleStride) {
+		int n = _bodies.length;
+		_intStride = intStride;
+		_longStride = longStride;
+		_doubleStride = doubleStride;
+		_ints = new int[n * intStride];
+		_intSet = new boolean[n * intStride];
+		_longs = new long[n * longStride];
+		_longSet = new boolean[n * longStride];
+		_doubles = new double[n * doubleStride];
+		_doubleSet = new boolean[n * doubleStride];
+	}
+
+	private volatile long _tick = -1;
+	private int _size = 0;
+	private int[] _slots = new int[0];
+	private Body[] _bodies = new Body[0];
+	private Shape[] _shapes = new Shape[0];
+	private Shape[] _sources = new Shape[0];
+	private int[] _rects = new int[0];
+	private int _intStride = 0;
+	private int _longStride = 0;
+	private int _doubleStride = 0;
+	private int[] _ints = new int[0];
+	private boolean[] _intSet = new boolean[0];
+	private long[] _longs = new long[0];
+	private boolean[] _longSet = new boolean[0];
+	private double[] _doubles = new double[0];
+	private boolean[] _doubleSet = new boolean[0];
+	private final Point _delta = new Point(0,0);
+	private int[] _cells = new int[0];
+	private int _mask = 0;
+	private int[] _bucketStart = new int[0];
+	private int[] _lastBody = new int[0];
+	private int[] _entries = new int[0];
+	private int[] _large = new int[0];
+	private int _nbLarge = 0;
+
+	/** Side length of the cells of the bodies index. */
+	private static final int CELL_SIZE = 64;
+
+	/** Maximal number of cells of an indexed body, larger ones are scanned. */
+	private static final int MAX_CELLS = 64;
+
+	/** Per thread buffer of query candidates, queries being concurrent. */
+	private static final ThreadLocal<int[]> CANDIDATES = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[64];
+		}
+	};
+
+	private class StateIterator extends AbstractIterator<Body> {
+		@Override
+		public boolean hasNext() {
+			return (_next < _size);
+		}
+		@Override
+		public Body next() throws NoSuchElementException {
+			if (!hasNext())
+				throw new NoSuchElementException("no more body");
+			return _bodies[_next++];
+		}
+		private int _next = 0;
+	};
+
+};
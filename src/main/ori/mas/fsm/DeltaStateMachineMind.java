@@ -0,0 +1,87 @@
+package ori.mas.fsm;
+
+import ori.mas.core.Agent;
+import ori.mas.core.Body;
+import ori.mas.core.BufferScene;
+import ori.mas.core.Percept;
+import ori.mas.core.Scene;
+
+import ori.mas.percepts.MultiplePercept;
+import ori.mas.percepts.SurfacePercept;
+
+/**
+ * State-based mind maintaining its local view from percept changes.
+ * <p>
+ * Instead of replacing its world view with each perceived scene, this mind
+ * applies the surface percepts held by a <code>MultiplePercept</code> (as
+ * sent by a <code>DeltaShapeSensor</code>) to its view : bodies of
+ * <code>POSITIVE</code> percepts are added, bodies of <code>NEGATIVE</code>
+ * ones are removed.
+ * A single surface percept still replaces the whole view, as for
+ * <code>StateMachineMind</code>.
+ * </p>
+ * <p>
+ * The view holds the same bodies as the last sensed scene, but ordered by
+ * perception time rather than by scene order.
+ * Bodies are identified by reference, so that applying a change costs
+ * <code>O(k)</code> for a view of <code>k</code> bodies.
+ * </p>
+ * @see ori.mas.sensors.DeltaShapeSensor
+ */
+public class DeltaStateMachineMind extends StateMachineMind {
+
+	public DeltaStateMachineMind() {
+		super();
+		this.setWorld(_view);
+	}
+
+	public DeltaStateMachineMind(State init) {
+		super(init);
+		this.setWorld(_view);
+	}
+
+	public DeltaStateMachineMind(Agent a) {
+		super(a);
+		this.setWorld(_view);
+	}
+
+	public DeltaStateMachineMind(Agent a, State init) {
+		super(a,init);
+		this.setWorld(_view);
+	}
+
+	@Override
+	public void percept(Percept percept) {
+		if (percept instanceof MultiplePercept) {
+			for (Percept p : (MultiplePercept)percept)
+				this.apply(p);
+		}
+		else if (percept instanceof SurfacePercept) {
+			_view.clear();
+			for (Body b : ((SurfacePercept)percept).sceneView())
+				_view.add(b);
+		}
+	}
+
+	private void apply(Percept percept) {
+		if (!(percept instanceof SurfacePercept))
+			return;
+		Scene scene = ((SurfacePercept)percept).sceneView();
+		if (percept.type() == Percept.TYPE.POSITIVE) {
+			for (Body b : scene)
+				_view.add(b);
+		}
+		else if (percept.type() == Percept.TYPE.NEGATIVE)
+			_view.removeAll(scene);
+	}
+
+	@Override
+	public DeltaStateMachineMind clone() {
+		DeltaStateMachineMind m = new DeltaStateMachineMind(this.agent());
+		m.copy(this);
+		return m;
+	}
+
+	private final BufferScene _view = new BufferScene();
+
+};
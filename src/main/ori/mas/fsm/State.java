@@ -21,6 +21,26 @@ public interface State extends Iterable<Transition> {
 	 * @return The selected actor for the next tick.
 	 */
 	public Actor actor(Agent agent, Scene world);
+
+	/**
+	 * Computes the next action of an agent running a shared state machine.
+	 * <p>
+	 * Same as <code>actor(agent,world)</code>, except that the state keeps
+	 * its per-agent data in the agent context rather than in its fields, so
+	 * that a single state instance may serve many agents.
+	 * Calls <code>actor(agent,world)</code> by default, which suits the
+	 * states holding no per-agent data.
+	 * </p>
+	 * @param agent The agent to be considered.
+	 * @param world The local perception of the world by the agent.
+	 * @param context The agent state machine context.
+	 * @return The selected actor for the next tick.
+	 * @see StateContext
+	 */
+	public default Actor actor(Agent agent, Scene world, StateContext context) {
+		return this.actor(agent,world);
+	}
+
 	@Override public Iterator<Transition> iterator();
 
 };
@@ -0,0 +1,118 @@
+package ori.mas.fsm;
+
+import ori.mas.core.BodyFinder;
+
+import java.util.Arrays;
+
+/**
+ * Mutable data of an agent running a state machine.
+ * <p>
+ * A state machine (its states and transitions) is a definition, which may
+ * be built once and shared by many agents : all that changes while an agent
+ * runs it lives in the agent context, that is the current state of each
+ * (super) state machine, and the per-agent variables of the states (the
+ * direction of a patrol...).
+ * Each entry is keyed by its owner (a state machine, a state), in a small
+ * array scanned linearly, as an agent only goes through a few states.
+ * </p>
+ * <p>
+ * A context belongs to a single agent, and is not meant to be shared
+ * between threads.
+ * </p>
+ * @see StateMachine#nextActor(ori.mas.core.Agent,ori.mas.core.Scene,StateContext)
+ */
+public class StateContext implements Cloneable {
+
+	public StateContext() {
+	}
+
+	/**
+	 * @return The current state of a state machine, its initial state if it
+	 * has not been run yet in this context.
+	 */
+	public State state(StateMachine machine) {
+		int i = this.indexOf(machine);
+		if ((i < 0) || (_values[i] == null))
+			return machine.initial();
+		return (State)_values[i];
+	}
+
+	public void setState(StateMachine machine, State state) {
+		_values[this.entry(machine)] = state;
+	}
+
+	/** @return The integer variable of an owner, <code>0</code> if it has not been set. */
+	public int getInt(Object owner) {
+		int i = this.indexOf(owner);
+		return (i < 0) ? 0 : _ints[i];
+	}
+
+	public void setInt(Object owner, int value) {
+		_ints[this.entry(owner)] = value;
+	}
+
+	/** @return The variable of an owner, <code>null</code> if it has not been set. */
+	public Object get(Object owner) {
+		int i = this.indexOf(owner);
+		return (i < 0) ? null : _values[i];
+	}
+
+	public void set(Object owner, Object value) {
+		_values[this.entry(owner)] = value;
+	}
+
+	/** @return A body finder for the states queries of this context. */
+	public BodyFinder finder() {
+		if (_finder == null)
+			_finder = new BodyFinder();
+		return _finder;
+	}
+
+	/** Forgets all states and variables. */
+	public void clear() {
+		Arrays.fill(_owners,0,_size,null);
+		Arrays.fill(_ints,0,_size,0);
+		Arrays.fill(_values,0,_size,null);
+		_size = 0;
+	}
+
+	/** @return A context holding the same states and variables. */
+	@Override
+	public StateContext clone() {
+		StateContext c = new StateContext();
+		c._owners = _owners.clone();
+		c._ints = _ints.clone();
+		c._values = _values.clone();
+		c._size = _size;
+		return c;
+	}
+
+	private int indexOf(Object owner) {
+		for (int i = 0 ; i < _size ; i++) {
+			if (_owners[i] == owner)
+				return i;
+		}
+		return -1;
+	}
+
+	/** @return The index of the entry of an owner, added if needed. */
+	private int entry(Object owner) {
+		int i = this.indexOf(owner);
+		if (i >= 0)
+			return i;
+		if (_size == _owners.length) {
+			_owners = Arrays.copyOf(_owners,_size * 2);
+			_ints = Arrays.copyOf(_ints,_size * 2);
+			_values = Arrays.copyOf(_values,_size * 2);
+		}
+		_owners[_size] = owner;
+		return _size++;
+	}
+
+	private Object[] _owners = new Object[4];
+	private int[] _ints = new int[4];
+	private Object[] _values = new Object[4];
+	private int _size = 0;
+	private BodyFinder _finder = null;
+
+};
@@ -4,14 +4,40 @@ import ori.mas.core.Agent;
 import ori.mas.core.Actor;
 import ori.mas.core.Scene;
 
+/**
+ * State machine.
+ * <p>
+ * A state machine may either run for a single agent, keeping its current
+ * state (see <code>nextActor(a,world)</code>), or be a definition shared by
+ * many agents, each one running it with its own context (see
+ * <code>nextActor(a,world,context)</code>), the machine then being left
+ * untouched.
+ * </p>
+ */
 public class StateMachine {
 
 	public StateMachine() {
 		_current = null;
+		_initial = null;
 	}
 
 	public StateMachine(State init) {
 		_current = init;
+		_initial = init;
+	}
+
+	/**
+	 * Initial state setter.
+	 * @param state The state the agents start in, when running the machine
+	 * with a context.
+	 */
+	public void setInitial(State state) {
+		_initial = state;
+	}
+
+	/** @return The initial state, the current one if none has been set. */
+	public State initial() {
+		return (_initial != null) ? _initial : _current;
 	}
 
 	/**
@@ -52,7 +78,33 @@ public class StateMachine {
 		return _current.actor(a,world);
 	}
 
+	/**
+	 * Computes the next agent actor, the current state being read from and
+	 * stored into the agent context.
+	 * <p>
+	 * Same as <code>nextActor(a,world)</code>, the machine and its states
+	 * being left untouched, thus it may be shared by agents thinking
+	 * concurrently.
+	 * </p>
+	 * @param a The agent to be considered.
+	 * @param world The local scene representation of the agent.
+	 * @param context The agent context.
+	 * @return The next selected actor.
+	 */
+	public Actor nextActor(Agent a, Scene world, StateContext context) {
+		State current = context.state(this);
+		for (Transition t : current) {
+			if (t.isValid(a,world,context)) {
+				current = t.state();
+				context.setState(this,current);
+				break;
+			}
+		}
+		return current.actor(a,world,context);
+	}
+
 	private State _current;
+	private State _initial;
 	
 };
 
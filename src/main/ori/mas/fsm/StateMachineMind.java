@@ -16,6 +16,12 @@ import ori.mas.percepts.SurfacePercept;
  * It percepts the world in a "as is" way, meaning a Scene instance is used
  * to represent the world.
  * </p>
+ * <p>
+ * The state machine only holds the definition of the behaviour : the mind
+ * runs it with its own context (see <code>StateContext</code>), thus an
+ * initial state (a <code>SuperState</code>) may be built once and shared by
+ * all minds.
+ * </p>
  * <p>To implement hierarchical state machines, see the SuperState class.</p>
  * @see State
  * @see StateMachine
@@ -53,21 +59,44 @@ public class StateMachineMind extends AbstractMind {
 	public Actor nextActor() {
 		if (_stateMachine == null)
 			return null;
-		Actor a = _stateMachine.nextActor(this.agent(),_world);
+		Actor a = _stateMachine.nextActor(this.agent(),_world,_context);
 		//System.out.println("StateMachineMind actor : "+a);
 		return a;
 	}
 
 	@Override
 	public StateMachineMind clone() {
-		// TODO state . clone
-		return new StateMachineMind(this.agent(),_stateMachine.current());
+		StateMachineMind m = new StateMachineMind(this.agent());
+		m.copy(this);
+		return m;
+	}
+
+	protected StateMachine stateMachine() {
+		return _stateMachine;
+	}
+
+	/** @return The mind own context, holding the current states. */
+	protected StateContext context() {
+		return _context;
+	}
+
+	/** Runs the state machine of another mind, from a copy of its context. */
+	protected void copy(StateMachineMind m) {
+		_stateMachine = m._stateMachine;
+		_context = m._context.clone();
+	}
+
+	/** Sets the local view of the world used to select the next actor. */
+	protected void setWorld(Scene world) {
+		_world = world;
 	}
 
 	private StateMachine _stateMachine;
 	private Scene _world;
+	private StateContext _context = new StateContext();
 	
+	/** @return The current state of the super state the mind runs. */
 	public State current() {
-			return ((StateMachine)(_stateMachine.current())).current();
-		}
+		return _context.state((StateMachine)(_context.state(_stateMachine)));
+	}
 };
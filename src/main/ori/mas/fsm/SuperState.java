@@ -28,6 +28,11 @@ public class SuperState extends StateMachine implements State {
 	public Actor actor(Agent a, Scene world) {
 		return this.nextActor(a,world);
 	}
+
+	@Override
+	public Actor actor(Agent a, Scene world, StateContext context) {
+		return this.nextActor(a,world,context);
+	}
 	
 	@Override
 	public Iterator<Transition> iterator() {
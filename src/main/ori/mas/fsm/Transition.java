@@ -11,6 +11,17 @@ public abstract class Transition {
 
 	public abstract boolean isValid(Agent a, Scene world);
 
+	/**
+	 * Checks the transition for an agent running a shared state machine.
+	 * <p>
+	 * Same as <code>isValid(a,world)</code> by default, transitions keeping
+	 * per-agent data should keep it in the context.
+	 * </p>
+	 */
+	public boolean isValid(Agent a, Scene world, StateContext context) {
+		return this.isValid(a,world);
+	}
+
 	public State state() {
 		return _state;
 	}
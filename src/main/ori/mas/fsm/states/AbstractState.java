@@ -5,6 +5,7 @@ import ori.mas.core.Actor;
 import ori.mas.core.Scene;
 
 import ori.mas.fsm.State;
+import ori.mas.fsm.StateContext;
 import ori.mas.fsm.Transition;
 
 import java.util.Random;
@@ -25,6 +26,16 @@ public abstract class AbstractState implements State {
 	@Override abstract
 	public Actor actor(Agent a, Scene world);
 
+	/**
+	 * @return The context of the state when it is run by a single agent
+	 * (through <code>actor(a,world)</code>).
+	 */
+	protected StateContext ownContext() {
+		if (_context == null)
+			_context = new StateContext();
+		return _context;
+	}
+
 	@Override
 	public Iterator<Transition> iterator() {
 		return _transitions.iterator();
@@ -39,10 +50,32 @@ public abstract class AbstractState implements State {
 	}
 
 	private List<Transition> _transitions;
+	private StateContext _context = null;
 	
+	/**
+	 * Generator shared by all states.
+	 * @deprecated Contended and scheduling dependent when agents think
+	 * concurrently, use the agent generator instead (see
+	 * <code>random(Agent,int,int)</code>).
+	 */
+	@Deprecated
 	public static final Random _random = new Random();
+
+	/** @deprecated Draws from the shared generator, see <code>random(Agent,int,int)</code>. */
+	@Deprecated
 	public static int random(int min, int max) {
-		int r = _random.nextInt();
+		return random(_random.nextInt(),min,max);
+	}
+
+	/**
+	 * @return A random integer between <code>min</code> (included) and
+	 * <code>max</code> (excluded), drawn from the agent own generator.
+	 */
+	public static int random(Agent a, int min, int max) {
+		return random(a.random().nextInt(),min,max);
+	}
+
+	private static int random(int r, int min, int max) {
 		r = (r % (max - min));
 		if (r < 0)
 			r += (max - min);
@@ -10,6 +10,7 @@ import ori.mas.actors.Actors;
 import ori.mas.actors.EatActor;
 import ori.mas.actors.MovementActor;
 
+import ori.mas.fsm.StateContext;
 import ori.mas.fsm.Transition;
 
 import java.util.List;
@@ -28,11 +29,16 @@ public class EatState extends AbstractState {
 
 	@Override 
 	public Actor actor(Agent a, Scene world) {
+		return this.actor(a,world,this.ownContext());
+	}
+
+	@Override 
+	public Actor actor(Agent a, Scene world, StateContext context) {
 		//System.out.println("eatstate");
 		EatActor actor = Actors.selectEatActor(a.body().actors());
 		Body t = null;
 		t = (Body)(a.body().get(Properties.TARGET));
-		if ((t != null) && (world.getPartlyIn(a.body()).contains(t))) {
+		if ((t != null) && (context.finder().isPartlyIn(world,a.body(),t))) {
 			if (actor == null) {
 				a.body().set(Properties.TARGET,null);
 				return null;
@@ -7,6 +7,7 @@ import ori.mas.core.Scene;
 import ori.mas.actors.Actors;
 import ori.mas.actors.MovementActor;
 
+import ori.mas.fsm.StateContext;
 import ori.mas.fsm.Transition;
 
 import java.util.List;
@@ -15,6 +16,7 @@ import java.util.Iterator;
 
 /**
  * Walks randomly.
+ * <p>The current direction of each agent is kept in its context.</p>
  */
 public class PatrolState extends AbstractState {
 
@@ -28,19 +30,24 @@ public class PatrolState extends AbstractState {
 
 	@Override 
 	public Actor actor(Agent a, Scene world) {
+		return this.actor(a,world,this.ownContext());
+	}
+
+	@Override 
+	public Actor actor(Agent a, Scene world, StateContext context) {
 		//System.out.println("patrolstate");
 		MovementActor actor = Actors.selectMaxSpeedMovementActor(a.body().actors());
 		if (actor == null) {
 			System.out.println("no actor");
 			return null;
 		}
-		_angle = _angle + random(_minAngle,_maxAngle);
-		actor.setAngle(_angle);
+		int angle = context.getInt(this) + random(a,_minAngle,_maxAngle);
+		context.setInt(this,angle);
+		actor.setAngle(angle);
 		actor.setSpeed(actor.maxSpeed());
 		return actor;
 	}
 
-	private int _angle = 0;
 	private int _minAngle = -30;
 	private int _maxAngle = 30;
 
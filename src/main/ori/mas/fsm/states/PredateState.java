@@ -8,6 +8,7 @@ import ori.mas.core.Properties;
 
 import ori.ogapi.util.Filter;
 
+import ori.mas.fsm.StateContext;
 import ori.mas.fsm.SuperState;
 import ori.mas.fsm.Transition;
 
@@ -32,6 +33,10 @@ import java.util.Iterator;
  * Once this state is reached, he eats its target (thus, gains some feed
  * level, and kills the target), and goes back to the patrol state.
  * </p>
+ * <p>
+ * A single instance may be shared by all predators, each one running it
+ * with its own context (see <code>StateMachineMind</code>).
+ * </p>
  */
 public class PredateState extends SuperState {
 
@@ -53,7 +58,7 @@ public class PredateState extends SuperState {
 
 	public void preprocess() {
 		PatrolState s1 = new PatrolState();
-		FollowState s2 = new FollowState();
+		final FollowState s2 = new FollowState();
 		EatState s3 = new EatState();
 
 		Transition s1tos2 = new Transition(s2) {
@@ -83,8 +88,13 @@ public class PredateState extends SuperState {
 		Transition s2tos3 = new Transition(s3) {
 			@Override
 			public boolean isValid(Agent a, Scene w) {
+				// the single agent running the machine is following
+				return this.isValid(a,w,s2.ownContext());
+			}
+			@Override
+			public boolean isValid(Agent a, Scene w, StateContext context) {
 				// TODO not bounding rect
-				if (w.getPartlyIn(a.body().boundingRect()).contains((Body)(a.body().get(Properties.TARGET)))) {
+				if (context.finder().isPartlyIn(w,a.body().boundingRect(),(Body)(a.body().get(Properties.TARGET)))) {
 					return true;
 				}
 				return false;
@@ -115,6 +125,7 @@ public class PredateState extends SuperState {
 		s3.addTransition(s3tos1);
 		s3.addTransition(s3tos2);
 
+		this.setInitial(s1);
 		this.setCurrent(s1);
 	}
 
@@ -2,17 +2,85 @@ package ori.mas.influences;
 
 import ori.mas.core.Actor;
 import ori.mas.core.Body;
+import ori.mas.core.PropertyKey;
 
 import ori.ogapi.util.OperatorPlus;
 import java.util.Comparator;
 
+/**
+ * Influence adding an <code>int</code> to a body property, the result being
+ * clamped between the property minimal and maximal values.
+ * <p>
+ * The value is held as an <code>int</code>, and when the property is typed
+ * (see <code>PropertyKey</code>), the heart adds, clamps and stores it
+ * without boxing.
+ * <code>value</code> and <code>setValue</code> stay available, boxing and
+ * unboxing the value.
+ * </p>
+ */
 public class ChangeBodyIntegerPropertyInfluence extends ChangeBodyPropertyInfluence {
 
 	public ChangeBodyIntegerPropertyInfluence(Actor source, Body target, String property, Integer value) {
-		super(source,target,property,value,OperatorPlus.INTEGER,INTEGER_COMPARATOR);
+		this(source,target,property,PropertyKey.intKeyOf(property),0);
+		this.setValue(value);
 	}
 
-	public static final Comparator<Integer> INTEGER_COMPARATOR = 
+	public ChangeBodyIntegerPropertyInfluence(Actor source, Body target, String property, int value) {
+		this(source,target,property,PropertyKey.intKeyOf(property),value);
+	}
+
+	public ChangeBodyIntegerPropertyInfluence(Actor source, Body target, PropertyKey<Integer> key, int value) {
+		this(source,target,key.name(),key,value);
+	}
+
+	private ChangeBodyIntegerPropertyInfluence(Actor source, Body target, String property, PropertyKey<Integer> key, int value) {
+		super(source,target,property,null,OperatorPlus.INTEGER,INTEGER_COMPARATOR);
+		_key = key;
+		_int = value;
+		_boxed = false;
+	}
+
+	/** @return The key of the property, <code>null</code> if it is not typed. */
+	public PropertyKey<Integer> key() {
+		return _key;
+	}
+
+	/**
+	 * @return <code>true</code> if the value is an <code>int</code>, that is
+	 * unless a <code>null</code> or non integer value has been set.
+	 */
+	public boolean isInt() {
+		return (!(_boxed));
+	}
+
+	/** @return The value, <code>0</code> if it is not an <code>int</code>. */
+	public int intValue() {
+		return _int;
+	}
+
+	public void setIntValue(int value) {
+		_int = value;
+		_boxed = false;
+		super.setValue(null);
+	}
+
+	@Override
+	public Object value() {
+		return (_boxed) ? super.value() : Integer.valueOf(_int);
+	}
+
+	@Override
+	public void setValue(Object v) {
+		if (v instanceof Integer)
+			this.setIntValue(((Integer)v).intValue());
+		else {
+			_int = 0;
+			_boxed = true;
+			super.setValue(v);
+		}
+	}
+
+	public static final Comparator<Integer> INTEGER_COMPARATOR =
 		new Comparator<Integer>() {
 			@Override
 			public int compare(Integer i1, Integer i2) {
@@ -20,6 +88,8 @@ public class ChangeBodyIntegerPropertyInfluence extends ChangeBodyPropertyInflue
 			}
 		};
 
+	private final PropertyKey<Integer> _key;
+	private int _int;
+	private boolean _boxed;
 
 };
-
@@ -7,6 +7,7 @@ public class CollideInfluence extends PhysicalInfluence {
 
 	public CollideInfluence(Body target, Body collidingBody, Point collidingPoint) {
 		super(target);
+		_collidingBody = collidingBody;
 		_collidingPoint = collidingPoint;
 	}
 
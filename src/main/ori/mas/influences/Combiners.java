@@ -0,0 +1,56 @@
+package ori.mas.influences;
+
+import ori.mas.core.InfluenceCombiner;
+
+import ori.ogapi.geometry.Point;
+
+/**
+ * Common influence combiners.
+ * @see ori.mas.core.DefaultHeart#setCombiner
+ */
+public class Combiners {
+
+	/**
+	 * Sums the values of integer property influences on a same property, so
+	 * that the sum is clamped once instead of each value.
+	 */
+	public static final InfluenceCombiner<ChangeBodyIntegerPropertyInfluence> INTEGER_PROPERTY_SUM =
+		new InfluenceCombiner<ChangeBodyIntegerPropertyInfluence>() {
+			@Override
+			public Object kind(ChangeBodyIntegerPropertyInfluence i) {
+				if (!(i.isInt()))
+					return null;
+				return i.property();
+			}
+			@Override
+			public ChangeBodyIntegerPropertyInfluence combine(ChangeBodyIntegerPropertyInfluence first,
+			                                                  ChangeBodyIntegerPropertyInfluence second) {
+				first.setIntValue(first.intValue() + second.intValue());
+				return first;
+			}
+		};
+
+	/**
+	 * Adds the vectors of the movements of a same body, so that the body only
+	 * moves (and collides) once.
+	 */
+	public static final InfluenceCombiner<MovementInfluence> MOVEMENT_SUM =
+		new InfluenceCombiner<MovementInfluence>() {
+			@Override
+			public Object kind(MovementInfluence i) {
+				if (i.vector() == null)
+					return null;
+				return MovementInfluence.class;
+			}
+			@Override
+			public MovementInfluence combine(MovementInfluence first, MovementInfluence second) {
+				Point v = first.vector().clone();
+				v.plus(second.vector());
+				first.setVector(v);
+				return first;
+			}
+		};
+
+	private Combiners() { }
+
+};
@@ -0,0 +1,44 @@
+package ori.mas.influences;
+
+import ori.mas.core.Body;
+import ori.mas.core.PropertyKey;
+
+/**
+ * Influence reporting that a decaying property has reached its bound (see
+ * <code>Body.setDecay</code>).
+ * <p>
+ * Submitted by the world on the tick the bound is reached, it is ignored by
+ * the heart if the property has been set since it has been scheduled.
+ * </p>
+ */
+public class PropertyBoundInfluence extends PhysicalInfluence {
+
+	/**
+	 * @param part <code>PropertyKey.MIN</code> or <code>PropertyKey.MAX</code>.
+	 * @param version The decay version the bound has been computed for.
+	 */
+	public PropertyBoundInfluence(Body target, PropertyKey<Integer> key, int part, int version) {
+		super(target);
+		_key = key;
+		_part = part;
+		_version = version;
+	}
+
+	public PropertyKey<Integer> key() {
+		return _key;
+	}
+
+	/** @return <code>PropertyKey.MIN</code> or <code>PropertyKey.MAX</code>. */
+	public int part() {
+		return _part;
+	}
+
+	public int version() {
+		return _version;
+	}
+
+	private final PropertyKey<Integer> _key;
+	private final int _part;
+	private final int _version;
+
+};
@@ -17,6 +17,15 @@ public class SurfacePercept extends AbstractPercept {
 		_scene = scene;
 	}
 	
+	/**
+	 * @param type <code>POSITIVE</code> if the bodies of the scene are newly
+	 * perceived, <code>NEGATIVE</code> if they are not perceived any longer.
+	 */
+	public SurfacePercept(TYPE type, Sensor source, Scene scene) {
+		super(type,source);
+		_scene = scene;
+	}
+	
 	public Scene sceneView() {
 		return _scene;
 	}
@@ -0,0 +1,101 @@
+package ori.mas.sensors;
+
+import ori.mas.core.Body;
+import ori.mas.core.BufferScene;
+import ori.mas.core.Percept;
+import ori.mas.core.World;
+
+import ori.mas.percepts.MultiplePercept;
+import ori.mas.percepts.SurfacePercept;
+
+import ori.ogapi.geometry.Shape;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Shape sensor only sending the changes of its view.
+ * <p>
+ * The visible bodies are computed as for <code>ShapeSensor</code>, but they
+ * are compared to the ones of the previous call : the returned
+ * <code>MultiplePercept</code> holds a <code>NEGATIVE</code> surface percept
+ * of the bodies which left the view, followed by a <code>POSITIVE</code> one
+ * of the bodies which entered it.
+ * The first call thus sends the whole view as entered bodies.
+ * </p>
+ * <p>
+ * Both surfaces and the percepts are reused, they are only valid until next
+ * call.
+ * The views are compared by body identity, in <code>O(k)</code> for
+ * <code>k</code> visible bodies.
+ * A mind receiving such percepts must maintain its own view,
+ * see <code>DeltaStateMachineMind</code>.
+ * </p>
+ * @see ori.mas.fsm.DeltaStateMachineMind
+ */
+public class DeltaShapeSensor extends ShapeSensor {
+
+	public DeltaShapeSensor() {
+		super();
+	}
+
+	public DeltaShapeSensor(Body b) {
+		super(b);
+	}
+
+	public DeltaShapeSensor(Body b, Shape shape) {
+		super(b,shape);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>Returns the differences between this view and the previous one.</p>
+	 */
+	@Override 
+	public Percept sense(World w) {
+		BufferScene view = (BufferScene)(((SurfacePercept)(super.sense(w))).sceneView());
+		if (_percept == null) {
+			_entered = new BufferScene();
+			_left = new BufferScene();
+			_previous = new BufferScene();
+			_percept = new MultiplePercept(this);
+			_percept.add(new SurfacePercept(Percept.TYPE.NEGATIVE,this,_left));
+			_percept.add(new SurfacePercept(Percept.TYPE.POSITIVE,this,_entered));
+		}
+		_entered.clear();
+		_left.clear();
+		_current.clear();
+		for (int i = 0 ; i < view.size() ; i++) {
+			Body b = view.get(i);
+			_current.put(b,Boolean.TRUE);
+			if (_visible.get(b) == null)
+				_entered.add(b);
+		}
+		for (int i = 0 ; i < _previous.size() ; i++) {
+			Body b = _previous.get(i);
+			if (_current.get(b) == null)
+				_left.add(b);
+		}
+		// current view becomes the previous one
+		_previous.clear();
+		for (int i = 0 ; i < view.size() ; i++)
+			_previous.add(view.get(i));
+		IdentityHashMap<Body,Boolean> tmp = _visible;
+		_visible = _current;
+		_current = tmp;
+		return _percept;
+	}
+
+	@Override
+	public DeltaShapeSensor clone() {
+		Shape shape = this.shape();
+		return new DeltaShapeSensor(this.body(),(shape == null) ? null : shape.clone());
+	}
+
+	private MultiplePercept _percept = null;
+	private BufferScene _entered;
+	private BufferScene _left;
+	private BufferScene _previous;
+	private IdentityHashMap<Body,Boolean> _visible = new IdentityHashMap<Body,Boolean>();
+	private IdentityHashMap<Body,Boolean> _current = new IdentityHashMap<Body,Boolean>();
+
+};
@@ -1,17 +1,18 @@
 package ori.mas.sensors;
 
 import ori.mas.core.Body;
+import ori.mas.core.BodyVisitor;
+import ori.mas.core.BufferScene;
 import ori.mas.core.Percept;
+import ori.mas.core.RangeSensor;
 import ori.mas.core.World;
 
 import ori.mas.percepts.SurfacePercept;
 
 import ori.ogapi.geometry.Shape;
 import ori.ogapi.geometry.Point;
-import java.util.List;
-import java.util.LinkedList;
 
-public class ShapeSensor extends AbstractSensor {
+public class ShapeSensor extends AbstractSensor implements RangeSensor {
 
 	public ShapeSensor() {
 		super();
@@ -27,19 +28,78 @@ public class ShapeSensor extends AbstractSensor {
 		_shape = shape;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The sensing shape, the visible bodies buffer and the percept are
+	 * allocated once and reused on each call, thus the returned percept view
+	 * is only valid until next call.
+	 * The world sensing scene is queried, see <code>World.sensingScene</code>,
+	 * unless the perception has been batched for this tick.
+	 * </p>
+	 */
 	@Override 
 	public Percept sense(World w) {
-		Shape shape = _shape.clone();
-		shape.translate(this.body().center());
-		return new SurfacePercept(w.scene().getPartlyIn(shape));
+		if (_batchTick != NOT_BATCHED) {
+			boolean batched = (_batchTick == w.ticks());
+			_batchTick = NOT_BATCHED;
+			if (batched)
+				return _percept;
+		}
+		Shape query = this.region();
+		_view.clear();
+		w.sensingScene().forEachPartlyIn(query,_view);
+		return _percept;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Shape region() {
+		if (_query == null) {
+			_query = _shape.clone();
+			_offset = new Point(0,0);
+			_delta = new Point(0,0);
+			_view = new BufferScene();
+			_percept = new SurfacePercept(this,_view);
+		}
+		// moves the sensing shape from its last position to the body one
+		Point center = this.body().center();
+		_delta.x = center.x - _offset.x;
+		_delta.y = center.y - _offset.y;
+		_query.translate(_delta);
+		_offset.x = center.x;
+		_offset.y = center.y;
+		return _query;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BodyVisitor batch(long tick) {
+		this.region();
+		_view.clear();
+		_batchTick = tick;
+		return _view;
+	}
+
+	/** @return The sensing shape, centered on the origin. */
+	public Shape shape() {
+		return _shape;
 	}
 
 	@Override
 	public ShapeSensor clone() {
-		return new ShapeSensor(this.body(),_shape.clone());
+		return new ShapeSensor(this.body(),(_shape == null) ? null : _shape.clone());
 	}
 
 	private Shape _shape;
+	private Shape _query = null;
+	private Point _offset;
+	private Point _delta;
+	private BufferScene _view;
+	private SurfacePercept _percept;
+	/** Tick of the batched perception, if any. */
+	private long _batchTick = NOT_BATCHED;
+	private static final long NOT_BATCHED = -1;
 
 };
 
@@ -0,0 +1,23 @@
+package ori.mas.shard;
+
+import ori.mas.core.Agent;
+import ori.mas.core.Body;
+
+/**
+ * Rebuilds the agents migrating into a shard.
+ * <p>
+ * Only the body shape and properties cross shard borders, the factory gives
+ * the body its sensors and actors back, and a new mind, according to its
+ * soul (see <code>Properties.SOUL</code>).
+ * </p>
+ */
+public interface AgentFactory {
+
+	/**
+	 * @param soul The agent soul, <code>null</code> if its body has none.
+	 * @param body The received body, holding its shape and properties.
+	 * @return The agent of the body, <code>null</code> to drop it.
+	 */
+	public Agent make(String soul, Body body);
+
+};
@@ -0,0 +1,47 @@
+package ori.mas.shard;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Link between two shards of the same process, through two unbounded queues.
+ */
+public class LocalLink implements ShardLink {
+
+	/** @return Both ends of a new link. */
+	public static LocalLink[] pair() {
+		BlockingQueue<byte[]> a = new LinkedBlockingQueue<byte[]>();
+		BlockingQueue<byte[]> b = new LinkedBlockingQueue<byte[]>();
+		return new LocalLink[] { new LocalLink(a,b), new LocalLink(b,a) };
+	}
+
+	private LocalLink(BlockingQueue<byte[]> in, BlockingQueue<byte[]> out) {
+		_in = in;
+		_out = out;
+	}
+
+	@Override
+	public void send(byte[] message) {
+		_out.add(message);
+	}
+
+	@Override
+	public byte[] receive() throws IOException {
+		try {
+			return _in.take();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while receiving");
+		}
+	}
+
+	@Override
+	public void close() { }
+
+	private final BlockingQueue<byte[]> _in;
+	private final BlockingQueue<byte[]> _out;
+
+};
@@ -0,0 +1,394 @@
+package ori.mas.shard;
+
+import ori.mas.core.Agent;
+import ori.mas.core.Body;
+import ori.mas.core.BodyVisitor;
+import ori.mas.core.Properties;
+import ori.mas.core.World;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.geometry.Shape;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Part of a world split into spatial regions, each one run by its own shard
+ * (usually its own process).
+ * <p>
+ * A shard owns the agents whose body center lies in its region (origin
+ * included, end excluded), and runs them with its own world.
+ * After each tick, it exchanges with each neighbour shard :
+ * <ul>
+ * <li>the agents which have moved into the neighbour region (migrants),
+ * removed from this world and rebuilt by the neighbour factory,</li>
+ * <li>the bodies lying within <code>ghostWidth</code> units of the neighbour
+ * region (ghosts), which the neighbour adds to its scene as bodies without
+ * agent, replacing the ghosts of last step.</li>
+ * </ul>
+ * Migrants are only removed once the messages to all neighbours are built,
+ * so that an agent migrating to a neighbour is still a ghost for the other
+ * ones (such as the shard diagonal to this one and its new owner), which
+ * only receive it from its new owner on next step.
+ * Local agents thus sense, and the heart collides with, the bodies of
+ * neighbour shards near the borders, as long as the ghost width is larger
+ * than the sensors ranges plus the movements lengths.
+ * </p>
+ * <p>
+ * Only shapes (circles and rectangles, other shapes are sent as their
+ * bounding rectangle) and properties of primitive, boxed or string types
+ * cross borders : a migrant mind restarts from the factory, and influences
+ * applied to a ghost only last until next step.
+ * All shards must step the same number of times, each step waiting for the
+ * messages of all neighbours.
+ * </p>
+ */
+public class Shard {
+
+	/** Body property holding its identifier, unique among all shards. */
+	public static final String UID = "shard-uid";
+
+	/**
+	 * @param world The world of the shard agents.
+	 * @param id The shard identifier, unique among all shards.
+	 * @param region The region owned by the shard.
+	 * @param ghostWidth The width of the borders of the neighbour regions
+	 * whose bodies are received.
+	 * @param factory The factory rebuilding migrating agents.
+	 */
+	public Shard(World world, int id, Rectangle region, int ghostWidth, AgentFactory factory) {
+		if (ghostWidth < 0)
+			throw new IllegalArgumentException("ghost width must not be negative: "+ghostWidth);
+		_world = world;
+		_id = id;
+		_region = region.clone();
+		_ghostWidth = ghostWidth;
+		_factory = factory;
+	}
+
+	/**
+	 * Adds a neighbour shard.
+	 * @param id The neighbour identifier.
+	 * @param region The neighbour region.
+	 * @param link The link to the neighbour.
+	 */
+	public void addNeighbour(int id, Rectangle region, ShardLink link) {
+		_neighbours.add(new Neighbour(id,region.clone(),link));
+	}
+
+	public World world() {
+		return _world;
+	}
+
+	public int id() {
+		return _id;
+	}
+
+	public Rectangle region() {
+		return _region;
+	}
+
+	/** @return <code>true</code> if the body is a ghost of a neighbour one. */
+	public boolean isGhost(Body b) {
+		return _ghostBodies.containsKey(b);
+	}
+
+	public int nbGhosts() {
+		return _ghostBodies.size();
+	}
+
+	/** Ticks the world, then exchanges with the neighbours. */
+	public void step() throws IOException {
+		_world.tick();
+		this.exchange();
+	}
+
+	/**
+	 * Sends migrants and ghosts to all neighbours, then waits for theirs.
+	 */
+	public void exchange() throws IOException {
+		this.collectMigrants();
+		try {
+			for (int n = 0 ; n < _neighbours.size() ; n++)
+				_neighbours.get(n).link.send(this.message(_neighbours.get(n)));
+		}
+		finally {
+			for (int n = 0 ; n < _neighbours.size() ; n++) {
+				ArrayList<Body> migrants = _neighbours.get(n).migrants;
+				for (int i = 0 ; i < migrants.size() ; i++)
+					_world.remove(migrants.get(i).agent());
+				migrants.clear();
+			}
+			_migrants.clear();
+		}
+		for (int n = 0 ; n < _neighbours.size() ; n++) {
+			Neighbour neighbour = _neighbours.get(n);
+			this.apply(neighbour,neighbour.link.receive());
+		}
+	}
+
+	/**
+	 * Finds the agents which have moved into the region of a neighbour, in
+	 * scene order.
+	 */
+	private void collectMigrants() {
+		for (Agent a : _world) {
+			if ((a == null) || (!(a.hasBody())) || (owns(_region,a.body().center())))
+				continue;
+			for (int n = 0 ; n < _neighbours.size() ; n++) {
+				Neighbour neighbour = _neighbours.get(n);
+				if (owns(neighbour.region,a.body().center())) {
+					neighbour.migrants.add(a.body());
+					_migrants.put(a.body(),neighbour);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds the message to a neighbour : its migrants, then the ghosts, that
+	 * is all other bodies (including the migrants to other neighbours) near
+	 * its region.
+	 */
+	private byte[] message(final Neighbour neighbour) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(neighbour.migrants.size());
+		for (int i = 0 ; i < neighbour.migrants.size() ; i++)
+			this.write(out,neighbour.migrants.get(i));
+		Rectangle border = neighbour.region;
+		border = new Rectangle(border.origin().x - _ghostWidth,border.origin().y - _ghostWidth,
+		                       border.width() + 2 * _ghostWidth,border.height() + 2 * _ghostWidth);
+		_world.scene().forEachPartlyIn(border,new BodyVisitor() {
+			@Override
+			public boolean visit(Body b) {
+				if ((!(isGhost(b))) && (_migrants.get(b) != neighbour))
+					_buffer.add(b);
+				return true;
+			}
+		});
+		out.writeInt(_buffer.size());
+		for (int i = 0 ; i < _buffer.size() ; i++)
+			this.write(out,_buffer.get(i));
+		_buffer.clear();
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/** Adds the migrants of a neighbour, and replaces its ghosts. */
+	private void apply(Neighbour neighbour, byte[] message) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+		int nbMigrants = in.readInt();
+		for (int i = 0 ; i < nbMigrants ; i++) {
+			Body b = this.read(in);
+			this.removeGhost(uid(b));
+			Agent a = _factory.make((String)b.get(Properties.SOUL),b);
+			if (a != null)
+				_world.add(a);
+		}
+		HashMap<Long,Body> previous = neighbour.ghosts;
+		HashMap<Long,Body> current = new HashMap<Long,Body>();
+		int nbGhosts = in.readInt();
+		for (int i = 0 ; i < nbGhosts ; i++) {
+			Body received = this.read(in);
+			Long uid = uid(received);
+			Body ghost = previous.remove(uid);
+			if (ghost == null) {
+				ghost = received;
+				_world.scene().add(ghost);
+			}
+			else
+				this.update(ghost,received);
+			current.put(uid,ghost);
+			_ghostBodies.put(ghost,neighbour);
+		}
+		for (Body ghost : previous.values()) {
+			_world.scene().remove(ghost);
+			_ghostBodies.remove(ghost);
+		}
+		neighbour.ghosts = current;
+	}
+
+	/** Moves a ghost to its received shape, and copies its properties. */
+	private void update(Body ghost, Body received) {
+		Shape s = ghost.shape();
+		Shape r = received.shape();
+		if ((s instanceof Circle) && (r instanceof Circle)
+		 && (((Circle)s).radius() == ((Circle)r).radius()))
+			this.move(ghost,r.center());
+		else if ((s instanceof Rectangle) && (r instanceof Rectangle)
+		      && (((Rectangle)s).width() == ((Rectangle)r).width())
+		      && (((Rectangle)s).height() == ((Rectangle)r).height()))
+			this.move(ghost,((Rectangle)r).origin().clone());
+		else
+			ghost.setShape(r);
+		ghost.setProperties(received.properties());
+	}
+
+	private void move(Body ghost, Point to) {
+		Point from = (ghost.shape() instanceof Rectangle)
+		           ? ((Rectangle)ghost.shape()).origin()
+		           : ghost.shape().center();
+		if (!(from.equals(to)))
+			ghost.translate(new Point(to.x - from.x,to.y - from.y));
+	}
+
+	private void removeGhost(Long uid) {
+		for (int n = 0 ; n < _neighbours.size() ; n++) {
+			Body ghost = _neighbours.get(n).ghosts.remove(uid);
+			if (ghost != null) {
+				_world.scene().remove(ghost);
+				_ghostBodies.remove(ghost);
+			}
+		}
+	}
+
+	/** @return The body identifier, given on first call. */
+	private Long uid(Body b) {
+		Object uid = b.get(UID);
+		if (uid instanceof Long)
+			return (Long)uid;
+		Long l = Long.valueOf((((long)_id) << UID_SHIFT) | (_nextUID++));
+		b.set(UID,l);
+		return l;
+	}
+
+	private void write(DataOutputStream out, Body b) throws IOException {
+		this.uid(b);
+		Shape s = b.shape();
+		if (s instanceof Circle) {
+			Circle c = (Circle)s;
+			out.writeByte('C');
+			out.writeInt(c.center().x);
+			out.writeInt(c.center().y);
+			out.writeInt(c.radius());
+		}
+		else {
+			Rectangle r = (s instanceof Rectangle) ? (Rectangle)s : s.boundingRect();
+			out.writeByte('R');
+			out.writeInt(r.origin().x);
+			out.writeInt(r.origin().y);
+			out.writeInt(r.width());
+			out.writeInt(r.height());
+		}
+		Map<String,Object> properties = b.properties();
+		int n = 0;
+		if (properties != null) {
+			for (Object v : properties.values()) {
+				if (tag(v) != 0)
+					n++;
+			}
+		}
+		out.writeInt(n);
+		if (n == 0)
+			return;
+		for (Map.Entry<String,Object> e : properties.entrySet()) {
+			Object v = e.getValue();
+			char tag = tag(v);
+			if (tag == 0)
+				continue;
+			out.writeUTF(e.getKey());
+			out.writeByte(tag);
+			switch (tag) {
+				case 'I' : out.writeInt(((Integer)v).intValue()); break;
+				case 'J' : out.writeLong(((Long)v).longValue()); break;
+				case 'F' : out.writeFloat(((Float)v).floatValue()); break;
+				case 'D' : out.writeDouble(((Double)v).doubleValue()); break;
+				case 'Z' : out.writeBoolean(((Boolean)v).booleanValue()); break;
+				default  : out.writeUTF((String)v); break;
+			}
+		}
+	}
+
+	private Body read(DataInputStream in) throws IOException {
+		Shape s;
+		if (in.readByte() == 'C')
+			s = new Circle(in.readInt(),in.readInt(),in.readInt());
+		else
+			s = new Rectangle(in.readInt(),in.readInt(),in.readInt(),in.readInt());
+		Body b = new Body(s);
+		int n = in.readInt();
+		if (n > 0) {
+			TreeMap<String,Object> properties = new TreeMap<String,Object>();
+			for (int i = 0 ; i < n ; i++) {
+				String key = in.readUTF();
+				Object v;
+				switch (in.readByte()) {
+					case 'I' : v = Integer.valueOf(in.readInt()); break;
+					case 'J' : v = Long.valueOf(in.readLong()); break;
+					case 'F' : v = Float.valueOf(in.readFloat()); break;
+					case 'D' : v = Double.valueOf(in.readDouble()); break;
+					case 'Z' : v = Boolean.valueOf(in.readBoolean()); break;
+					default  : v = in.readUTF(); break;
+				}
+				properties.put(key,v);
+			}
+			b.setProperties(properties);
+		}
+		return b;
+	}
+
+	/** @return The type tag of a property value, <code>0</code> if it is not sent. */
+	private static char tag(Object v) {
+		if (v instanceof Integer)
+			return 'I';
+		if (v instanceof Long)
+			return 'J';
+		if (v instanceof Float)
+			return 'F';
+		if (v instanceof Double)
+			return 'D';
+		if (v instanceof Boolean)
+			return 'Z';
+		if (v instanceof String)
+			return 'S';
+		return 0;
+	}
+
+	/** @return <code>true</code> if the point lies in the region, end excluded. */
+	private static boolean owns(Rectangle region, Point p) {
+		return ((p.x >= region.origin().x) && (p.x < region.end().x)
+		     && (p.y >= region.origin().y) && (p.y < region.end().y));
+	}
+
+	private static final int UID_SHIFT = 40;
+
+	private final World _world;
+	private final int _id;
+	private final Rectangle _region;
+	private final int _ghostWidth;
+	private final AgentFactory _factory;
+	private final ArrayList<Neighbour> _neighbours = new ArrayList<Neighbour>();
+	private final IdentityHashMap<Body,Neighbour> _ghostBodies = new IdentityHashMap<Body,Neighbour>();
+	private final ArrayList<Body> _buffer = new ArrayList<Body>();
+	/** Migrants of the current exchange, with their new owner. */
+	private final IdentityHashMap<Body,Neighbour> _migrants = new IdentityHashMap<Body,Neighbour>();
+	private long _nextUID = 0;
+
+	private static final class Neighbour {
+		Neighbour(int id, Rectangle region, ShardLink link) {
+			this.id = id;
+			this.region = region;
+			this.link = link;
+		}
+		final int id;
+		final Rectangle region;
+		final ShardLink link;
+		/** Agents moving to the neighbour region, in scene order. */
+		final ArrayList<Body> migrants = new ArrayList<Body>();
+		/** Ghosts received from the neighbour, by identifier. */
+		HashMap<Long,Body> ghosts = new HashMap<Long,Body>();
+	};
+
+};
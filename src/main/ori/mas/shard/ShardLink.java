@@ -0,0 +1,29 @@
+package ori.mas.shard;
+
+import java.io.IOException;
+
+/**
+ * Two-way message channel between two neighbour shards.
+ * <p>
+ * Messages are delivered whole and in order.
+ * Sending must not wait for the other side to receive, as both sides send
+ * their message of a step before receiving the other one.
+ * </p>
+ */
+public interface ShardLink {
+
+	/**
+	 * Sends a message.
+	 * @param message The message, not modified afterwards.
+	 */
+	public void send(byte[] message) throws IOException;
+
+	/**
+	 * Waits for the next message.
+	 * @return The message.
+	 */
+	public byte[] receive() throws IOException;
+
+	public void close() throws IOException;
+
+};
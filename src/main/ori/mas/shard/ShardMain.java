@@ -0,0 +1,179 @@
+package ori.mas.shard;
+
+import ori.mas.core.Body;
+import ori.mas.core.DefaultHeart;
+import ori.mas.core.GridScene;
+import ori.mas.core.World;
+
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ServerSocket;
+import java.util.Random;
+
+/**
+ * Runs the example simulation (see <code>Souls</code>) split into shards.
+ * <p>
+ * The world is split into vertical strips of <code>STRIP_WIDTH</code> by
+ * <code>STRIP_HEIGHT</code> units, one per shard, each shard being the
+ * neighbour of the previous and next ones.
+ * </p>
+ * <p>
+ * Usage : <code>ShardMain id nbShards [port [ticks [nbAgents [seed]]]]</code>
+ * runs the shard <code>id</code> (from <code>0</code>) in this process,
+ * listening on <code>port + id</code> for the next shard and connecting to
+ * <code>port + id - 1</code> for the previous one, all shards being on the
+ * local host.
+ * With <code>all</code> as identifier, all shards run in this process, one
+ * thread each, linked by <code>LocalLink</code>.
+ * Each shard starts with <code>nbAgents</code> agents (one predator for
+ * four preys) and prints its population once done.
+ * </p>
+ */
+public class ShardMain {
+
+	public static final int STRIP_WIDTH  = 1000;
+	public static final int STRIP_HEIGHT = 1000;
+	public static final int DEFAULT_PORT = 4500;
+	public static final int DEFAULT_TICKS = 100;
+	public static final int DEFAULT_NB_AGENTS = 200;
+	private static final long CONNECT_TIMEOUT = 30000;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("usage: ShardMain id|all nbShards [port [ticks [nbAgents [seed]]]]");
+			System.exit(1);
+		}
+		int nbShards = Integer.parseInt(args[1]);
+		int port = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+		int ticks = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_TICKS;
+		int nbAgents = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_NB_AGENTS;
+		long seed = (args.length > 5) ? Long.parseLong(args[5]) : 42;
+		if ("all".equals(args[0])) {
+			Shard[] shards = new Shard[nbShards];
+			for (int id = 0 ; id < nbShards ; id++)
+				shards[id] = shard(id,seed,nbAgents);
+			link(shards);
+			run(shards,ticks);
+			for (Shard s : shards)
+				report(s);
+			return;
+		}
+		int id = Integer.parseInt(args[0]);
+		Shard shard = shard(id,seed,nbAgents);
+		ServerSocket server = (id < nbShards - 1) ? new ServerSocket(port + id) : null;
+		SocketLink previous = null;
+		SocketLink next = null;
+		try {
+			if (id > 0) {
+				previous = SocketLink.connect("localhost",port + id - 1,CONNECT_TIMEOUT);
+				shard.addNeighbour(id - 1,region(id - 1),previous);
+			}
+			if (server != null) {
+				next = SocketLink.accept(server);
+				shard.addNeighbour(id + 1,region(id + 1),next);
+			}
+			for (int t = 0 ; t < ticks ; t++)
+				shard.step();
+			report(shard);
+		}
+		finally {
+			if (previous != null)
+				previous.close();
+			if (next != null)
+				next.close();
+			if (server != null)
+				server.close();
+		}
+	}
+
+	/** @return The region of a shard. */
+	public static Rectangle region(int id) {
+		return new Rectangle(id * STRIP_WIDTH,0,STRIP_WIDTH,STRIP_HEIGHT);
+	}
+
+	/**
+	 * @return A shard without neighbour, populated with seeded agents
+	 * (one predator for four preys) in its region.
+	 */
+	public static Shard shard(int id, long seed, int nbAgents) {
+		World w = new World(new DefaultHeart(),new GridScene());
+		w.setSeed(seed + id);
+		Rectangle region = region(id);
+		Souls souls = new Souls();
+		Random r = new Random(seed * 31 + id);
+		for (int i = 0 ; i < nbAgents ; i++) {
+			Point p = new Point(region.origin().x + r.nextInt(region.width()),
+			                    region.origin().y + r.nextInt(region.height()));
+			w.add(souls.create(((i % 5) == 0) ? Souls.PREDATOR : Souls.PREY,p));
+		}
+		return new Shard(w,id,region,Souls.GHOST_WIDTH,souls);
+	}
+
+	/** Links consecutive shards of this process. */
+	public static void link(Shard[] shards) {
+		for (int id = 0 ; id < shards.length - 1 ; id++) {
+			LocalLink[] pair = LocalLink.pair();
+			shards[id].addNeighbour(id + 1,shards[id + 1].region(),pair[0]);
+			shards[id + 1].addNeighbour(id,shards[id].region(),pair[1]);
+		}
+	}
+
+	/**
+	 * Steps shards of this process, one thread each.
+	 * <p>A failing shard interrupts the other ones, which wait for it.</p>
+	 * @throws IOException The first failure of a shard.
+	 */
+	public static void run(Shard[] shards, final int ticks) throws IOException, InterruptedException {
+		final Exception[] failures = new Exception[shards.length];
+		final Thread[] threads = new Thread[shards.length];
+		for (int id = 0 ; id < shards.length ; id++) {
+			final Shard shard = shards[id];
+			final int index = id;
+			threads[id] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int t = 0 ; t < ticks ; t++)
+							shard.step();
+					}
+					catch (Exception e) {
+						failures[index] = e;
+						for (int k = 0 ; k < threads.length ; k++) {
+							if (k != index)
+								threads[k].interrupt();
+						}
+					}
+				}
+			},"shard-"+id);
+			threads[id].setDaemon(true);
+		}
+		for (Thread t : threads)
+			t.start();
+		for (Thread t : threads)
+			t.join();
+		for (Exception e : failures) {
+			if (e instanceof RuntimeException)
+				throw (RuntimeException)e;
+			if ((e != null) && (!(e instanceof InterruptedIOException)))
+				throw (IOException)e;
+		}
+		for (Exception e : failures) {
+			if (e != null)
+				throw (IOException)e;
+		}
+	}
+
+	private static void report(Shard shard) {
+		int nbBodies = 0;
+		for (Body b : shard.world().scene()) {
+			if (b != null)
+				nbBodies++;
+		}
+		System.out.println("shard "+shard.id()+" : "+shard.world().size()+" agents, "
+		                  +shard.nbGhosts()+" ghosts, "+nbBodies+" bodies");
+	}
+
+};
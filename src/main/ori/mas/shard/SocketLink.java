@@ -0,0 +1,125 @@
+package ori.mas.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Link between two shards through a TCP socket, usually on the local host.
+ * <p>
+ * Messages are length prefixed, and written by a dedicated thread, so that
+ * sending never waits for the other side to read.
+ * One side of a link accepts a connection, the other one connects.
+ * </p>
+ */
+public class SocketLink implements ShardLink {
+
+	/**
+	 * Connects to a listening shard, retrying until it listens.
+	 * @param timeout The maximal time to wait, in milliseconds.
+	 */
+	public static SocketLink connect(String host, int port, long timeout) throws IOException {
+		long end = System.currentTimeMillis() + timeout;
+		while (true) {
+			try {
+				return new SocketLink(new Socket(host,port));
+			}
+			catch (ConnectException e) {
+				if (System.currentTimeMillis() >= end)
+					throw e;
+			}
+			try {
+				Thread.sleep(RETRY_DELAY);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while connecting");
+			}
+		}
+	}
+
+	/** Waits for a shard to connect. */
+	public static SocketLink accept(ServerSocket server) throws IOException {
+		return new SocketLink(server.accept());
+	}
+
+	public SocketLink(Socket socket) throws IOException {
+		_socket = socket;
+		_socket.setTcpNoDelay(true);
+		_in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		_out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		_writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		},"shard-link-"+socket.getPort());
+		_writer.setDaemon(true);
+		_writer.start();
+	}
+
+	@Override
+	public void send(byte[] message) throws IOException {
+		this.check();
+		_queue.add(message);
+	}
+
+	@Override
+	public byte[] receive() throws IOException {
+		this.check();
+		int length = _in.readInt();
+		byte[] message = new byte[length];
+		_in.readFully(message);
+		return message;
+	}
+
+	@Override
+	public void close() throws IOException {
+		_writer.interrupt();
+		_socket.close();
+	}
+
+	/** Writes the queued messages until closed. */
+	private void write() {
+		try {
+			while (true) {
+				byte[] message = _queue.take();
+				_out.writeInt(message.length);
+				_out.write(message);
+				if (_queue.isEmpty())
+					_out.flush();
+			}
+		}
+		catch (InterruptedException e) {
+			// closed
+		}
+		catch (IOException e) {
+			_failure = e;
+		}
+	}
+
+	/** Rethrows the failure of the writing thread. */
+	private void check() throws IOException {
+		IOException e = _failure;
+		if (e != null)
+			throw new IOException("shard link failed",e);
+	}
+
+	private static final long RETRY_DELAY = 50;
+
+	private final Socket _socket;
+	private final DataInputStream _in;
+	private final DataOutputStream _out;
+	private final Thread _writer;
+	private final BlockingQueue<byte[]> _queue = new LinkedBlockingQueue<byte[]>();
+	private volatile IOException _failure = null;
+
+};
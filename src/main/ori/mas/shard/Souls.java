@@ -0,0 +1,77 @@
+package ori.mas.shard;
+
+import ori.mas.actors.EatActor;
+import ori.mas.actors.MovementActor;
+import ori.mas.core.Agent;
+import ori.mas.core.Body;
+import ori.mas.core.Properties;
+import ori.mas.fsm.StateMachineMind;
+import ori.mas.fsm.states.PatrolState;
+import ori.mas.fsm.states.PredateState;
+import ori.mas.sensors.ShapeSensor;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.Point;
+
+/**
+ * Factory of the agents of the example simulation (see <code>ori.Main</code>),
+ * preys patrolling and predators hunting them.
+ * <p>
+ * An agent soul is held by the <code>Properties.SOUL</code> property of its
+ * body, thus survives migrations : the factory gives a migrating body the
+ * actors and sensors of its soul back, and a new mind.
+ * The states of each soul are built once, and shared by all minds.
+ * </p>
+ */
+public class Souls implements AgentFactory {
+
+	public static final String PREY     = "prey";
+	public static final String PREDATOR = "predator";
+
+	/**
+	 * Width of the ghost borders needed by these agents : the largest
+	 * sensor range plus the largest movement.
+	 */
+	public static final int GHOST_WIDTH = 170;
+
+	/** Feed change per tick of the predators, which starve unless they eat. */
+	public static final int FEED_TICK = -1;
+
+	/**
+	 * @return A new agent of a soul, centered on a point, with full health
+	 * and feed, <code>null</code> if the soul is unknown.
+	 */
+	public Agent create(String soul, Point center) {
+		Body body = new Body();
+		body.set(Properties.HEALTH,1000);
+		body.set(Properties.HEALTH_MIN,0);
+		body.set(Properties.HEALTH_MAX,1000);
+		body.set(Properties.FEED,100);
+		body.set(Properties.FEED_MIN,0);
+		body.set(Properties.FEED_MAX,100);
+		body.set(Properties.SOUL,soul);
+		body.translate(center);
+		return this.make(soul,body);
+	}
+
+	@Override
+	public Agent make(String soul, Body body) {
+		if (PREY.equals(soul)) {
+			body.addActor(new MovementActor(body,5));
+			body.addSensor(new ShapeSensor(body,new Circle(0,0,150)));
+			return new Agent(new StateMachineMind(_patrol),body);
+		}
+		if (PREDATOR.equals(soul)) {
+			body.addActor(new MovementActor(body,20));
+			body.addActor(new EatActor(body,10));
+			Properties.setFeedTick(body,FEED_TICK);
+			body.addSensor(new ShapeSensor(body,new Circle(0,0,100)));
+			return new Agent(new StateMachineMind(_predate),body);
+		}
+		return null;
+	}
+
+	private final PatrolState _patrol = new PatrolState();
+	private final PredateState _predate = new PredateState();
+
+};
@@ -53,6 +53,9 @@ public class AgentScene extends Scene
   /* CONSTANTS */
   private static final V2 HELLO_POS = new V2(100, 100);
   private static final String HELLO_TEXT = "Hello Agents!";
+  // behaviours shared by all agents, each mind keeping its own context
+  private static final PredateState PREDATE = new PredateState();
+  private static final PatrolState PATROL = new PatrolState();
   
   /* FUNCTIONS */
   private static Agent newPredator(V2 position)
@@ -68,10 +71,11 @@ public class AgentScene extends Scene
     body.translate(new Point(position.x(), position.y()));
     body.addActor(new MovementActor(body, 8));
     body.addActor(new EatActor(body, 10));
+    Properties.setFeedTick(body, -1);
     body.addSensor(new ShapeSensor(body, new Circle(0, 0, 100)));
     body.setShape(new Circle(0, 0, 3));
     // attach a simple mind and add to the world
-    return new Agent(new StateMachineMind(new PredateState()), body);
+    return new Agent(new StateMachineMind(PREDATE), body);
   }
   
   private static Agent newPrey(V2 position)
@@ -88,7 +92,7 @@ public class AgentScene extends Scene
     body.addActor(new MovementActor(body, 4));
     body.addSensor(new ShapeSensor(body, new Circle(0, 0, 150)));
     // attach a simple mind and add to the world
-    return new Agent(new StateMachineMind(new PatrolState()), body);
+    return new Agent(new StateMachineMind(PATROL), body);
   }
   
   /* ATTRIBUTES */
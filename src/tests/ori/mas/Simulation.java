@@ -0,0 +1,180 @@
+package ori.mas;
+
+import ori.mas.actors.EatActor;
+import ori.mas.actors.MovementActor;
+import ori.mas.core.AdaptedScene;
+import ori.mas.core.Agent;
+import ori.mas.core.Body;
+import ori.mas.core.DefaultHeart;
+import ori.mas.core.Heart;
+import ori.mas.core.Properties;
+import ori.mas.core.Scene;
+import ori.mas.core.World;
+import ori.mas.fsm.StateMachineMind;
+import ori.mas.fsm.states.PatrolState;
+import ori.mas.fsm.states.PredateState;
+import ori.mas.sensors.ShapeSensor;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.LinkedListSurface;
+import ori.ogapi.geometry.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Seeded predators and preys simulation, used to compare the world modes
+ * with the sequential baseline.
+ * <p>
+ * The outcome of a run is summarized by a digest of the agents positions,
+ * liveness and feed levels, which only depends on the seed, the population
+ * and the number of ticks, whatever the mode.
+ * </p>
+ */
+public class Simulation {
+
+	/** Configures a world before agents are added. */
+	public static interface Setup {
+		public void setup(World w);
+	};
+
+	/** Sequential world, <code>DefaultHeart</code> over a list scene. */
+	public static final Setup BASELINE = new Setup() {
+		@Override
+		public void setup(World w) {
+		}
+	};
+
+	public Simulation(int nbPairs, int ticks) {
+		this(nbPairs,nbPairs,ticks);
+	}
+
+	/**
+	 * Predators target the first body of their percept, so runs only match
+	 * between scenes iterating bodies in the same order when there are
+	 * predators.
+	 */
+	public Simulation(int nbPredators, int nbPreys, int ticks) {
+		_nbPredators = nbPredators;
+		_nbPreys = nbPreys;
+		_ticks = ticks;
+	}
+
+	/**
+	 * Makes the agents share their states (the default), each one running
+	 * them with its own context, or gives each agent states of its own.
+	 */
+	public void setSharedStates(boolean shared) {
+		_shared = shared;
+	}
+
+	/** @return The digest of a run on a list scene with a default heart. */
+	public long run(Setup setup) {
+		return this.run(new AdaptedScene(new LinkedListSurface<Body>()),new DefaultHeart(),setup);
+	}
+
+	/** @return The digest of a run. */
+	public long run(Scene scene, Heart heart, Setup setup) {
+		World w = new World(heart,scene);
+		setup.setup(w);
+		w.setSeed(SEED);
+		Random r = new Random(7);
+		List<Agent> all = new ArrayList<Agent>();
+		for (int i = 0 ; i < Math.max(_nbPredators,_nbPreys) ; i++) {
+			int x = r.nextInt(2000) - 1000;
+			int y = r.nextInt(2000) - 1000;
+			if (i < _nbPredators)
+				all.add(predator(x,y,(_shared) ? PREDATE : new PredateState()));
+			x = r.nextInt(2000) - 1000;
+			y = r.nextInt(2000) - 1000;
+			if (i < _nbPreys)
+				all.add(prey(x,y,(_shared) ? PATROL : new PatrolState()));
+		}
+		for (Agent a : all)
+			w.add(a);
+		for (int t = 0 ; t < _ticks ; t++)
+			w.tick();
+		long digest = 0;
+		_alive = 0;
+		for (Agent a : all) {
+			boolean in = w.scene().contains(a.body());
+			if (in)
+				_alive++;
+			Point c = a.body().center();
+			digest = digest * 31 + c.x * 7919 + c.y + (in ? 1 : 0);
+			digest ^= Properties.getFeed(a.body());
+		}
+		return digest;
+	}
+
+	/** @return The number of agents alive at the end of the last run. */
+	public int alive() {
+		return _alive;
+	}
+
+	public static Agent predator(int x, int y) {
+		return predator(x,y,PREDATE);
+	}
+
+	private static Agent predator(int x, int y, PredateState state) {
+		Body body = body(x,y);
+		body.addActor(new MovementActor(body,8));
+		body.addActor(new EatActor(body,10));
+		// unfed predators starve within the runs
+		Properties.setFeedTick(body,-2);
+		body.addSensor(new ShapeSensor(body,new Circle(0,0,100)));
+		body.setShape(new Circle(x,y,3));
+		return new Agent(new StateMachineMind(state),body);
+	}
+
+	public static Agent prey(int x, int y) {
+		return prey(x,y,PATROL);
+	}
+
+	private static Agent prey(int x, int y, PatrolState state) {
+		Body body = body(x,y);
+		body.addActor(new MovementActor(body,4));
+		body.addSensor(new ShapeSensor(body,new Circle(0,0,150)));
+		return new Agent(new StateMachineMind(state),body);
+	}
+
+	private static Body body(int x, int y) {
+		Body body = new Body();
+		body.set(Properties.HEALTH,1000);
+		body.set(Properties.HEALTH_MIN,0);
+		body.set(Properties.HEALTH_MAX,1000);
+		body.set(Properties.FEED,100);
+		body.set(Properties.FEED_MIN,0);
+		body.set(Properties.FEED_MAX,100);
+		body.translate(new Point(x,y));
+		return body;
+	}
+
+	/** @return A pool of daemon threads. */
+	public static ExecutorService pool(int nbThreads) {
+		return Executors.newFixedThreadPool(nbThreads,new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	public static final long SEED = 42;
+
+	private static final PredateState PREDATE = new PredateState();
+	private static final PatrolState PATROL = new PatrolState();
+
+	private final int _nbPredators;
+	private final int _nbPreys;
+	private final int _ticks;
+	private boolean _shared = true;
+	private int _alive = 0;
+
+};
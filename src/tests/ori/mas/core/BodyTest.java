@@ -0,0 +1,86 @@
+package ori.mas.core;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class BodyTest {
+
+	@Test
+	public void propertiesAreAlwaysCopied() {
+		Body b = new Body();
+		assertNull(b.properties());
+		b.set("name","bob");
+		assertCopy(b);
+		b.set(Properties.HEALTH,10);
+		assertCopy(b);
+		assertEquals(Integer.valueOf(10),b.properties().get(Properties.HEALTH));
+	}
+
+	@Test
+	public void exactNumbersAreConverted() {
+		Body b = new Body();
+		b.set(Properties.HEALTH,Long.valueOf(12));
+		assertEquals(12,b.getInt(Properties.HEALTH_KEY));
+		b.set(Properties.HEALTH,Double.valueOf(13.0));
+		assertEquals(13,b.getInt(Properties.HEALTH_KEY));
+		b.set(Properties.HEALTH,Short.valueOf((short)14));
+		assertEquals(14,b.getInt(Properties.HEALTH_KEY));
+		b.set(COUNT_NAME,Double.valueOf(-0x1p62));
+		assertEquals(-(1L << 62),b.getLong(COUNT));
+		b.set(RATIO_NAME,Long.valueOf(1L << 53));
+		assertEquals(0x1p53,b.getDouble(RATIO),0.);
+		b.set(RATIO_NAME,Float.valueOf(0.5f));
+		assertEquals(0.5,b.getDouble(RATIO),0.);
+	}
+
+	@Test
+	public void lossyNumbersAreRejected() {
+		Body b = new Body();
+		b.set(Properties.HEALTH,7);
+		assertRejected(b,Properties.HEALTH,Double.valueOf(2.5));
+		assertRejected(b,Properties.HEALTH,Float.valueOf(Float.NaN));
+		assertRejected(b,Properties.HEALTH,Long.valueOf(1L << 40));
+		assertRejected(b,Properties.HEALTH,"ten");
+		assertRejected(b,COUNT_NAME,Double.valueOf(0x1p63));
+		assertRejected(b,COUNT_NAME,BigInteger.ONE.shiftLeft(64));
+		assertRejected(b,RATIO_NAME,Long.valueOf((1L << 53) + 1));
+		assertRejected(b,RATIO_NAME,Long.valueOf(Long.MAX_VALUE));
+		// the previous value is kept
+		assertEquals(7,b.getInt(Properties.HEALTH_KEY));
+		assertFalse(b.has(COUNT_NAME));
+		assertFalse(b.has(RATIO_NAME));
+	}
+
+	private static void assertCopy(Body b) {
+		Map<String,Object> p = b.properties();
+		p.put("name","alice");
+		p.put("other",Boolean.TRUE);
+		assertEquals("bob",b.get("name"));
+		assertNull(b.get("other"));
+		b.set("later",Boolean.TRUE);
+		assertNull(p.get("later"));
+		b.set("later",null);
+	}
+
+	private static void assertRejected(Body b, String property, Object value) {
+		try {
+			b.set(property,value);
+			fail(property+" accepted "+value);
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static final String COUNT_NAME = "body-test-count";
+	private static final String RATIO_NAME = "body-test-ratio";
+	private static final PropertyKey<Long> COUNT = PropertyKey.longKey(COUNT_NAME);
+	private static final PropertyKey<Double> RATIO = PropertyKey.doubleKey(RATIO_NAME);
+
+};
@@ -0,0 +1,50 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.Point;
+import ori.ogapi.util.Iterator;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BufferSceneTest {
+
+	@Test
+	public void holdsBodiesByIdentity() {
+		Body b1 = new Body();
+		Body b2 = new Body();
+		b1.setShape(new Circle(0,0,5));
+		b2.setShape(new Circle(0,0,5));
+		BufferScene buffer = new BufferScene();
+		assertTrue(buffer.add(b1));
+		assertFalse(buffer.add(b1));
+		assertTrue(buffer.add(b2));
+		assertEquals(2,buffer.size());
+		assertTrue(buffer.remove(b2));
+		assertFalse(buffer.contains(b2));
+		assertTrue(buffer.contains(b1));
+		buffer.clear();
+		assertTrue(buffer.add(b1));
+	}
+
+	@Test
+	public void queriesMatchListScene() {
+		GridSceneTest.assertQueriesMatch(new BufferScene());
+	}
+
+	@Test
+	public void iteratorRemoveForgetsBody() {
+		Body b = new Body();
+		b.setShape(new Circle(new Point(1,1),1));
+		BufferScene buffer = new BufferScene();
+		buffer.add(b);
+		Iterator<Body> it = buffer.iterator();
+		it.next();
+		it.remove();
+		assertFalse(buffer.contains(b));
+		assertTrue(buffer.add(b));
+	}
+
+};
@@ -0,0 +1,106 @@
+package ori.mas.core;
+
+import ori.mas.Simulation;
+
+import ori.ogapi.geometry.LinkedListSurface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class ConcurrentHeartTest {
+
+	@Test
+	public void unrankedInfluencesAreAppliedFirst() {
+		ConcurrentHeart heart = new ConcurrentHeart();
+		List<String> applied = record(heart);
+		heart.submitInfluence(new Tag("agent 0"),0);
+		heart.submitInfluence(new Tag("bound"));
+		heart.submitInfluence(new Tag("agent 1"),1);
+		heart.submitInfluence(new Tag("birth"));
+		heart.pulse();
+		assertEquals("[bound, birth, agent 0, agent 1]",applied.toString());
+	}
+
+	@Test
+	public void slotsAreMergedByRank() {
+		ConcurrentHeart heart = new ConcurrentHeart();
+		List<String> applied = record(heart);
+		for (int t = 0 ; t < 2 ; t++) {
+			applied.clear();
+			heart.reserveSlots(3);
+			heart.submitInfluence(new Tag("c"),2,0);
+			heart.submitInfluence(new Tag("a"),0,2);
+			heart.submitInfluence(new Tag("b"),1,1);
+			heart.submitInfluence(new Tag("unranked"));
+			heart.pulse();
+			assertEquals("[unranked, a, b, c]",applied.toString());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeRanksAreRejected() {
+		new ConcurrentHeart().submitInfluence(new Tag("x"),-1);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void slotsMustBeReserved() {
+		new ConcurrentHeart().submitInfluence(new Tag("x"),0,0);
+	}
+
+	@Test
+	public void threadPerAgentMatchesBaseline() {
+		assertMatchesBaseline(new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setThreadPerAgent(true);
+			}
+		});
+	}
+
+	@Test
+	public void parallelThinkingMatchesBaseline() {
+		assertMatchesBaseline(new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setExecutor(Simulation.pool(4));
+			}
+		});
+	}
+
+	private static void assertMatchesBaseline(Simulation.Setup setup) {
+		Simulation s = new Simulation(150,60);
+		assertEquals(s.run(Simulation.BASELINE),
+			s.run(new AdaptedScene(new LinkedListSurface<Body>()),new ConcurrentHeart(),setup));
+	}
+
+	/** @return The names of the tags applied by a heart, in order. */
+	private static List<String> record(DefaultHeart heart) {
+		final List<String> applied = new ArrayList<String>();
+		heart.setHandler(Tag.class,new InfluenceHandler<Tag>() {
+			@Override
+			public Influence make(Tag i) {
+				applied.add(i.name);
+				return i;
+			}
+		});
+		return applied;
+	}
+
+	private static final class Tag implements Influence {
+		Tag(String name) {
+			this.name = name;
+		}
+		@Override
+		public Actor sourceActor() {
+			return null;
+		}
+		@Override
+		public void setSourceActor(Actor a) {
+		}
+		final String name;
+	};
+
+};
@@ -0,0 +1,123 @@
+package ori.mas.core;
+
+import ori.mas.Simulation;
+
+import ori.ogapi.geometry.LinkedListSurface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DecayTest {
+
+	@Test
+	public void boundsAreRescheduledInPlace() {
+		RecordingHeart h = new RecordingHeart();
+		World w = world(h);
+		Body b = WorldTest.add(w,1)[0].body();
+		b.setInt(Properties.FEED_KEY,PropertyKey.MIN,0);
+		b.setDecay(Properties.FEED_KEY,10);
+		for (int k = 0 ; k < 100 ; k++)
+			b.setInt(Properties.FEED_KEY,100);
+		assertEquals(1,w.nbBounds());
+		for (int t = 0 ; t < 20 ; t++)
+			w.tick();
+		assertEquals(list(10L),h.reached);
+		assertEquals(0,b.getInt(Properties.FEED_KEY));
+		assertEquals(0,w.nbBounds());
+	}
+
+	@Test
+	public void boundChangesReschedule() {
+		RecordingHeart h = new RecordingHeart();
+		World w = world(h);
+		Body b = WorldTest.add(w,1)[0].body();
+		b.setInt(Properties.FEED_KEY,100);
+		b.setInt(Properties.FEED_KEY,PropertyKey.MIN,0);
+		b.setDecay(Properties.FEED_KEY,10);
+		for (int t = 0 ; t < 3 ; t++)
+			w.tick();
+		// 70 left, thus 2 ticks more to go down to 50
+		b.setInt(Properties.FEED_KEY,PropertyKey.MIN,50);
+		assertEquals(70,b.getInt(Properties.FEED_KEY));
+		for (int t = 0 ; t < 20 ; t++)
+			w.tick();
+		assertEquals(list(5L),h.reached);
+		assertEquals(50,b.getInt(Properties.FEED_KEY));
+		// no bound, no end
+		b.setInt(Properties.FEED_KEY,100);
+		b.remove(Properties.FEED_KEY,PropertyKey.MIN);
+		assertEquals(0,w.nbBounds());
+	}
+
+	@Test
+	public void removedBodiesDropTheirBounds() {
+		World w = world(new RecordingHeart());
+		Agent[] agents = WorldTest.add(w,3);
+		for (Agent a : agents) {
+			a.body().setInt(Properties.FEED_KEY,100);
+			a.body().setInt(Properties.FEED_KEY,PropertyKey.MIN,0);
+			a.body().setDecay(Properties.FEED_KEY,1);
+		}
+		assertEquals(3,w.nbBounds());
+		w.remove(agents[0]);
+		assertEquals(2,w.nbBounds());
+		agents[1].body().setDecay(Properties.FEED_KEY,0);
+		assertEquals(1,w.nbBounds());
+	}
+
+	@Test
+	public void starvingBodiesDie() {
+		World w = WorldTest.world();
+		Agent[] agents = WorldTest.add(w,2);
+		for (Agent a : agents) {
+			a.body().setInt(Properties.FEED_KEY,10);
+			a.body().setInt(Properties.FEED_KEY,PropertyKey.MIN,0);
+		}
+		Properties.setFeedTick(agents[0].body(),-2);
+		assertEquals(-2,agents[0].body().getInt(Properties.FEED_TICK_KEY));
+		for (int t = 0 ; t < 10 ; t++)
+			w.tick();
+		assertFalse(w.contains(agents[0]));
+		assertTrue(w.contains(agents[1]));
+	}
+
+	@Test
+	public void starvationMatchesBaseline() {
+		// the predators of the simulation starve within its runs
+		Simulation s = new Simulation(40,0,60);
+		long baseline = s.run(Simulation.BASELINE);
+		assertTrue(s.alive() < 40);
+		assertEquals(baseline,s.run(new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setExecutor(Simulation.pool(4));
+			}
+		}));
+	}
+
+	private static World world(Heart h) {
+		return new World(h,new AdaptedScene(new LinkedListSurface<Body>()));
+	}
+
+	private static List<Long> list(Long... ticks) {
+		List<Long> res = new ArrayList<Long>();
+		for (Long t : ticks)
+			res.add(t);
+		return res;
+	}
+
+	/** Records the ticks properties reach their minimal value. */
+	private static final class RecordingHeart extends DefaultHeart {
+		@Override
+		protected void onPropertyMinReached(Body target, String property) {
+			reached.add(this.world().ticks());
+		}
+		final List<Long> reached = new ArrayList<Long>();
+	};
+
+};
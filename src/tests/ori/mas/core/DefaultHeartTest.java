@@ -0,0 +1,66 @@
+package ori.mas.core;
+
+import ori.mas.actors.MovementActor;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.LinkedListSurface;
+import ori.ogapi.geometry.Shape;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class DefaultHeartTest {
+
+	@Test
+	public void fewMovementsQueryTheScene() {
+		CountingScene scene = new CountingScene();
+		World w = new World(new DefaultHeart(),scene);
+		Agent[] agents = WorldTest.add(w,100);
+		int nbMoving = (100 / DefaultHeart.BROAD_PHASE_RATIO) - 1;
+		for (int i = 0 ; i < nbMoving ; i++)
+			move(agents[i]);
+		w.tick();
+		assertEquals(nbMoving,scene.nbQueries);
+		// one agent in BROAD_PHASE_RATIO moving, the sweep is run
+		for (int i = nbMoving ; i < 100 ; i += DefaultHeart.BROAD_PHASE_RATIO)
+			move(agents[i]);
+		scene.nbQueries = 0;
+		w.tick();
+		assertEquals(0,scene.nbQueries);
+	}
+
+	/** Makes an agent move up on each tick. */
+	private static void move(Agent a) {
+		final MovementActor move = new MovementActor(a.body(),1);
+		move.setSpeed(1);
+		move.setAngle(90);
+		a.body().addActor(move);
+		a.setMind(new AbstractMind() {
+			@Override
+			public void percept(Percept percept) {
+			}
+			@Override
+			public Actor nextActor() {
+				return move;
+			}
+			@Override
+			public AbstractMind clone() {
+				return this;
+			}
+		});
+	}
+
+	/** List scene counting its partial intersection queries. */
+	private static final class CountingScene extends AdaptedScene {
+		CountingScene() {
+			super(new LinkedListSurface<Body>());
+		}
+		@Override
+		public void forEachPartlyIn(Shape s, BodyVisitor v) {
+			nbQueries++;
+			super.forEachPartlyIn(s,v);
+		}
+		int nbQueries = 0;
+	};
+
+};
@@ -0,0 +1,80 @@
+package ori.mas.core;
+
+import ori.mas.Simulation;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.LinkedListSurface;
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.geometry.Shape;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GridSceneTest {
+
+	@Test
+	public void queriesMatchListScene() {
+		assertQueriesMatch(new GridScene(16,64));
+	}
+
+	@Test
+	public void quadTreeQueriesMatchListScene() {
+		assertQueriesMatch(new QuadTreeScene());
+	}
+
+	@Test
+	public void simulationMatchesListScene() {
+		Simulation s = new Simulation(0,200,60);
+		long expected = s.run(Simulation.BASELINE);
+		assertEquals(expected,s.run(new GridScene(),new DefaultHeart(),Simulation.BASELINE));
+		assertEquals(expected,s.run(new QuadTreeScene(),new DefaultHeart(),Simulation.BASELINE));
+	}
+
+	static void assertQueriesMatch(Scene scene) {
+		Scene list = new AdaptedScene(new LinkedListSurface<Body>());
+		Random r = new Random(3);
+		Body[] bodies = new Body[300];
+		for (int i = 0 ; i < bodies.length ; i++) {
+			bodies[i] = new Body();
+			bodies[i].setShape(new Circle(r.nextInt(1000) - 500,r.nextInt(1000) - 500,1 + r.nextInt(20)));
+			list.add(bodies[i]);
+			scene.add(bodies[i]);
+		}
+		for (int q = 0 ; q < 50 ; q++) {
+			// moves and removes are tracked by the scene
+			Body moved = bodies[r.nextInt(bodies.length)];
+			moved.translate(new Point(r.nextInt(200) - 100,r.nextInt(200) - 100));
+			if (q % 10 == 0) {
+				Body removed = bodies[r.nextInt(bodies.length)];
+				assertEquals(list.remove(removed),scene.remove(removed));
+			}
+			Shape s = (q % 2 == 0)
+				? new Circle(r.nextInt(1000) - 500,r.nextInt(1000) - 500,r.nextInt(200))
+				: new Rectangle(r.nextInt(1000) - 500,r.nextInt(1000) - 500,r.nextInt(300),r.nextInt(300));
+			assertSameBodies(list.getIn(s),scene.getIn(s));
+			// Shapes.collide reports far away circles as colliding rectangles,
+			// the spatial scenes prune them by bounding rectangle
+			if (s instanceof Circle)
+				assertSameBodies(list.getPartlyIn(s),scene.getPartlyIn(s));
+			Point p = new Point(r.nextInt(1000) - 500,r.nextInt(1000) - 500);
+			assertSameBodies(list.getAt(p),scene.getAt(p));
+		}
+		assertSameBodies(list,scene);
+	}
+
+	static void assertSameBodies(Scene expected, Scene actual) {
+		Map<Body,Boolean> seen = new IdentityHashMap<Body,Boolean>();
+		for (Body b : actual)
+			assertTrue("duplicate body",seen.put(b,Boolean.TRUE) == null);
+		for (Body b : expected)
+			assertTrue("missing body",seen.remove(b) != null);
+		assertTrue("extra body",seen.isEmpty());
+	}
+
+};
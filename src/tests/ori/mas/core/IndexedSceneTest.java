@@ -0,0 +1,105 @@
+package ori.mas.core;
+
+import ori.mas.Simulation;
+
+import ori.ogapi.geometry.LinkedListSurface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedSceneTest {
+
+	@Test
+	public void decayingValuesAreQueriedAsTheyAre() {
+		IndexedScene scene = scene();
+		scene.addSortedIndex(Properties.FEED);
+		scene.addHashIndex(Properties.HEALTH);
+		World w = new World(new DefaultHeart(),scene);
+		Agent[] agents = WorldTest.add(w,3);
+		Body decaying = agents[0].body();
+		Body still = agents[1].body();
+		Body unset = agents[2].body();
+		for (Body b : new Body[] { decaying, still }) {
+			b.setInt(Properties.FEED_KEY,PropertyKey.MIN,0);
+			b.setInt(Properties.HEALTH_KEY,PropertyKey.MIN,0);
+			b.setInt(Properties.HEALTH_KEY,10);
+		}
+		decaying.setInt(Properties.FEED_KEY,100);
+		still.setInt(Properties.FEED_KEY,70);
+		unset.setDecay(Properties.FEED_KEY,1);
+		decaying.setDecay(Properties.FEED_KEY,10);
+		decaying.setDecay(Properties.HEALTH_KEY,1);
+		for (int t = 0 ; t < 3 ; t++)
+			w.tick();
+		// the decaying body is at 70 too, the still one being indexed first
+		assertEquals(list(still,decaying),between(scene,60,80));
+		assertEquals(list(),between(scene,90,110));
+		assertEquals(list(still),equal(scene,10));
+		assertEquals(list(decaying),equal(scene,7));
+		w.tick();
+		assertEquals(list(decaying,still),between(scene,0,100));
+		// stopped, the body is indexed by its last value
+		decaying.setDecay(Properties.FEED_KEY,0);
+		w.tick();
+		assertEquals(list(decaying),between(scene,60,61));
+		scene.remove(decaying);
+		assertEquals(list(),equal(scene,6));
+	}
+
+	@Test
+	public void indexedSceneMatchesBaseline() {
+		IndexedScene scene = scene();
+		scene.addSortedIndex(Properties.HEALTH);
+		scene.addSortedIndex(Properties.FEED);
+		scene.addHashIndex(Properties.SOUL);
+		assertEquals(TickModesTest.baseline(),TickModesTest.SIMULATION.run(scene,new DefaultHeart(),Simulation.BASELINE));
+		// the predators feed is indexed while decaying
+		final int[] nb = { 0 };
+		scene.forEachBetween(Properties.FEED,0,100,new BodyVisitor() {
+			@Override
+			public boolean visit(Body b) {
+				nb[0]++;
+				return true;
+			}
+		});
+		assertTrue(nb[0] > 0);
+	}
+
+	private static IndexedScene scene() {
+		return new IndexedScene(new AdaptedScene(new LinkedListSurface<Body>()));
+	}
+
+	private static List<Body> between(IndexedScene scene, double min, double max) {
+		final List<Body> res = new ArrayList<Body>();
+		scene.forEachBetween(Properties.FEED,min,max,collector(res));
+		return res;
+	}
+
+	private static List<Body> equal(IndexedScene scene, int health) {
+		final List<Body> res = new ArrayList<Body>();
+		scene.forEachEqual(Properties.HEALTH,Integer.valueOf(health),collector(res));
+		return res;
+	}
+
+	private static BodyVisitor collector(final List<Body> res) {
+		return new BodyVisitor() {
+			@Override
+			public boolean visit(Body b) {
+				res.add(b);
+				return true;
+			}
+		};
+	}
+
+	private static List<Body> list(Body... bodies) {
+		List<Body> res = new ArrayList<Body>();
+		for (Body b : bodies)
+			res.add(b);
+		return res;
+	}
+
+};
@@ -0,0 +1,66 @@
+package ori.mas.core;
+
+import ori.mas.Simulation;
+import ori.mas.influences.CollideInfluence;
+import ori.mas.influences.MovementInfluence;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.LinkedListSurface;
+import ori.ogapi.geometry.Point;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ParallelHeartTest {
+
+	@Test
+	public void tiesDoNotDependOnCandidatesOrder() {
+		World w = new World(new DefaultHeart(),new GridScene());
+		Body mover = body(w,0,0);
+		Body first = body(w,10,0);
+		Body second = body(w,10,0);
+		BufferScene candidates = new BufferScene();
+		candidates.add(second);
+		candidates.add(first);
+		assertSame(first,clamp(w,mover,candidates));
+		candidates.clear();
+		candidates.add(first);
+		candidates.add(second);
+		assertSame(first,clamp(w,mover,candidates));
+	}
+
+	@Test
+	public void matchesDefaultHeart() {
+		Simulation s = new Simulation(200,60);
+		long expected = s.run(Simulation.BASELINE);
+		assertEquals(expected,s.run(new AdaptedScene(new LinkedListSurface<Body>()),heart(),Simulation.BASELINE));
+	}
+
+	@Test
+	public void matchesDefaultHeartOnSpatialScenes() {
+		Simulation s = new Simulation(200,60);
+		assertEquals(s.run(new GridScene(),new DefaultHeart(),Simulation.BASELINE),
+		             s.run(new GridScene(),heart(),Simulation.BASELINE));
+		assertEquals(s.run(new QuadTreeScene(),new DefaultHeart(),Simulation.BASELINE),
+		             s.run(new QuadTreeScene(),heart(),Simulation.BASELINE));
+	}
+
+	static ParallelHeart heart() {
+		return new ParallelHeart(128,Simulation.pool(4));
+	}
+
+	private static Body body(World w, int x, int y) {
+		Body b = new Body();
+		b.setShape(new Circle(x,y,2));
+		w.add(new Agent(null,b));
+		return b;
+	}
+
+	private static Body clamp(World w, Body mover, BufferScene candidates) {
+		MovementInfluence m = new MovementInfluence(null,mover,new Point(20,0));
+		CollideInfluence c = ((DefaultHeart)(w.heart())).clamp(m,candidates,new int[2*Collisions.MAX_POINTS]);
+		return c.collidingBody();
+	}
+
+};
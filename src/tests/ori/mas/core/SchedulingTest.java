@@ -0,0 +1,211 @@
+package ori.mas.core;
+
+import ori.mas.Simulation;
+import ori.mas.actors.MovementActor;
+import ori.mas.percepts.SurfacePercept;
+import ori.mas.sensors.ShapeSensor;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SchedulingTest {
+
+	@Test
+	public void sparseTicksKeepSceneOrder() {
+		World w = WorldTest.world();
+		Agent[] agents = WorldTest.add(w,100);
+		List<Agent> ticked = record(agents);
+		w.tick();
+		ticked.clear();
+		for (Agent a : agents)
+			w.sleep(a,Long.MAX_VALUE,false);
+		w.wake(agents[70]);
+		w.wake(agents[5]);
+		w.wake(agents[40]);
+		w.tick();
+		assertEquals(list(agents[5],agents[40],agents[70]),ticked);
+		// the last agent gets the identifier of the removed one
+		ticked.clear();
+		for (Agent a : agents)
+			w.sleep(a,Long.MAX_VALUE,false);
+		w.remove(agents[0]);
+		w.wake(agents[99]);
+		w.wake(agents[50]);
+		w.tick();
+		assertEquals(list(agents[50],agents[99]),ticked);
+	}
+
+	@Test
+	public void queuedAgentsWakeOnTime() {
+		World w = WorldTest.world();
+		Agent[] agents = WorldTest.add(w,20);
+		List<Agent> ticked = record(agents);
+		for (int i = 0 ; i < agents.length ; i++)
+			w.sleep(agents[i],i,false);
+		w.setPeriod(agents[0],3);
+		w.remove(agents[1]);
+		for (int t = 0 ; t < 20 ; t++) {
+			ticked.clear();
+			w.tick();
+			for (int i = 2 ; i < agents.length ; i++)
+				assertEquals("agent "+i+" on tick "+t,t >= i,ticked.contains(agents[i]));
+			assertEquals("tick "+t,t % 3 == 0,ticked.contains(agents[0]));
+		}
+	}
+
+	@Test
+	public void watchersWakeOnSensedMovements() {
+		World w = WorldTest.world();
+		Agent near = watcher(0);
+		Agent far = watcher(1000);
+		w.add(near);
+		w.add(far);
+		List<Agent> ticked = record(near,far);
+		Body b = new Body();
+		b.setShape(new Circle(100,0,1));
+		MovementActor move = new MovementActor(b,8);
+		move.setSpeed(8);
+		move.setAngle(180);
+		b.addActor(move);
+		Agent mover = new Agent(new ActorMind(move,null),b);
+		w.add(mover);
+		w.sleep(near);
+		w.sleep(far);
+		for (int t = 0 ; (t < 20) && (ticked.isEmpty()) ; t++) {
+			w.tick();
+			// the sensed region is a circle of radius 50
+			assertTrue(ticked.isEmpty() || (b.center().x <= 51 + 8));
+		}
+		assertEquals(list(near),ticked);
+		assertTrue(w.isAsleep(far));
+	}
+
+	@Test
+	public void skippedAgentsDropTheirBatchedPercept() {
+		final World w = WorldTest.world();
+		w.setBatchedSensing(true);
+		final Agent sleeper = watcher(0);
+		final boolean[] putToSleep = { true };
+		Agent sleeping = new Agent(new ActorMind(null,null) {
+			@Override
+			public Actor nextActor() {
+				if (putToSleep[0])
+					w.sleep(sleeper,Long.MAX_VALUE,false);
+				return null;
+			}
+		},new Body(new Circle(500,0,1)));
+		final List<Integer> sensed = new ArrayList<Integer>();
+		sleeper.setMind(new ActorMind(null,null) {
+			@Override
+			public void percept(Percept percept) {
+				int n = 0;
+				for (Body b : ((SurfacePercept)percept).sceneView())
+					n++;
+				sensed.add(Integer.valueOf(n));
+			}
+		});
+		Agent other = new Agent(null,new Body(new Circle(1000,0,1)));
+		// the first agent ticks before the sleeper, and puts it to sleep
+		w.add(sleeping);
+		w.add(sleeper);
+		w.add(other);
+		w.tick();
+		assertTrue(sensed.isEmpty());
+		other.body().translate(new Point(-990,0));
+		putToSleep[0] = false;
+		w.setBatchedSensing(false);
+		w.wake(sleeper);
+		w.tick();
+		// itself and the other body, which moved in since the batch
+		assertEquals(list(Integer.valueOf(2)),sensed);
+	}
+
+	@Test
+	public void idleSleepMatchesBaseline() {
+		TickModesTest.assertMatchesBaseline(new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setIdleSleep(10);
+			}
+		});
+	}
+
+	@Test
+	public void wakeQueueIsOrdered() {
+		WakeQueue q = new WakeQueue();
+		long[] times = { 5, 3, 9, 1, 7, 3 };
+		for (int id = 0 ; id < times.length ; id++)
+			q.add(id,times[id]);
+		q.add(2,0);
+		q.remove(4);
+		q.rename(0,40);
+		assertFalse(q.contains(0));
+		int[] expected = { 2, 3, 1, 5, 40 };
+		long last = Long.MIN_VALUE;
+		for (int k = 0 ; k < expected.length ; k++) {
+			long time = q.peekTime();
+			assertTrue(time >= last);
+			last = time;
+			int id = q.poll();
+			if ((id == 1) || (id == 5))
+				assertTrue((expected[k] == 1) || (expected[k] == 5));
+			else
+				assertEquals(expected[k],id);
+		}
+		assertTrue(q.isEmpty());
+	}
+
+	private static Agent watcher(int x) {
+		Body b = new Body();
+		b.setShape(new Circle(x,0,1));
+		b.addSensor(new ShapeSensor(b,new Circle(0,0,50)));
+		return new Agent(null,b);
+	}
+
+	/** Gives the agents minds recording their ticks. */
+	private static List<Agent> record(Agent... agents) {
+		List<Agent> ticked = new ArrayList<Agent>();
+		for (Agent a : agents)
+			a.setMind(new ActorMind(null,ticked));
+		return ticked;
+	}
+
+	private static <T> List<T> list(T... items) {
+		List<T> res = new ArrayList<T>();
+		for (T t : items)
+			res.add(t);
+		return res;
+	}
+
+	/** Mind always selecting the same actor, recording its ticks. */
+	private static class ActorMind extends AbstractMind {
+		ActorMind(Actor actor, List<Agent> ticked) {
+			_actor = actor;
+			_ticked = ticked;
+		}
+		@Override
+		public void percept(Percept percept) {
+		}
+		@Override
+		public Actor nextActor() {
+			if (_ticked != null)
+				_ticked.add(this.agent());
+			return _actor;
+		}
+		@Override
+		public ActorMind clone() {
+			return new ActorMind(_actor,_ticked);
+		}
+		private final Actor _actor;
+		private final List<Agent> _ticked;
+	};
+
+};
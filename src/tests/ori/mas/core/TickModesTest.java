@@ -0,0 +1,156 @@
+package ori.mas.core;
+
+import ori.mas.Simulation;
+
+import ori.ogapi.geometry.LinkedListSurface;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Compares the tick modes of the world with the sequential baseline. */
+public class TickModesTest {
+
+	@Test
+	public void threadPerAgentMatchesBaseline() {
+		assertMatchesBaseline(new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setThreadPerAgent(true);
+			}
+		});
+	}
+
+	@Test
+	public void executorMatchesBaseline() {
+		assertMatchesBaseline(new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setExecutor(Simulation.pool(4));
+			}
+		});
+	}
+
+	@Test
+	public void parallelMatchesBaseline() {
+		assertMatchesBaseline(new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setParallel(true);
+			}
+		});
+	}
+
+	@Test
+	public void batchedSensingMatchesBaseline() {
+		assertMatchesBaseline(new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setBatchedSensing(true);
+			}
+		});
+	}
+
+	@Test
+	public void pipelinedMatchesBaseline() {
+		assertMatchesBaseline(new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setPipelined(true);
+			}
+		});
+		assertMatchesBaseline(new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setExecutor(Simulation.pool(4));
+				w.setPipelined(true);
+			}
+		});
+	}
+
+	@Test
+	public void eventHeartMatchesBaseline() {
+		assertEquals(baseline(),
+			SIMULATION.run(new AdaptedScene(new LinkedListSurface<Body>()),new EventHeart(),Simulation.BASELINE));
+	}
+
+	@Test
+	public void parallelRunsAreRepeatable() {
+		Simulation.Setup setup = new Simulation.Setup() {
+			@Override
+			public void setup(World w) {
+				w.setExecutor(Simulation.pool(8));
+				w.setBatchedSensing(true);
+			}
+		};
+		long digest = SIMULATION.run(setup);
+		for (int i = 0 ; i < 3 ; i++)
+			assertEquals(digest,SIMULATION.run(setup));
+	}
+
+	@Test
+	public void platformThreadsAreBounded() throws Exception {
+		World w = WorldTest.world();
+		Agent[] agents = WorldTest.add(w,32);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		for (Agent a : agents) {
+			a.setMind(new AbstractMind() {
+				@Override
+				public void percept(Percept percept) {
+				}
+				@Override
+				public Actor nextActor() {
+					int n = running.incrementAndGet();
+					int max = maxRunning.get();
+					while ((n > max) && (!(maxRunning.compareAndSet(max,n))))
+						max = maxRunning.get();
+					try {
+						Thread.sleep(5);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+					return null;
+				}
+				@Override
+				public AbstractMind clone() {
+					return this;
+				}
+			});
+		}
+		w.setThreadPerAgent(true,4);
+		w.tick();
+		assertTrue(maxRunning.get() > 0);
+		if (!(hasVirtualThreads()))
+			assertTrue("running: "+maxRunning.get(),maxRunning.get() <= 4);
+	}
+
+	static void assertMatchesBaseline(Simulation.Setup setup) {
+		assertEquals(baseline(),SIMULATION.run(setup));
+	}
+
+	/** @return The digest of the sequential run, computed once. */
+	static synchronized long baseline() {
+		if (_baseline == null)
+			_baseline = Long.valueOf(SIMULATION.run(Simulation.BASELINE));
+		return _baseline.longValue();
+	}
+
+	private static boolean hasVirtualThreads() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		}
+		catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	static final Simulation SIMULATION = new Simulation(150,60);
+	private static Long _baseline = null;
+
+};
@@ -0,0 +1,113 @@
+package ori.mas.core;
+
+import ori.mas.Simulation;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.LinkedListSurface;
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+import ori.ogapi.geometry.Shape;
+import ori.ogapi.util.Iterator;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class WorldStateTest {
+
+	private static final Simulation.Setup DOUBLE_BUFFERED = new Simulation.Setup() {
+		@Override
+		public void setup(World w) {
+			w.setDoubleBuffered(true);
+		}
+	};
+
+	private static final Simulation.Setup DOUBLE_BUFFERED_BATCHED = new Simulation.Setup() {
+		@Override
+		public void setup(World w) {
+			w.setDoubleBuffered(true);
+			w.setBatchedSensing(true);
+		}
+	};
+
+	@Test
+	public void simulationMatchesBaseline() {
+		Simulation s = new Simulation(150,60);
+		long expected = s.run(Simulation.BASELINE);
+		assertEquals(expected,s.run(DOUBLE_BUFFERED));
+		assertEquals(expected,s.run(DOUBLE_BUFFERED_BATCHED));
+	}
+
+	@Test
+	public void queriesMatchScene() {
+		World w = new World(new DefaultHeart(),new AdaptedScene(new LinkedListSurface<Body>()));
+		Random r = new Random(11);
+		for (int i = 0 ; i < 500 ; i++) {
+			Body b = new Body();
+			// a few bodies spanning many cells
+			int radius = (i % 50 == 0) ? 400 : 1 + r.nextInt(20);
+			b.setShape(new Circle(r.nextInt(2000) - 1000,r.nextInt(2000) - 1000,radius));
+			w.add(new Agent(null,b));
+		}
+		w.setDoubleBuffered(true);
+		WorldState front = w.front();
+		for (int q = 0 ; q < 100 ; q++) {
+			Shape s = new Circle(r.nextInt(2000) - 1000,r.nextInt(2000) - 1000,r.nextInt(300));
+			assertSameOrder(w.scene().getPartlyIn(s),front.getPartlyIn(s));
+			assertSameOrder(w.scene().getIn(s),front.getIn(s));
+			Shape rect = new Rectangle(r.nextInt(2000) - 1000,r.nextInt(2000) - 1000,r.nextInt(500),r.nextInt(500));
+			assertSameOrder(w.scene().getIn(rect),front.getIn(rect));
+		}
+	}
+
+	@Test
+	public void buffersAreSwapped() {
+		World w = WorldTest.world();
+		Agent[] agents = WorldTest.add(w,2);
+		w.setDoubleBuffered(true);
+		WorldState first = w.front();
+		w.tick();
+		WorldState second = w.front();
+		assertNotSame(first,second);
+		w.tick();
+		assertSame(first,w.front());
+		assertEquals(agents.length,w.front().size());
+	}
+
+	@Test
+	public void frontHoldsPublishedValues() {
+		World w = WorldTest.world();
+		Agent a = WorldTest.add(w,1)[0];
+		Body b = a.body();
+		b.setInt(Properties.HEALTH_KEY,10);
+		b.setInt(Properties.FEED_KEY,100);
+		b.setInt(Properties.FEED_KEY,PropertyKey.MIN,0);
+		b.setDecay(Properties.FEED_KEY,2);
+		w.setDoubleBuffered(true);
+		w.tick();
+		int id = a.getID();
+		int x = b.center().x;
+		b.setInt(Properties.HEALTH_KEY,5);
+		b.translate(new Point(7,0));
+		WorldState front = w.front();
+		assertEquals(10,front.getInt(id,Properties.HEALTH_KEY));
+		assertEquals(98,front.getInt(id,Properties.FEED_KEY));
+		assertEquals(x,front.center(id).x);
+		w.tick();
+		assertEquals(5,w.front().getInt(id,Properties.HEALTH_KEY));
+		assertEquals(96,w.front().getInt(id,Properties.FEED_KEY));
+		assertEquals(x + 7,w.front().center(id).x);
+	}
+
+	static void assertSameOrder(Scene expected, Scene actual) {
+		Iterator<Body> it = actual.iterator();
+		for (Body b : expected)
+			assertSame(b,it.hasNext() ? it.next() : null);
+		assertFalse(it.hasNext());
+	}
+
+};
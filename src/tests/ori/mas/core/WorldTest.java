@@ -0,0 +1,58 @@
+package ori.mas.core;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.LinkedListSurface;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WorldTest {
+
+	@Test
+	public void removeGivesIdentifierToLastAgent() {
+		World w = world();
+		Agent[] agents = add(w,3);
+		assertTrue(w.remove(agents[0]));
+		assertFalse(w.contains(agents[0]));
+		assertEquals(2,w.size());
+		assertSame(agents[2],w.agent(0));
+		assertEquals(0,agents[2].getID());
+		assertFalse(w.scene().contains(agents[0].body()));
+	}
+
+	@Test
+	public void generatorsDoNotDependOnIdentifiers() {
+		World w1 = world();
+		Agent[] a1 = add(w1,3);
+		w1.setSeed(1);
+		World w2 = world();
+		Agent[] a2 = add(w2,3);
+		w2.setSeed(1);
+		w1.remove(a1[0]);
+		assertEquals(a2[2].random().nextLong(),a1[2].random().nextLong());
+		// reseeding after the renumbering gives the same generators
+		w1.setSeed(1);
+		w2.setSeed(1);
+		assertEquals(a2[2].random().nextLong(),a1[2].random().nextLong());
+		assertEquals(a2[1].random().nextLong(),a1[1].random().nextLong());
+	}
+
+	static World world() {
+		return new World(new DefaultHeart(),new AdaptedScene(new LinkedListSurface<Body>()));
+	}
+
+	static Agent[] add(World w, int n) {
+		Agent[] agents = new Agent[n];
+		for (int i = 0 ; i < n ; i++) {
+			Body b = new Body();
+			b.setShape(new Circle(10 * i,0,1));
+			agents[i] = new Agent(null,b);
+			assertTrue(w.add(agents[i]));
+		}
+		return agents;
+	}
+
+};
@@ -0,0 +1,82 @@
+package ori.mas.fsm;
+
+import ori.mas.Simulation;
+import ori.mas.core.Actor;
+import ori.mas.core.Agent;
+import ori.mas.core.Body;
+import ori.mas.core.Scene;
+import ori.mas.fsm.states.PatrolState;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StateContextTest {
+
+	@Test
+	public void clearForgetsEverything() {
+		StateContext c = new StateContext();
+		StateMachine m = new StateMachine(new PatrolState());
+		State other = new PatrolState();
+		Object owner = new Object();
+		c.setState(m,other);
+		c.setInt(owner,7);
+		c.set(owner,"value");
+		c.clear();
+		assertSame(m.initial(),c.state(m));
+		assertEquals(0,c.getInt(owner));
+		assertNull(c.get(owner));
+		// new owners take the cleared entries back
+		c.setState(m,other);
+		Object next = new Object();
+		c.set(next,"other");
+		assertEquals(0,c.getInt(next));
+	}
+
+	@Test
+	public void clonesAreIndependent() {
+		StateContext c = new StateContext();
+		Object owner = new Object();
+		c.setInt(owner,1);
+		StateContext copy = c.clone();
+		copy.setInt(owner,2);
+		copy.setInt(new Object(),3);
+		assertEquals(1,c.getInt(owner));
+		assertEquals(2,copy.getInt(owner));
+	}
+
+	@Test
+	public void contextFreeStatesRunWithAContext() {
+		final List<Agent> ran = new ArrayList<Agent>();
+		// implements only the methods of the former interface
+		State state = new State() {
+			@Override
+			public Actor actor(Agent agent, Scene world) {
+				ran.add(agent);
+				return null;
+			}
+			@Override
+			public Iterator<Transition> iterator() {
+				return new ArrayList<Transition>().iterator();
+			}
+		};
+		Agent a = new Agent(null,new Body());
+		new StateMachine(state).nextActor(a,null,new StateContext());
+		assertEquals(1,ran.size());
+		assertSame(a,ran.get(0));
+	}
+
+	@Test
+	public void sharedStatesMatchOwnStates() {
+		Simulation s = new Simulation(60,60,60);
+		long shared = s.run(Simulation.BASELINE);
+		s.setSharedStates(false);
+		assertEquals(shared,s.run(Simulation.BASELINE));
+	}
+
+};
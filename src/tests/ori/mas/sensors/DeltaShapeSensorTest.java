@@ -0,0 +1,83 @@
+package ori.mas.sensors;
+
+import ori.mas.core.AdaptedScene;
+import ori.mas.core.Actor;
+import ori.mas.core.Agent;
+import ori.mas.core.Body;
+import ori.mas.core.DefaultHeart;
+import ori.mas.core.Scene;
+import ori.mas.core.World;
+import ori.mas.fsm.DeltaStateMachineMind;
+import ori.mas.fsm.states.AbstractState;
+import ori.mas.percepts.SurfacePercept;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.LinkedListSurface;
+import ori.ogapi.geometry.Point;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeltaShapeSensorTest {
+
+	@Test
+	public void cloneKeepsShape() {
+		Body b = new Body();
+		assertNotNull(new DeltaShapeSensor(b).clone());
+		DeltaShapeSensor s = new DeltaShapeSensor(b,new Circle(0,0,10));
+		assertEquals(10,((Circle)(s.clone().shape())).radius());
+	}
+
+	@Test
+	public void mindViewMatchesFullView() {
+		World w = new World(new DefaultHeart(),new AdaptedScene(new LinkedListSurface<Body>()));
+		Random r = new Random(5);
+		Body[] bodies = new Body[200];
+		for (int i = 0 ; i < bodies.length ; i++) {
+			bodies[i] = new Body();
+			// pairs of bodies sharing the same shape
+			int x = r.nextInt(400) - 200, y = r.nextInt(400) - 200;
+			bodies[i].setShape(new Circle(x,y,2));
+			w.scene().add(bodies[i]);
+			i++;
+			bodies[i] = new Body();
+			bodies[i].setShape(new Circle(x,y,2));
+			w.scene().add(bodies[i]);
+		}
+		Body self = bodies[0];
+		ShapeSensor full = new ShapeSensor(self,new Circle(0,0,80));
+		DeltaShapeSensor delta = new DeltaShapeSensor(self,new Circle(0,0,80));
+		ViewState state = new ViewState();
+		DeltaStateMachineMind mind = new DeltaStateMachineMind(new Agent(null,self),state);
+		for (int t = 0 ; t < 50 ; t++) {
+			for (int i = 0 ; i < bodies.length ; i++)
+				bodies[i].translate(new Point(r.nextInt(21) - 10,r.nextInt(21) - 10));
+			mind.percept(delta.sense(w));
+			mind.nextActor();
+			Scene expected = ((SurfacePercept)(full.sense(w))).sceneView();
+			Map<Body,Boolean> seen = new IdentityHashMap<Body,Boolean>();
+			for (Body b : state.view)
+				assertTrue("duplicate body",seen.put(b,Boolean.TRUE) == null);
+			for (Body b : expected)
+				assertTrue("missing body",seen.remove(b) != null);
+			assertTrue("extra body",seen.isEmpty());
+		}
+	}
+
+	/** Records the view of the mind. */
+	private static class ViewState extends AbstractState {
+		@Override
+		public Actor actor(Agent a, Scene world) {
+			view = world;
+			return null;
+		}
+		Scene view;
+	};
+
+};
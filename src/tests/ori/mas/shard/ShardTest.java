@@ -0,0 +1,150 @@
+package ori.mas.shard;
+
+import ori.mas.actors.MovementActor;
+import ori.mas.core.AbstractMind;
+import ori.mas.core.Actor;
+import ori.mas.core.Agent;
+import ori.mas.core.Body;
+import ori.mas.core.DefaultHeart;
+import ori.mas.core.GridScene;
+import ori.mas.core.Percept;
+import ori.mas.core.Properties;
+import ori.mas.core.World;
+
+import ori.ogapi.geometry.Circle;
+import ori.ogapi.geometry.Point;
+import ori.ogapi.geometry.Rectangle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ShardTest {
+
+	@Test
+	public void migrantsStayGhostsOfOtherNeighbours() throws Exception {
+		// a and b side by side, c below a, thus diagonal to b
+		Shard a = shard(0,new Rectangle(0,0,100,100));
+		Shard b = shard(1,new Rectangle(100,0,100,100));
+		Shard c = shard(2,new Rectangle(0,100,100,100));
+		link(a,b);
+		link(a,c);
+		link(b,c);
+		Body walker = new Body(new Circle(95,95,1));
+		walker.set(Properties.SOUL,WALKER);
+		a.world().add(WALKERS.make(WALKER,walker));
+		Shard[] shards = { a, b, c };
+		ShardMain.run(shards,1);
+		assertEquals(0,a.world().size());
+		assertEquals(1,b.world().size());
+		assertEquals(list(new Point(103,95)),ghosts(c));
+		// the new owner sends the ghost from now on
+		ShardMain.run(shards,1);
+		assertEquals(list(new Point(111,95)),ghosts(c));
+	}
+
+	@Test
+	public void localShardsAreDeterministic() throws Exception {
+		List<Point> first = centers(runLocal());
+		List<Point> second = centers(runLocal());
+		assertEquals(first,second);
+	}
+
+	@Test
+	public void agentsLiveInTheirShardRegion() throws Exception {
+		Shard[] shards = runLocal();
+		for (Shard s : shards) {
+			for (Agent a : s.world()) {
+				// ghosts are bodies without agent
+				if (a == null)
+					continue;
+				Point p = a.body().center();
+				for (Shard other : shards) {
+					if (other != s)
+						assertFalse(owns(other.region(),p));
+				}
+			}
+		}
+	}
+
+	private static Shard[] runLocal() throws Exception {
+		Shard[] shards = new Shard[3];
+		for (int id = 0 ; id < shards.length ; id++)
+			shards[id] = ShardMain.shard(id,42,100);
+		ShardMain.link(shards);
+		ShardMain.run(shards,30);
+		return shards;
+	}
+
+	private static Shard shard(int id, Rectangle region) {
+		return new Shard(new World(new DefaultHeart(),new GridScene()),id,region,20,WALKERS);
+	}
+
+	private static void link(Shard s1, Shard s2) {
+		LocalLink[] pair = LocalLink.pair();
+		s1.addNeighbour(s2.id(),s2.region(),pair[0]);
+		s2.addNeighbour(s1.id(),s1.region(),pair[1]);
+	}
+
+	private static List<Point> ghosts(Shard s) {
+		List<Point> res = new ArrayList<Point>();
+		for (Body b : s.world().scene()) {
+			if (s.isGhost(b))
+				res.add(b.center().clone());
+		}
+		return res;
+	}
+
+	/** @return The centers of the agents of all shards, in shard then scene order. */
+	private static List<Point> centers(Shard[] shards) {
+		List<Point> res = new ArrayList<Point>();
+		for (Shard s : shards) {
+			for (Agent a : s.world()) {
+				if (a != null)
+					res.add(a.body().center().clone());
+			}
+		}
+		return res;
+	}
+
+	private static List<Point> list(Point p) {
+		List<Point> res = new ArrayList<Point>();
+		res.add(p);
+		return res;
+	}
+
+	private static boolean owns(Rectangle region, Point p) {
+		return ((p.x >= region.origin().x) && (p.x < region.end().x)
+		     && (p.y >= region.origin().y) && (p.y < region.end().y));
+	}
+
+	private static final String WALKER = "walker";
+
+	/** Agents walking to the right, 8 units per tick. */
+	private static final AgentFactory WALKERS = new AgentFactory() {
+		@Override
+		public Agent make(String soul, Body body) {
+			final MovementActor move = new MovementActor(body,8);
+			move.setSpeed(8);
+			move.setAngle(0);
+			body.addActor(move);
+			return new Agent(new AbstractMind() {
+				@Override
+				public void percept(Percept percept) {
+				}
+				@Override
+				public Actor nextActor() {
+					return move;
+				}
+				@Override
+				public AbstractMind clone() {
+					return this;
+				}
+			},body);
+		}
+	};
+
+};